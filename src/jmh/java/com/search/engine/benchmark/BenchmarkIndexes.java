@@ -0,0 +1,44 @@
+package com.search.engine.benchmark;
+
+import com.search.engine.analysis.Analyzer;
+import com.search.engine.analysis.TermFrequencies;
+import com.search.engine.config.StorageProperties;
+import com.search.engine.index.FsyncPolicy;
+import com.search.engine.index.ShardedIndex;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+final class BenchmarkIndexes {
+
+    private BenchmarkIndexes() {
+    }
+
+    static ShardedIndex open(int shards, FsyncPolicy fsyncPolicy, int flushThreshold) throws IOException {
+        Path directory = Files.createTempDirectory("engine-benchmark");
+        StorageProperties storageProperties = new StorageProperties();
+        storageProperties.setIndexLocation(directory.toString());
+        storageProperties.setShards(shards);
+        storageProperties.setWalFsyncPolicy(fsyncPolicy);
+        storageProperties.setFlushThreshold(flushThreshold);
+        storageProperties.setRefreshIntervalMs(0);
+        storageProperties.setDeleteOnShutdown(true);
+
+        ShardedIndex index = new ShardedIndex(storageProperties);
+        index.open();
+        return index;
+    }
+
+    static List<TermFrequencies> analyze(Analyzer analyzer, List<String> documents) {
+        List<TermFrequencies> analyzed = new ArrayList<>(documents.size());
+        for (String document : documents) {
+            TermFrequencies termFrequencies = new TermFrequencies();
+            analyzer.analyze(document, termFrequencies);
+            analyzed.add(termFrequencies);
+        }
+        return analyzed;
+    }
+}
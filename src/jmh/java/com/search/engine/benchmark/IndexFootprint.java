@@ -0,0 +1,68 @@
+package com.search.engine.benchmark;
+
+import com.search.engine.analysis.StandardAnalyzer;
+import com.search.engine.index.FsyncPolicy;
+import com.search.engine.index.IndexSegment;
+import com.search.engine.index.MappedSegment;
+import com.search.engine.index.ShardedIndex;
+
+import java.util.Collections;
+
+/**
+ * Prints the heap retained by the index for a synthetic corpus, while the documents are buffered in memory
+ * and after they are flushed to mapped segments, and the size of the skip list dictionary of the buffer against
+ * the front coded dictionary of the segment, and the bytes per posting of the compressed postings. Arguments:
+ * document count, document length.
+ */
+public final class IndexFootprint {
+
+    private IndexFootprint() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int documentCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int documentLength = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        SyntheticCorpus corpus = new SyntheticCorpus(50_000, 1.0, documentLength, 42);
+        StandardAnalyzer analyzer = new StandardAnalyzer();
+
+        long before = usedHeap();
+        ShardedIndex index = BenchmarkIndexes.open(1, FsyncPolicy.OS, Integer.MAX_VALUE);
+        for (int document = 0; document < documentCount; document++) {
+            index.addDocuments(Collections.singletonList("document" + document),
+                    BenchmarkIndexes.analyze(analyzer, Collections.singletonList(corpus.document(document))));
+        }
+        long buffered = usedHeap();
+        long bufferedDictionary = index.getTermDictionaryBytes();
+        index.flush();
+        long flushed = usedHeap();
+        long flushedDictionary = index.getTermDictionaryBytes();
+
+        System.out.printf("documents: %d, terms per document: %d%n", documentCount, documentLength);
+        System.out.printf("buffered index: %d KiB (%.1f bytes per document)%n",
+                (buffered - before) / 1024, (double) (buffered - before) / documentCount);
+        System.out.printf("flushed index:  %d KiB (%.1f bytes per document)%n",
+                (flushed - before) / 1024, (double) (flushed - before) / documentCount);
+        System.out.printf("term dictionary: %d terms, skip list %d KiB, front coded %d KiB (%.1f bytes per term)%n",
+                index.getTermCount(), bufferedDictionary / 1024, flushedDictionary / 1024,
+                (double) flushedDictionary / index.getTermCount());
+        long postingsBytes = 0;
+        for (IndexSegment segment : index.getShard(0).getSegments()) {
+            if (segment instanceof MappedSegment) {
+                postingsBytes += ((MappedSegment) segment).getPostingsBytes();
+            }
+        }
+        System.out.printf("postings: %d, compressed %d KiB (%.2f bytes per posting, %d uncompressed)%n",
+                index.getPostingsCount(), postingsBytes / 1024, (double) postingsBytes / index.getPostingsCount(),
+                2 * Integer.BYTES);
+        index.close();
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
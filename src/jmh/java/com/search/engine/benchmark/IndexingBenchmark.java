@@ -0,0 +1,64 @@
+package com.search.engine.benchmark;
+
+import com.search.engine.analysis.StandardAnalyzer;
+import com.search.engine.analysis.TermFrequencies;
+import com.search.engine.index.FsyncPolicy;
+import com.search.engine.index.ShardedIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adds pre-tokenized documents, one per operation when {@code batchSize} is 1 and a whole batch per operation
+ * otherwise. Every iteration starts from an empty index, run with {@code -t} to add concurrent writers.
+ * Bulk upload with storing and tokenizing is measured by {@link UploadBenchmark}.
+ */
+@State(Scope.Benchmark)
+public class IndexingBenchmark {
+
+    private static final int DOCUMENTS = 4096;
+
+    @Param({"ALWAYS", "INTERVAL", "OS"})
+    private FsyncPolicy fsyncPolicy;
+
+    @Param({"1", "4"})
+    private int shards;
+
+    @Param({"1", "32"})
+    private int batchSize;
+
+    private final AtomicLong nextDocument = new AtomicLong();
+    private List<TermFrequencies> documents;
+    private ShardedIndex index;
+
+    @Setup(Level.Trial)
+    public void analyzeCorpus() {
+        documents = BenchmarkIndexes.analyze(new StandardAnalyzer(),
+                new SyntheticCorpus(50_000, 1.0, 200, 42).documents(DOCUMENTS));
+    }
+
+    @Setup(Level.Iteration)
+    public void openIndex() throws IOException {
+        index = BenchmarkIndexes.open(shards, fsyncPolicy, 1000);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeIndex() throws IOException {
+        index.close();
+    }
+
+    @Benchmark
+    public int[] addDocuments() {
+        List<String> names = new ArrayList<>(batchSize);
+        List<TermFrequencies> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            long document = nextDocument.getAndIncrement();
+            names.add("document" + document);
+            batch.add(documents.get((int) (document % DOCUMENTS)));
+        }
+        return index.addDocuments(names, batch);
+    }
+}
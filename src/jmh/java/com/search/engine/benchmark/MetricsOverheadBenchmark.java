@@ -0,0 +1,35 @@
+package com.search.engine.benchmark;
+
+import com.search.engine.metrics.EngineMetrics;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one timed section as recorded on the hot paths, against the bare clock reads it wraps.
+ * Run with {@code -t} to see contention on the shared histogram.
+ */
+@State(Scope.Benchmark)
+public class MetricsOverheadBenchmark {
+
+    private EngineMetrics metrics;
+
+    @Setup
+    public void setUp() {
+        metrics = new EngineMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+    }
+
+    @Benchmark
+    public long clockOnly() {
+        long start = System.nanoTime();
+        return System.nanoTime() - start;
+    }
+
+    @Benchmark
+    public void recordTimer() {
+        long start = System.nanoTime();
+        metrics.getLookupTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+}
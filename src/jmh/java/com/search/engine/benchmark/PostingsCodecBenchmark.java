@@ -0,0 +1,106 @@
+package com.search.engine.benchmark;
+
+import com.search.engine.analysis.StandardAnalyzer;
+import com.search.engine.index.FsyncPolicy;
+import com.search.engine.index.MappedSegment;
+import com.search.engine.index.Postings;
+import com.search.engine.index.PostingsIterator;
+import com.search.engine.index.ShardedIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * Postings of one term read from the uncompressed arrays of the buffer against the compressed blocks of the
+ * flushed segment, decoded in full and skipped through with {@link PostingsIterator#advance(int)}. The setup prints
+ * the bytes per posting of both forms.
+ */
+@State(Scope.Benchmark)
+public class PostingsCodecBenchmark {
+
+    private static final int VOCABULARY_SIZE = 50_000;
+    private static final int ADVANCE_STRIDE = 16;
+
+    @Param({"10000"})
+    private int documentCount;
+
+    @Param({"200"})
+    private int documentLength;
+
+    @Param({"HEAD", "TORSO"})
+    private TermClass termClass;
+
+    private ShardedIndex index;
+    private Postings arrayPostings;
+    private Postings blockPostings;
+    private int[] targets;
+
+    @Setup
+    public void setUp() throws IOException {
+        StandardAnalyzer analyzer = new StandardAnalyzer();
+        SyntheticCorpus corpus = new SyntheticCorpus(VOCABULARY_SIZE, 1.0, documentLength, 42);
+        index = BenchmarkIndexes.open(1, FsyncPolicy.OS, Integer.MAX_VALUE);
+        for (int document = 0; document < documentCount; document++) {
+            index.addDocuments(Collections.singletonList("document" + document),
+                    BenchmarkIndexes.analyze(analyzer, Collections.singletonList(corpus.document(document))));
+        }
+
+        String term = corpus.term(termClass.rank(VOCABULARY_SIZE));
+        arrayPostings = index.getShard(0).getPostings(term).get(0);
+        index.flush();
+        blockPostings = index.getShard(0).getPostings(term).get(0);
+
+        targets = new int[arrayPostings.size() / ADVANCE_STRIDE];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = arrayPostings.docId(i * ADVANCE_STRIDE) + 1;
+        }
+
+        MappedSegment segment = (MappedSegment) index.getShard(0).getSegments().get(0);
+        System.out.printf("%npostings: %d, %.2f bytes per posting in blocks, %d in arrays%n", segment.getPostingsCount(),
+                (double) segment.getPostingsBytes() / segment.getPostingsCount(), 2 * Integer.BYTES);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        index.close();
+    }
+
+    @Benchmark
+    public long decodeArrays() {
+        return decode(arrayPostings);
+    }
+
+    @Benchmark
+    public long decodeBlocks() {
+        return decode(blockPostings);
+    }
+
+    @Benchmark
+    public long advanceArrays() {
+        return advance(arrayPostings);
+    }
+
+    @Benchmark
+    public long advanceBlocks() {
+        return advance(blockPostings);
+    }
+
+    private static long decode(Postings postings) {
+        Postings reader = postings.reader();
+        long sum = 0;
+        for (int i = 0; i < reader.size(); i++) {
+            sum += reader.docId(i) + reader.frequency(i);
+        }
+        return sum;
+    }
+
+    private long advance(Postings postings) {
+        PostingsIterator iterator = new PostingsIterator(Collections.singletonList(postings));
+        long sum = 0;
+        for (int target : targets) {
+            sum += iterator.advance(target) + iterator.frequency();
+        }
+        return sum;
+    }
+}
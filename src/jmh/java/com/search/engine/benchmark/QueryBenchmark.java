@@ -0,0 +1,109 @@
+package com.search.engine.benchmark;
+
+import com.search.engine.analysis.StandardAnalyzer;
+import com.search.engine.analysis.TermFrequencies;
+import com.search.engine.config.SearchProperties;
+import com.search.engine.index.FsyncPolicy;
+import com.search.engine.index.Postings;
+import com.search.engine.index.ShardedIndex;
+import com.search.engine.metrics.EngineMetrics;
+import com.search.engine.search.Operator;
+import com.search.engine.search.ScoredDocument;
+import com.search.engine.service.SearchEngineService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Lookup and ranking over a flushed synthetic corpus, with result and term caches disabled so every
+ * operation does the full work.
+ */
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+
+    private static final int VOCABULARY_SIZE = 50_000;
+
+    @Param({"10000"})
+    private int documentCount;
+
+    @Param({"200"})
+    private int documentLength;
+
+    @Param({"1", "4"})
+    private int shards;
+
+    @Param({"HEAD", "TORSO", "TAIL"})
+    private TermClass termClass;
+
+    private ShardedIndex index;
+    private ExecutorService searchExecutor;
+    private SearchEngineService searchEngineService;
+    private String term;
+    private String twoTerms;
+
+    @Setup
+    public void setUp() throws IOException {
+        StandardAnalyzer analyzer = new StandardAnalyzer();
+        SyntheticCorpus corpus = new SyntheticCorpus(VOCABULARY_SIZE, 1.0, documentLength, 42);
+        index = BenchmarkIndexes.open(shards, FsyncPolicy.OS, documentCount);
+
+        List<String> names = new ArrayList<>();
+        List<String> documents = new ArrayList<>();
+        for (int document = 0; document < documentCount; document++) {
+            names.add("document" + document);
+            documents.add(corpus.document(document));
+            if (names.size() == 256 || document == documentCount - 1) {
+                List<TermFrequencies> batch = BenchmarkIndexes.analyze(analyzer, documents);
+                index.addDocuments(names, batch);
+                names.clear();
+                documents.clear();
+            }
+        }
+        index.flush();
+
+        SearchProperties searchProperties = new SearchProperties();
+        searchProperties.setResultCacheSize(0);
+        searchProperties.setTermCacheSize(0);
+        searchExecutor = Executors.newFixedThreadPool(shards);
+        searchEngineService = new SearchEngineService(analyzer, index, searchProperties, searchExecutor, EngineMetrics.detached());
+
+        term = corpus.term(termClass.rank(VOCABULARY_SIZE));
+        twoTerms = corpus.term(TermClass.TORSO.rank(VOCABULARY_SIZE)) + " " + term;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        searchExecutor.shutdown();
+        index.close();
+    }
+
+    @Benchmark
+    public int lookup() {
+        int documentFrequency = 0;
+        for (int shard = 0; shard < index.getShardCount(); shard++) {
+            for (Postings postings : index.getShard(shard).getPostings(term)) {
+                documentFrequency += postings.size();
+            }
+        }
+        return documentFrequency;
+    }
+
+    @Benchmark
+    public List<ScoredDocument> rankTop10() {
+        return searchEngineService.getDocumentsContaining(term, Operator.AND, 0, 10);
+    }
+
+    @Benchmark
+    public List<ScoredDocument> rankTop10Or() {
+        return searchEngineService.getDocumentsContaining(twoTerms, Operator.OR, 0, 10);
+    }
+
+    @Benchmark
+    public List<ScoredDocument> rankTop10And() {
+        return searchEngineService.getDocumentsContaining(twoTerms, Operator.AND, 0, 10);
+    }
+}
@@ -0,0 +1,92 @@
+package com.search.engine.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reproducible documents over a Zipfian vocabulary, the term of rank {@code r} is drawn with probability
+ * proportional to {@code 1 / r^exponent}. The same seed always gives the same documents.
+ */
+public final class SyntheticCorpus {
+
+    private static final char[] LETTERS = "abcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    private final String[] vocabulary;
+    private final double[] cumulativeProbability;
+    private final int documentLength;
+    private final long seed;
+
+    public SyntheticCorpus(int vocabularySize, double exponent, int documentLength, long seed) {
+        this.vocabulary = new String[vocabularySize];
+        this.cumulativeProbability = new double[vocabularySize];
+        this.documentLength = documentLength;
+        this.seed = seed;
+
+        double sum = 0;
+        for (int rank = 1; rank <= vocabularySize; rank++) {
+            vocabulary[rank - 1] = word(rank);
+            sum += 1 / Math.pow(rank, exponent);
+            cumulativeProbability[rank - 1] = sum;
+        }
+        for (int i = 0; i < vocabularySize; i++) {
+            cumulativeProbability[i] /= sum;
+        }
+    }
+
+    /**
+     * Term of the given rank, starting from 1 for the most frequent one.
+     */
+    public String term(int rank) {
+        return vocabulary[rank - 1];
+    }
+
+    public int getVocabularySize() {
+        return vocabulary.length;
+    }
+
+    public String document(int index) {
+        Random random = new Random(seed * 31 + index);
+        StringBuilder document = new StringBuilder(documentLength * 8);
+
+        for (int i = 0; i < documentLength; i++) {
+            if (i > 0) {
+                document.append(random.nextInt(12) == 0 ? ", " : " ");
+            }
+            document.append(vocabulary[sampleRank(random)]);
+        }
+        return document.toString();
+    }
+
+    public List<String> documents(int count) {
+        List<String> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            documents.add(document(i));
+        }
+        return documents;
+    }
+
+    private int sampleRank(Random random) {
+        double value = random.nextDouble();
+        int low = 0;
+        int high = cumulativeProbability.length - 1;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulativeProbability[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static String word(int rank) {
+        StringBuilder word = new StringBuilder("w");
+        for (int value = rank; value > 0; value /= LETTERS.length) {
+            word.append(LETTERS[value % LETTERS.length]);
+        }
+        return word.toString();
+    }
+}
@@ -0,0 +1,22 @@
+package com.search.engine.benchmark;
+
+/**
+ * Query terms by document frequency: head terms are in nearly every document, torso terms in a few
+ * percent of them and tail terms in a handful.
+ */
+public enum TermClass {
+    HEAD,
+    TORSO,
+    TAIL;
+
+    public int rank(int vocabularySize) {
+        switch (this) {
+            case HEAD:
+                return 1;
+            case TORSO:
+                return Math.max(1, vocabularySize / 100);
+            default:
+                return Math.max(1, vocabularySize / 2);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.search.engine.benchmark;
+
+import com.search.engine.analysis.StandardAnalyzer;
+import com.search.engine.analysis.TermFrequencies;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+
+@State(Scope.Thread)
+public class TokenizationBenchmark {
+
+    private static final int DOCUMENTS = 64;
+
+    @Param({"100", "1000", "10000"})
+    private int documentLength;
+
+    private final StandardAnalyzer analyzer = new StandardAnalyzer();
+    private List<String> documents;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        documents = new SyntheticCorpus(50_000, 1.0, documentLength, 42).documents(DOCUMENTS);
+    }
+
+    @Benchmark
+    public TermFrequencies tokenize() {
+        TermFrequencies termFrequencies = new TermFrequencies();
+        analyzer.analyze(documents.get(next++ % DOCUMENTS), termFrequencies);
+        return termFrequencies;
+    }
+}
@@ -0,0 +1,152 @@
+package com.search.engine.benchmark;
+
+import com.search.engine.analysis.StandardAnalyzer;
+import com.search.engine.config.IngestConfiguration;
+import com.search.engine.config.IngestProperties;
+import com.search.engine.config.SearchProperties;
+import com.search.engine.config.StorageProperties;
+import com.search.engine.dto.DocumentResponse;
+import com.search.engine.index.FsyncPolicy;
+import com.search.engine.index.ShardedIndex;
+import com.search.engine.metrics.EngineMetrics;
+import com.search.engine.service.DocumentService;
+import com.search.engine.service.SearchEngineService;
+import com.search.engine.service.StorageService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk upload through {@link DocumentService#processFiles(MultipartFile[])}: storing, tokenizing on the tokenizer
+ * executor and merging into the index, with the files held in memory. {@code tokenizerThreads} sizes the executor
+ * like {@code ingest.tokenizer-threads}, 0 uses every available processor. Every iteration starts from empty
+ * storage and an empty index.
+ */
+@State(Scope.Benchmark)
+public class UploadBenchmark {
+
+    private static final int DOCUMENTS = 1024;
+
+    @Param({"1", "2", "4", "0"})
+    private int tokenizerThreads;
+
+    @Param({"64"})
+    private int filesPerUpload;
+
+    @Param({"1000"})
+    private int documentLength;
+
+    private final AtomicLong nextUpload = new AtomicLong();
+    private List<String> documents;
+    private ShardedIndex index;
+    private StorageService storageService;
+    private ExecutorService searchExecutor;
+    private ExecutorService tokenizerExecutor;
+    private DocumentService documentService;
+
+    @Setup(Level.Trial)
+    public void generateCorpus() {
+        documents = new SyntheticCorpus(50_000, 1.0, documentLength, 42).documents(DOCUMENTS);
+    }
+
+    @Setup(Level.Iteration)
+    public void openServices() throws IOException {
+        index = BenchmarkIndexes.open(1, FsyncPolicy.OS, 1000);
+        StorageProperties storageProperties = new StorageProperties();
+        storageProperties.setLocation(Files.createTempDirectory("engine-benchmark-storage").toString());
+        storageProperties.setDeleteOnShutdown(true);
+        storageService = new StorageService(storageProperties, EngineMetrics.detached());
+        storageService.open();
+
+        IngestProperties ingestProperties = new IngestProperties();
+        ingestProperties.setTokenizerThreads(tokenizerThreads == 0
+                ? Runtime.getRuntime().availableProcessors() : tokenizerThreads);
+        tokenizerExecutor = new IngestConfiguration().tokenizerExecutor(ingestProperties);
+        searchExecutor = Executors.newSingleThreadExecutor();
+        SearchEngineService searchEngineService = new SearchEngineService(new StandardAnalyzer(), index,
+                new SearchProperties(), searchExecutor, EngineMetrics.detached());
+        documentService = new DocumentService(storageService, searchEngineService, tokenizerExecutor,
+                ingestProperties);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeServices() throws IOException {
+        tokenizerExecutor.shutdown();
+        searchExecutor.shutdown();
+        storageService.close();
+        index.close();
+    }
+
+    @Benchmark
+    public List<DocumentResponse> processFiles() {
+        long upload = nextUpload.getAndIncrement();
+        MultipartFile[] files = new MultipartFile[filesPerUpload];
+        for (int i = 0; i < filesPerUpload; i++) {
+            byte[] content = documents.get((int) ((upload * filesPerUpload + i) % DOCUMENTS))
+                    .getBytes(StandardCharsets.UTF_8);
+            files[i] = new InMemoryFile("upload" + upload + "-" + i + ".txt", content);
+        }
+        return documentService.processFiles(files);
+    }
+
+    private static final class InMemoryFile implements MultipartFile {
+
+        private final String name;
+        private final byte[] content;
+
+        private InMemoryFile(String name, byte[] content) {
+            this.name = name;
+            this.content = content;
+        }
+
+        @Override
+        public String getName() {
+            return "files";
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return name;
+        }
+
+        @Override
+        public String getContentType() {
+            return "text/plain";
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return content.length == 0;
+        }
+
+        @Override
+        public long getSize() {
+            return content.length;
+        }
+
+        @Override
+        public byte[] getBytes() {
+            return content;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            Files.write(dest.toPath(), content);
+        }
+    }
+}
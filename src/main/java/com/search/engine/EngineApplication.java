@@ -1,12 +1,14 @@
 package com.search.engine;
 
+import com.search.engine.config.IngestProperties;
+import com.search.engine.config.SearchProperties;
 import com.search.engine.config.StorageProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 
 @SpringBootApplication
-@EnableConfigurationProperties(StorageProperties.class)
+@EnableConfigurationProperties({StorageProperties.class, SearchProperties.class, IngestProperties.class})
 public class EngineApplication {
     public static void main(String[] args) {
         SpringApplication.run(EngineApplication.class, args);
@@ -0,0 +1,33 @@
+package com.search.engine.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns raw text into normalized terms. The same instance is used for indexing and for queries,
+ * so both sides always agree on what a term looks like.
+ */
+public interface Analyzer {
+
+    boolean isSeparator(char c);
+
+    boolean isIgnored(char c);
+
+    char normalize(char c);
+
+    default Tokenizer tokenizer(TermConsumer consumer) {
+        return new Tokenizer(this, consumer);
+    }
+
+    default void analyze(CharSequence text, TermConsumer consumer) {
+        Tokenizer tokenizer = tokenizer(consumer);
+        tokenizer.process(text);
+        tokenizer.end();
+    }
+
+    default List<String> analyze(CharSequence text) {
+        List<String> terms = new ArrayList<>();
+        analyze(text, terms::add);
+        return terms;
+    }
+}
@@ -0,0 +1,27 @@
+package com.search.engine.analysis;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Splits on whitespace, drops punctuation inside words and lowercases every character.
+ */
+@Component
+public class StandardAnalyzer implements Analyzer {
+
+    public static final String SPECIAL_CHARS = "-+.^:,?!";
+
+    @Override
+    public boolean isSeparator(char c) {
+        return Character.isWhitespace(c);
+    }
+
+    @Override
+    public boolean isIgnored(char c) {
+        return SPECIAL_CHARS.indexOf(c) >= 0;
+    }
+
+    @Override
+    public char normalize(char c) {
+        return Character.toLowerCase(c);
+    }
+}
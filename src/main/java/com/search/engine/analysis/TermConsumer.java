@@ -0,0 +1,14 @@
+package com.search.engine.analysis;
+
+@FunctionalInterface
+public interface TermConsumer {
+
+    void accept(String term);
+
+    /**
+     * Receives the term with the UTF-8 byte offset where its token starts in the analyzed text.
+     */
+    default void accept(String term, int startOffset) {
+        accept(term);
+    }
+}
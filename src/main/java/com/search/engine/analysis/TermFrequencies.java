@@ -0,0 +1,194 @@
+package com.search.engine.analysis;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing term to count map used to aggregate a single document before it is merged into the
+ * shared dictionary. Counts are kept in an int array, so repeated terms cost no allocation. Created with
+ * {@link #withPositions()} it also keeps the ascending token positions of every term with the UTF-8 byte offsets
+ * where the tokens start, {@link #NO_OFFSET} when the offset is unknown. Not thread safe.
+ */
+public final class TermFrequencies implements TermConsumer {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int INITIAL_POSITIONS_CAPACITY = 4;
+    public static final int NO_OFFSET = -1;
+
+    private String[] terms = new String[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private int[][] positions;
+    private int[][] offsets;
+    private int size;
+    private int totalTerms;
+
+    @FunctionalInterface
+    public interface TermCountConsumer {
+        void accept(String term, int count);
+    }
+
+    /**
+     * Receives the positions and offsets arrays of the term, their first {@code count} entries are valid. The
+     * arrays are {@code null} when positions are not kept.
+     */
+    @FunctionalInterface
+    public interface TermPositionsConsumer {
+        void accept(String term, int count, int[] positions, int[] offsets);
+    }
+
+    public TermFrequencies() {
+    }
+
+    private TermFrequencies(boolean keepPositions) {
+        this.positions = keepPositions ? new int[INITIAL_CAPACITY][] : null;
+        this.offsets = keepPositions ? new int[INITIAL_CAPACITY][] : null;
+    }
+
+    public static TermFrequencies withPositions() {
+        return new TermFrequencies(true);
+    }
+
+    @Override
+    public void accept(String term) {
+        accept(term, NO_OFFSET);
+    }
+
+    @Override
+    public void accept(String term, int startOffset) {
+        int slot = addSlot(term);
+        if (positions != null) {
+            ensurePositionsCapacity(slot, counts[slot] + 1);
+            positions[slot][counts[slot]] = totalTerms;
+            offsets[slot][counts[slot]] = startOffset;
+        }
+        count(slot, 1);
+    }
+
+    public void add(String term, int count) {
+        add(term, count, null, null);
+    }
+
+    /**
+     * Adds {@code count} occurrences, their positions are kept when both sides have them. Missing offsets are
+     * kept as {@link #NO_OFFSET}.
+     */
+    public void add(String term, int count, int[] termPositions, int[] termOffsets) {
+        int slot = addSlot(term);
+        if (positions != null && termPositions != null) {
+            ensurePositionsCapacity(slot, counts[slot] + count);
+            System.arraycopy(termPositions, 0, positions[slot], counts[slot], count);
+            if (termOffsets != null) {
+                System.arraycopy(termOffsets, 0, offsets[slot], counts[slot], count);
+            } else {
+                Arrays.fill(offsets[slot], counts[slot], counts[slot] + count, NO_OFFSET);
+            }
+        }
+        count(slot, count);
+    }
+
+    private int addSlot(String term) {
+        int slot = findSlot(terms, term);
+        if (terms[slot] == null) {
+            terms[slot] = term;
+            size++;
+        }
+        return slot;
+    }
+
+    /**
+     * Resizing happens after the occurrences are recorded, it moves the slot.
+     */
+    private void count(int slot, int count) {
+        counts[slot] += count;
+        totalTerms += count;
+
+        if (size * 2 > terms.length) {
+            resize();
+        }
+    }
+
+    private void ensurePositionsCapacity(int slot, int required) {
+        int[] slotPositions = positions[slot];
+
+        if (slotPositions == null) {
+            int capacity = Math.max(INITIAL_POSITIONS_CAPACITY, required);
+            positions[slot] = new int[capacity];
+            offsets[slot] = new int[capacity];
+        } else if (slotPositions.length < required) {
+            int capacity = Math.max(required, 2 * slotPositions.length);
+            positions[slot] = Arrays.copyOf(slotPositions, capacity);
+            offsets[slot] = Arrays.copyOf(offsets[slot], capacity);
+        }
+    }
+
+    public boolean hasPositions() {
+        return positions != null;
+    }
+
+    public int get(String term) {
+        int slot = findSlot(terms, term);
+        return terms[slot] == null ? 0 : counts[slot];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getTotalTerms() {
+        return totalTerms;
+    }
+
+    public void forEach(TermCountConsumer consumer) {
+        for (int slot = 0; slot < terms.length; slot++) {
+            if (terms[slot] != null) {
+                consumer.accept(terms[slot], counts[slot]);
+            }
+        }
+    }
+
+    public void forEachWithPositions(TermPositionsConsumer consumer) {
+        for (int slot = 0; slot < terms.length; slot++) {
+            if (terms[slot] != null) {
+                consumer.accept(terms[slot], counts[slot], positions != null ? positions[slot] : null,
+                        offsets != null ? offsets[slot] : null);
+            }
+        }
+    }
+
+    private static int findSlot(String[] table, String term) {
+        int mask = table.length - 1;
+        int slot = mix(term.hashCode()) & mask;
+
+        while (table[slot] != null && !table[slot].equals(term)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void resize() {
+        String[] oldTerms = terms;
+        int[] oldCounts = counts;
+        int[][] oldPositions = positions;
+        int[][] oldOffsets = offsets;
+        terms = new String[oldTerms.length * 2];
+        counts = new int[oldTerms.length * 2];
+        positions = oldPositions != null ? new int[oldTerms.length * 2][] : null;
+        offsets = oldOffsets != null ? new int[oldTerms.length * 2][] : null;
+
+        for (int slot = 0; slot < oldTerms.length; slot++) {
+            if (oldTerms[slot] != null) {
+                int newSlot = findSlot(terms, oldTerms[slot]);
+                terms[newSlot] = oldTerms[slot];
+                counts[newSlot] = oldCounts[slot];
+                if (oldPositions != null) {
+                    positions[newSlot] = oldPositions[slot];
+                    offsets[newSlot] = oldOffsets[slot];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.search.engine.analysis;
+
+import java.util.Arrays;
+
+/**
+ * Single pass scanner emitting one term per run of non separator characters. Text may be fed in
+ * several chunks, a term split between two chunks is emitted once. Every term comes with the UTF-8 byte
+ * offset of its first character in the whole text. Not thread safe.
+ */
+public final class Tokenizer {
+
+    private static final int INITIAL_TERM_CAPACITY = 32;
+
+    private final Analyzer analyzer;
+    private final TermConsumer consumer;
+    private char[] termBuffer = new char[INITIAL_TERM_CAPACITY];
+    private int termLength;
+    private int termCount;
+    private int byteOffset;
+    private int termStartOffset;
+
+    Tokenizer(Analyzer analyzer, TermConsumer consumer) {
+        this.analyzer = analyzer;
+        this.consumer = consumer;
+    }
+
+    public void process(CharSequence chunk) {
+        for (int i = 0, length = chunk.length(); i < length; i++) {
+            process(chunk.charAt(i));
+        }
+    }
+
+    public void process(char[] chunk, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            process(chunk[i]);
+        }
+    }
+
+    private void process(char c) {
+        if (analyzer.isSeparator(c)) {
+            emitTerm();
+        } else if (!analyzer.isIgnored(c)) {
+            if (termLength == 0) {
+                termStartOffset = byteOffset;
+            }
+            appendToTerm(analyzer.normalize(c));
+        }
+        byteOffset += utf8Length(c);
+    }
+
+    /**
+     * Each half of a surrogate pair counts 2 bytes, together the 4 bytes of the encoded code point.
+     */
+    private static int utf8Length(char c) {
+        if (c < 0x80) {
+            return 1;
+        }
+        return c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+    }
+
+    public void end() {
+        emitTerm();
+    }
+
+    public int getTermCount() {
+        return termCount;
+    }
+
+    private void appendToTerm(char c) {
+        if (termLength == termBuffer.length) {
+            termBuffer = Arrays.copyOf(termBuffer, termLength * 2);
+        }
+        termBuffer[termLength++] = c;
+    }
+
+    private void emitTerm() {
+        if (termLength > 0) {
+            consumer.accept(new String(termBuffer, 0, termLength), termStartOffset);
+            termLength = 0;
+            termCount++;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.search.engine.config;
+
+import com.search.engine.index.ShardedIndex;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class IndexConfiguration {
+
+    @Bean(initMethod = "open", destroyMethod = "close")
+    public ShardedIndex shardedIndex(StorageProperties storageProperties) {
+        return new ShardedIndex(storageProperties);
+    }
+
+    /**
+     * Scores shards of a query in parallel, the calling thread always scores the first shard itself.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService searchExecutor(SearchProperties searchProperties) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(searchProperties.getThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "search-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
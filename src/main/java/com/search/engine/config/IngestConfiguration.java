@@ -0,0 +1,46 @@
+package com.search.engine.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class IngestConfiguration {
+
+    /**
+     * Stores and tokenizes uploaded files. When the queue is full the uploading thread runs the task itself,
+     * which holds back new work until the pool catches up.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService tokenizerExecutor(IngestProperties ingestProperties) {
+        return new ThreadPoolExecutor(ingestProperties.getTokenizerThreads(), ingestProperties.getTokenizerThreads(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(ingestProperties.getQueueCapacity()),
+                namedThreads("tokenizer-"), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Runs asynchronous ingest jobs. A full queue rejects the job, so bursts of uploads are refused instead of
+     * buffered and indexing never takes request threads from searches.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor ingestExecutor(IngestProperties ingestProperties) {
+        return new ThreadPoolExecutor(ingestProperties.getWorkerThreads(), ingestProperties.getWorkerThreads(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(ingestProperties.getJobQueueCapacity()),
+                namedThreads("ingest-"), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
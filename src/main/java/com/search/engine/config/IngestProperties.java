@@ -0,0 +1,23 @@
+package com.search.engine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "ingest")
+public class IngestProperties {
+
+    private int tokenizerThreads = Runtime.getRuntime().availableProcessors();
+
+    private int queueCapacity = 64;
+
+    private int mergeBatchSize = 32;
+
+    private int workerThreads = 2;
+
+    private int jobQueueCapacity = 100;
+
+    private int maxTrackedJobs = 10000;
+}
@@ -0,0 +1,52 @@
+package com.search.engine.config;
+
+import com.search.engine.index.ShardedIndex;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class MetricsConfiguration {
+
+    /**
+     * Index size gauges, computed from segment counters when scraped.
+     */
+    @Bean
+    public MeterBinder indexMetrics(ShardedIndex shardedIndex) {
+        return registry -> {
+            Gauge.builder("engine.index.documents", shardedIndex, ShardedIndex::getDocumentCount)
+                    .description("Indexed documents")
+                    .register(registry);
+            Gauge.builder("engine.index.deleted", shardedIndex, ShardedIndex::getDeletedDocumentCount)
+                    .description("Deleted documents")
+                    .register(registry);
+            Gauge.builder("engine.index.terms", shardedIndex, ShardedIndex::getTermCount)
+                    .description("Dictionary entries over all segments")
+                    .register(registry);
+            Gauge.builder("engine.index.dictionary", shardedIndex, ShardedIndex::getTermDictionaryBytes)
+                    .description("Term dictionary size over all segments")
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("engine.index.postings", shardedIndex, ShardedIndex::getPostingsCount)
+                    .description("Postings over all segments")
+                    .register(registry);
+            Gauge.builder("engine.index.heap", shardedIndex, ShardedIndex::estimateHeapBytes)
+                    .description("Estimated heap used by the index")
+                    .baseUnit("bytes")
+                    .register(registry);
+            FunctionCounter.builder("engine.index.compaction.reclaimed", shardedIndex, ShardedIndex::getReclaimedBytes)
+                    .description("Segment bytes reclaimed by compaction")
+                    .baseUnit("bytes")
+                    .register(registry);
+            FunctionTimer.builder("engine.index.refresh", shardedIndex, ShardedIndex::getRefreshCount,
+                    index -> index.getRefreshTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)
+                    .description("Refreshes publishing a new snapshot for queries")
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,34 @@
+package com.search.engine.config;
+
+import com.search.engine.search.Similarity;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "search")
+public class SearchProperties {
+
+    private int resultCacheSize = 1000;
+
+    private int termCacheSize = 10000;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private int maxExpansions = 64;
+
+    private int snippetBytes = 240;
+
+    private int snippetCacheSize = 1000;
+
+    private int cursorSnapshots = 16;
+
+    private int streamQueueCapacity = 1024;
+
+    private Similarity.Model similarity = Similarity.Model.TFIDF;
+
+    private double bm25K1 = 1.2;
+
+    private double bm25B = 0.75;
+}
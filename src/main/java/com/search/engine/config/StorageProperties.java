@@ -1,5 +1,6 @@
 package com.search.engine.config;
 
+import com.search.engine.index.FsyncPolicy;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -10,4 +11,29 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 public class StorageProperties {
 
     private String location;
+
+    private String indexLocation;
+
+    private int flushThreshold = 1000;
+
+    private int shards = 1;
+
+    private boolean deleteOnShutdown;
+
+    private boolean deduplicateContent;
+
+    private FsyncPolicy walFsyncPolicy = FsyncPolicy.ALWAYS;
+
+    private long walFsyncIntervalMs = 100;
+
+    private long compactionIntervalMs = 60000;
+
+    private double compactionDeletedRatio = 0.1;
+
+    /**
+     * How often a new index snapshot is published for queries, 0 publishes one before every write returns.
+     */
+    private long refreshIntervalMs = 1000;
+
+    private boolean indexPositions;
 }
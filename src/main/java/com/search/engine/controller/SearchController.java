@@ -1,32 +1,150 @@
 package com.search.engine.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.search.engine.dto.CacheStatisticsResponse;
+import com.search.engine.dto.SearchHitResponse;
+import com.search.engine.search.GenerationalCache;
+import com.search.engine.search.Operator;
+import com.search.engine.search.ScoredDocument;
+import com.search.engine.search.SearchPage;
 import com.search.engine.service.DocumentService;
+import com.search.engine.service.SearchEngineService;
+import com.search.engine.service.SnippetService;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static org.springframework.http.ResponseEntity.ok;
 
 @RestController
 public class SearchController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
     private final DocumentService documentService;
+    private final SearchEngineService searchEngineService;
+    private final SnippetService snippetService;
+    private final ObjectWriter hitWriter;
 
-    public SearchController(DocumentService documentService) {
+    public SearchController(DocumentService documentService, SearchEngineService searchEngineService,
+                            SnippetService snippetService, ObjectMapper objectMapper) {
         this.documentService = documentService;
+        this.searchEngineService = searchEngineService;
+        this.snippetService = snippetService;
+        this.hitWriter = objectMapper.writerFor(SearchHitResponse.class);
     }
 
+    /**
+     * Names of the best documents, with {@code snippets=true} every name comes with a highlighted snippet. Unless
+     * paged by offset, the cursor of the next page is returned in the {@value #NEXT_CURSOR_HEADER} header.
+     */
     @GetMapping("/keywords")
-    public ResponseEntity<List<String>> getDocumentsContaining(@RequestParam("keyword") String keyword) {
-        return ok(documentService.findDocumentsContaining(keyword));
+    public ResponseEntity<List<?>> getDocumentsContaining(@RequestParam("keyword") String keyword,
+                                                          @RequestParam(value = "operator", defaultValue = "AND") Operator operator,
+                                                          @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                          @RequestParam(value = "cursor", required = false) String cursor,
+                                                          @RequestParam(value = "limit", defaultValue = "10") int limit,
+                                                          @RequestParam(value = "snippets", defaultValue = "false") boolean snippets) {
+        SearchPage page = documentService.findDocumentsContaining(keyword, operator, offset, cursor, limit);
+        List<ScoredDocument> documents = page.getDocuments();
+        if (!snippets) {
+            return withNextCursor(page).body(documents.stream()
+                    .map(ScoredDocument::getName)
+                    .collect(Collectors.toList()));
+        }
+
+        List<String> documentSnippets = snippetService.getSnippets(keyword, documents);
+        List<SearchHitResponse> hits = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            hits.add(new SearchHitResponse(documents.get(i).getName(), documentSnippets.get(i)));
+        }
+        return withNextCursor(page).body(hits);
+    }
+
+    /**
+     * Same page as {@link #getDocumentsContaining}, written as one JSON object per line with the score of every
+     * document.
+     */
+    @GetMapping(value = "/keywords", produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamDocumentsContaining(@RequestParam("keyword") String keyword,
+                                                                           @RequestParam(value = "operator", defaultValue = "AND") Operator operator,
+                                                                           @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                                           @RequestParam(value = "cursor", required = false) String cursor,
+                                                                           @RequestParam(value = "limit", defaultValue = "10") int limit,
+                                                                           @RequestParam(value = "snippets", defaultValue = "false") boolean snippets) {
+        SearchPage page = documentService.findDocumentsContaining(keyword, operator, offset, cursor, limit);
+        return withNextCursor(page).contentType(MediaType.parseMediaType(APPLICATION_NDJSON)).body(output -> {
+            List<ScoredDocument> documents = page.getDocuments();
+            List<String> documentSnippets = snippets ? snippetService.getSnippets(keyword, documents) : null;
+            for (int i = 0; i < documents.size(); i++) {
+                writeLine(output, new SearchHitResponse(documents.get(i).getName(), documents.get(i).getScore(),
+                        snippets ? documentSnippets.get(i) : null));
+            }
+        });
     }
 
     @GetMapping("/infos")
-    public Map<String, Double> getTFIDFValueFor(@RequestParam("keyword") String keyword) {
-        return documentService.getTFIDF(keyword);
+    public Map<String, Double> getTFIDFValueFor(@RequestParam("keyword") String keyword,
+                                                @RequestParam(value = "operator", defaultValue = "AND") Operator operator) {
+        Map<String, Double> result = new HashMap<>();
+
+        for (ScoredDocument document : documentService.getTFIDF(keyword, operator)) {
+            result.put(document.getName(), document.getScore());
+        }
+
+        return result;
+    }
+
+    /**
+     * Every matching document as one JSON object per line, written while the shards are still scoring.
+     */
+    @GetMapping(value = "/infos", produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamTFIDFValueFor(@RequestParam("keyword") String keyword,
+                                                                     @RequestParam(value = "operator", defaultValue = "AND") Operator operator) {
+        return ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON)).body(output ->
+                documentService.getTFIDF(keyword, operator, document -> {
+                    try {
+                        writeLine(output, new SearchHitResponse(document.getName(), document.getScore(), null));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+    }
+
+    @GetMapping("/stats/cache")
+    public List<CacheStatisticsResponse> getCacheStatistics() {
+        List<GenerationalCache<?, ?>> caches = new ArrayList<>(searchEngineService.getCaches());
+        caches.add(snippetService.getCache());
+        return caches.stream()
+                .map(cache -> new CacheStatisticsResponse(cache.getName(), cache.size(),
+                        cache.getHits(), cache.getMisses(), cache.getEvictions()))
+                .collect(Collectors.toList());
+    }
+
+    private static ResponseEntity.BodyBuilder withNextCursor(SearchPage page) {
+        ResponseEntity.BodyBuilder response = ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor().encode());
+        }
+        return response;
+    }
+
+    private void writeLine(OutputStream output, SearchHitResponse hit) throws IOException {
+        output.write(hitWriter.writeValueAsBytes(hit));
+        output.write('\n');
     }
 }
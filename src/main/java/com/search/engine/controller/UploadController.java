@@ -1,14 +1,21 @@
 package com.search.engine.controller;
 
 import com.search.engine.dto.DocumentResponse;
+import com.search.engine.dto.IngestFileResponse;
+import com.search.engine.dto.IngestJobResponse;
+import com.search.engine.ingest.IngestJob;
 import com.search.engine.service.DocumentService;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.RestController;
+import com.search.engine.service.IngestJobService;
+import com.search.engine.service.StorageService;
+import com.search.engine.service.StoredFile;
+import org.springframework.http.*;
+import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.Arrays;
+import javax.servlet.http.HttpServletRequest;
+import java.nio.channels.Channels;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -16,10 +23,21 @@ import java.util.stream.Collectors;
 @RequestMapping("/files")
 public class UploadController {
 
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final String BYTES = "bytes";
+
     private final DocumentService documentService;
+    private final IngestJobService ingestJobService;
+    private final StorageService storageService;
 
-    public UploadController(DocumentService documentService) {
+    public UploadController(DocumentService documentService, IngestJobService ingestJobService,
+                            StorageService storageService) {
         this.documentService = documentService;
+        this.ingestJobService = ingestJobService;
+        this.storageService = storageService;
     }
 
     @PostMapping("/single")
@@ -31,8 +49,97 @@ public class UploadController {
 
     @PostMapping("/multiple")
     public List<DocumentResponse> uploadFiles(@RequestParam("files") MultipartFile[] files) {
-        return Arrays.stream(files)
-                .map(this::uploadFile)
+        return documentService.processFiles(files);
+    }
+
+    @PostMapping("/async")
+    public ResponseEntity<IngestJobResponse> uploadFilesAsync(@RequestParam("files") MultipartFile[] files) {
+        return ResponseEntity.accepted().body(toResponse(ingestJobService.submit(files)));
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<IngestJobResponse> getJob(@PathVariable String jobId) {
+        return ingestJobService.getJob(jobId)
+                .map(job -> ResponseEntity.ok(toResponse(job)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Serves a stored document, or the single byte range asked for. A matching {@code If-None-Match} gets 304, an
+     * {@code If-Range} that no longer matches, a malformed range or several ranges get the whole file. Tomcat sends
+     * the file with sendfile when its connector supports it. Otherwise the bytes are copied through a small buffer
+     * into the response stream, the servlet output is not a channel the kernel can write to.
+     */
+    @GetMapping("/{name:.+}")
+    public ResponseEntity<StreamingResponseBody> downloadFile(@PathVariable String name,
+                                                              @RequestHeader HttpHeaders headers,
+                                                              HttpServletRequest request) {
+
+        StoredFile file = storageService.getStoredFile(name);
+        if (headers.getIfNoneMatch().contains(file.getETag()) || headers.getIfNoneMatch().contains("*")) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(file.getETag()).build();
+        }
+
+        long start = 0;
+        long length = file.getSize();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        String ifRange = headers.getFirst(HttpHeaders.IF_RANGE);
+        if (file.getSize() > 0 && (ifRange == null || ifRange.equals(file.getETag()))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = headers.getRange();
+            } catch (IllegalArgumentException e) {
+                ranges = Collections.emptyList();
+            }
+            if (ranges.size() == 1) {
+                start = ranges.get(0).getRangeStart(file.getSize());
+                long end = ranges.get(0).getRangeEnd(file.getSize());
+                if (start > end) {
+                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                            .header(HttpHeaders.CONTENT_RANGE, BYTES + " */" + file.getSize())
+                            .build();
+                }
+                length = end - start + 1;
+                response = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).header(HttpHeaders.CONTENT_RANGE,
+                        BYTES + " " + start + "-" + end + "/" + file.getSize());
+            }
+        }
+
+        response.eTag(file.getETag())
+                .lastModified(file.getLastModified())
+                .header(HttpHeaders.ACCEPT_RANGES, BYTES)
+                .contentType(MediaTypeFactory.getMediaType(name).orElse(MediaType.APPLICATION_OCTET_STREAM))
+                .contentLength(length);
+        if (HttpMethod.GET.matches(request.getMethod()) && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.getPath().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + length);
+            return response.build();
+        }
+
+        long position = start;
+        long count = length;
+        return response.body(output -> storageService.transferTo(name, position, count, Channels.newChannel(output)));
+    }
+
+    @PutMapping("/{name:.+}")
+    public DocumentResponse replaceFile(@PathVariable String name, @RequestParam("file") MultipartFile file) {
+
+        documentService.replaceFile(name, file);
+        return new DocumentResponse(name, file.getSize());
+    }
+
+    @DeleteMapping("/{name:.+}")
+    public ResponseEntity<Void> deleteFile(@PathVariable String name) {
+
+        documentService.deleteFile(name);
+        return ResponseEntity.noContent().build();
+    }
+
+    private IngestJobResponse toResponse(IngestJob job) {
+        List<IngestFileResponse> files = job.getFiles().stream()
+                .map(file -> new IngestFileResponse(file.getName(), file.getSize(), file.getStatus(), file.getError()))
                 .collect(Collectors.toList());
+        return new IngestJobResponse(job.getId(), job.getStatus(), files);
     }
 }
@@ -1,5 +1,6 @@
 package com.search.engine.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -11,8 +12,16 @@ public class DocumentResponse {
 
     private long size;
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String error;
+
     public DocumentResponse(String name, long size) {
         this.name = name;
         this.size = size;
     }
+
+    public DocumentResponse(String name, long size, String error) {
+        this(name, size);
+        this.error = error;
+    }
 }
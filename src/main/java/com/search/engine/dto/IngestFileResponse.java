@@ -0,0 +1,27 @@
+package com.search.engine.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.search.engine.ingest.IngestStatus;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class IngestFileResponse {
+
+    private String name;
+
+    private long size;
+
+    private IngestStatus status;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String error;
+
+    public IngestFileResponse(String name, long size, IngestStatus status, String error) {
+        this.name = name;
+        this.size = size;
+        this.status = status;
+        this.error = error;
+    }
+}
@@ -0,0 +1,24 @@
+package com.search.engine.dto;
+
+import com.search.engine.ingest.IngestStatus;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class IngestJobResponse {
+
+    private String jobId;
+
+    private IngestStatus status;
+
+    private List<IngestFileResponse> files;
+
+    public IngestJobResponse(String jobId, IngestStatus status, List<IngestFileResponse> files) {
+        this.jobId = jobId;
+        this.status = status;
+        this.files = files;
+    }
+}
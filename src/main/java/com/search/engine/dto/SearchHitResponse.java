@@ -0,0 +1,28 @@
+package com.search.engine.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class SearchHitResponse {
+
+    private String name;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double score;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String snippet;
+
+    public SearchHitResponse(String name, String snippet) {
+        this.name = name;
+        this.snippet = snippet;
+    }
+
+    public SearchHitResponse(String name, Double score, String snippet) {
+        this(name, snippet);
+        this.score = score;
+    }
+}
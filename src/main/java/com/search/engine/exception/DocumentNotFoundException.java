@@ -0,0 +1,10 @@
+package com.search.engine.exception;
+
+public class DocumentNotFoundException extends RuntimeException {
+
+    public static final String DOCUMENT_NOT_FOUND_ERROR = "There is no document named: ";
+
+    public DocumentNotFoundException(String s) {
+        super(s);
+    }
+}
@@ -0,0 +1,19 @@
+package com.search.engine.exception;
+
+public class IndexException extends RuntimeException {
+
+    public static final String WRITE_SEGMENT_ERROR = "Can't write index segment ";
+    public static final String READ_SEGMENT_ERROR = "Can't read index segment ";
+    public static final String CORRUPTED_SEGMENT_ERROR = "Index segment is corrupted: ";
+    public static final String WRITE_LOG_ERROR = "Can't write to write-ahead log in ";
+    public static final String WRITE_DELETES_ERROR = "Can't write deleted documents ";
+    public static final String READ_DELETES_ERROR = "Can't read deleted documents ";
+
+    public IndexException(String s) {
+        super(s);
+    }
+
+    public IndexException(String s, Throwable cause) {
+        super(s, cause);
+    }
+}
@@ -0,0 +1,10 @@
+package com.search.engine.exception;
+
+public class IngestRejectedException extends RuntimeException {
+
+    public static final String INGEST_QUEUE_FULL_ERROR = "Ingest queue is full, try again later";
+
+    public IngestRejectedException(String s) {
+        super(s);
+    }
+}
@@ -1,5 +1,6 @@
 package com.search.engine.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -15,6 +16,11 @@ public class RESTExceptionHandler extends ResponseEntityExceptionHandler {
         return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(value = {DocumentNotFoundException.class})
+    public ResponseEntity<Object> handleDocumentNotFoundException(Exception ex) {
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+    }
+
     @ExceptionHandler(value = {NullPointerException.class})
     public ResponseEntity<Object> handleNullPointerException() {
         return new ResponseEntity<>("Internal problems", HttpStatus.INTERNAL_SERVER_ERROR);
@@ -24,4 +30,11 @@ public class RESTExceptionHandler extends ResponseEntityExceptionHandler {
     public ResponseEntity<?> handleTooBigFileException(Exception ex) {
         return new ResponseEntity<>("File is too big to upload", HttpStatus.PAYLOAD_TOO_LARGE);
     }
+
+    @ExceptionHandler(value = {IngestRejectedException.class})
+    public ResponseEntity<Object> handleIngestRejectedException(Exception ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ex.getMessage());
+    }
 }
@@ -0,0 +1,87 @@
+package com.search.engine.index;
+
+/**
+ * Heap backed postings with frequencies and, when the index keeps them, encoded positions in parallel arrays.
+ * Entries below {@link #size()} never change once the view is published.
+ */
+public final class ArrayPostings implements Postings {
+
+    static final ArrayPostings EMPTY = new ArrayPostings(new int[0], new int[0], 0, 0);
+
+    private final int[] docIds;
+    private final int[] frequencies;
+    private final byte[][] positions;
+    private final int size;
+    private final double maxTermFrequency;
+
+    ArrayPostings(int[] docIds, int[] frequencies, int size, double maxTermFrequency) {
+        this(docIds, frequencies, null, size, maxTermFrequency);
+    }
+
+    ArrayPostings(int[] docIds, int[] frequencies, byte[][] positions, int size, double maxTermFrequency) {
+        this.docIds = docIds;
+        this.frequencies = frequencies;
+        this.positions = positions;
+        this.size = size;
+        this.maxTermFrequency = maxTermFrequency;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int docId(int index) {
+        return docIds[index];
+    }
+
+    @Override
+    public int frequency(int index) {
+        return frequencies[index];
+    }
+
+    @Override
+    public int[] positions(int index) {
+        return positions != null && positions[index] != null ? Positions.decodePositions(positions[index], frequencies[index]) : null;
+    }
+
+    @Override
+    public int[] offsets(int index) {
+        return positions != null && positions[index] != null ? Positions.decodeOffsets(positions[index], frequencies[index]) : null;
+    }
+
+    @Override
+    public double maxTermFrequency() {
+        return maxTermFrequency;
+    }
+
+    /**
+     * View of the postings of documents below {@code docLimit}, shares the arrays. The upper bound is kept.
+     */
+    ArrayPostings truncate(int docLimit) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (docIds[middle] < docLimit) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low == size ? this : new ArrayPostings(docIds, frequencies, positions, low, maxTermFrequency);
+    }
+
+    int[] docIds() {
+        return docIds;
+    }
+
+    int[] frequencies() {
+        return frequencies;
+    }
+
+    byte[][] encodedPositions() {
+        return positions;
+    }
+}
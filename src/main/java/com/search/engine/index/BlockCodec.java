@@ -0,0 +1,221 @@
+package com.search.engine.index;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Codec of the postings of a term in a mapped segment. Postings are cut into blocks of {@link #BLOCK_SIZE}, the doc
+ * id deltas and the frequencies of a block are each bit packed with the width fitting most of the values. The high
+ * bits of the values that don't fit are kept as exceptions and patched in after unpacking, like in PForDelta.
+ * Postings after the last full block are stored as vints. All ints are big endian, offsets absolute:
+ * <pre>
+ * skip table  per full block (int lastDocId, int endOffset, float maxTermFrequency)
+ * blocks      per full block the doc deltas and then the frequencies, each as (byte bits, byte exceptionCount,
+ *             int[4 * bits] packed values, exceptionCount times (byte index, vint high bits))
+ * tail        per remaining posting (vint delta, vint frequency)
+ * </pre>
+ * Deltas are taken from the previous doc id, {@code docBase - 1} before the first one, and stored minus 1 like the
+ * frequencies, so a dense run of single occurrences packs into 0 bits. The packed ints hold 4 lanes: value
+ * {@code i} is in lane {@code i % 4} at bit {@code (i / 4) * bits} of the lane, and word {@code w} of lane
+ * {@code l} is int {@code 4 * w + l}. Every group of 4 values is unpacked from 4 adjacent ints with the same shift,
+ * a fixed length loop the JIT unrolls into vector operations.
+ */
+final class BlockCodec {
+
+    static final int BLOCK_SIZE = 128;
+    static final int SKIP_ENTRY_SIZE = 3 * Integer.BYTES;
+    private static final int LANES = 4;
+    private static final int ROWS = BLOCK_SIZE / LANES;
+    private static final int MAX_PACKED_INTS = LANES * Integer.SIZE;
+
+    private BlockCodec() {
+    }
+
+    /**
+     * Writes the postings starting at the absolute {@code offset}, every posting must belong to a document with a
+     * positive length.
+     */
+    static void write(Postings postings, int docBase, int[] documentLengths, int offset, ByteArrayOutputStream output) {
+        int blockCount = postings.size() / BLOCK_SIZE;
+        int blocksOffset = offset + SKIP_ENTRY_SIZE * blockCount;
+        ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+        int[] deltas = new int[BLOCK_SIZE];
+        int[] frequencies = new int[BLOCK_SIZE];
+        int previous = docBase - 1;
+        int index = 0;
+
+        for (int block = 0; block < blockCount; block++) {
+            double maxTermFrequency = 0;
+            for (int i = 0; i < BLOCK_SIZE; i++, index++) {
+                int docId = postings.docId(index);
+                int frequency = postings.frequency(index);
+                deltas[i] = docId - previous - 1;
+                frequencies[i] = frequency - 1;
+                maxTermFrequency = Math.max(maxTermFrequency, (double) frequency / documentLengths[docId - docBase]);
+                previous = docId;
+            }
+            writePacked(deltas, blocks);
+            writePacked(frequencies, blocks);
+
+            writeInt(output, previous);
+            writeInt(output, blocksOffset + blocks.size());
+            writeInt(output, Float.floatToIntBits(Math.nextUp((float) maxTermFrequency)));
+        }
+        output.write(blocks.toByteArray(), 0, blocks.size());
+
+        for (; index < postings.size(); index++) {
+            int docId = postings.docId(index);
+            writeVInt(output, docId - previous - 1);
+            writeVInt(output, postings.frequency(index) - 1);
+            previous = docId;
+        }
+    }
+
+    /**
+     * Packs the values with the width taking the fewest bytes once the exceptions are counted.
+     */
+    private static void writePacked(int[] values, ByteArrayOutputStream output) {
+        int bits = 0;
+        int bestSize = Integer.MAX_VALUE;
+        int maxBits = 0;
+        for (int value : values) {
+            maxBits = Math.max(maxBits, bitsRequired(value));
+        }
+        for (int candidate = 0; candidate <= maxBits; candidate++) {
+            int size = LANES * Integer.BYTES * candidate;
+            for (int value : values) {
+                if (bitsRequired(value) > candidate) {
+                    size += 1 + vIntLength(value >>> candidate);
+                }
+            }
+            if (size < bestSize) {
+                bestSize = size;
+                bits = candidate;
+            }
+        }
+
+        int mask = mask(bits);
+        int[] packed = new int[LANES * bits];
+        int exceptionCount = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            if (bitsRequired(values[i]) > bits) {
+                exceptionCount++;
+            }
+            if (bits == 0) {
+                continue;
+            }
+            int bit = (i / LANES) * bits;
+            int word = (bit >>> 5) * LANES + i % LANES;
+            int shift = bit & 31;
+            int value = values[i] & mask;
+            packed[word] |= value << shift;
+            if (shift + bits > Integer.SIZE) {
+                packed[word + LANES] |= value >>> (Integer.SIZE - shift);
+            }
+        }
+
+        output.write(bits);
+        output.write(exceptionCount);
+        for (int word : packed) {
+            writeInt(output, word);
+        }
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            if (bitsRequired(values[i]) > bits) {
+                output.write(i);
+                writeVInt(output, values[i] >>> bits);
+            }
+        }
+    }
+
+    /**
+     * Unpacks one value array of a block into {@code values} and returns the offset following it.
+     */
+    static int readPacked(ByteBuffer buffer, int offset, int[] packed, int[] values) {
+        int bits = buffer.get(offset) & 0xFF;
+        int exceptionCount = buffer.get(offset + 1) & 0xFF;
+        offset += 2;
+
+        int packedInts = LANES * bits;
+        for (int i = 0; i < packedInts; i++) {
+            packed[i] = buffer.getInt(offset + Integer.BYTES * i);
+        }
+        offset += Integer.BYTES * packedInts;
+        unpack(packed, bits, values);
+
+        for (int i = 0; i < exceptionCount; i++) {
+            int index = buffer.get(offset++) & 0xFF;
+            int high = 0;
+            int shift = 0;
+            byte current;
+            do {
+                current = buffer.get(offset++);
+                high |= (current & 0x7F) << shift;
+                shift += 7;
+            } while (current < 0);
+            values[index] |= high << bits;
+        }
+        return offset;
+    }
+
+    static void unpack(int[] packed, int bits, int[] values) {
+        if (bits == 0) {
+            Arrays.fill(values, 0, BLOCK_SIZE, 0);
+            return;
+        }
+
+        int mask = mask(bits);
+        for (int row = 0; row < ROWS; row++) {
+            int bit = row * bits;
+            int word = (bit >>> 5) * LANES;
+            int shift = bit & 31;
+            int out = row * LANES;
+            if (shift + bits <= Integer.SIZE) {
+                for (int lane = 0; lane < LANES; lane++) {
+                    values[out + lane] = (packed[word + lane] >>> shift) & mask;
+                }
+            } else {
+                for (int lane = 0; lane < LANES; lane++) {
+                    values[out + lane] = ((packed[word + lane] >>> shift)
+                            | (packed[word + LANES + lane] << (Integer.SIZE - shift))) & mask;
+                }
+            }
+        }
+    }
+
+    static int[] newPackedBuffer() {
+        return new int[MAX_PACKED_INTS];
+    }
+
+    private static int mask(int bits) {
+        return bits == Integer.SIZE ? -1 : (1 << bits) - 1;
+    }
+
+    private static int bitsRequired(int value) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(value);
+    }
+
+    private static int vIntLength(int value) {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    private static void writeVInt(ByteArrayOutputStream output, int value) {
+        while ((value & ~0x7F) != 0) {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+
+    private static void writeInt(ByteArrayOutputStream output, int value) {
+        output.write(value >>> 24);
+        output.write(value >>> 16);
+        output.write(value >>> 8);
+        output.write(value);
+    }
+}
@@ -0,0 +1,191 @@
+package com.search.engine.index;
+
+import java.nio.ByteBuffer;
+
+import static com.search.engine.index.BlockCodec.BLOCK_SIZE;
+import static com.search.engine.index.BlockCodec.SKIP_ENTRY_SIZE;
+
+/**
+ * Postings of a mapped segment in the {@link BlockCodec} layout. A {@link #reader()} decodes a whole block at once
+ * and keeps it for the following lookups, {@link #advance(int, int)} finds the block from the skip table without
+ * decoding the ones it skips and the block bounds of full blocks come from the skip table alone. The instance
+ * returned by the segment is shared and decodes the block on every call.
+ */
+final class BlockPostings implements Postings {
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int size;
+    private final int docBase;
+    private final double maxTermFrequency;
+    private final int positionsOffset;
+    private final int blockCount;
+    private final DecodedBlock decoded;
+
+    BlockPostings(ByteBuffer buffer, int offset, int size, int docBase, double maxTermFrequency, int positionsOffset) {
+        this(buffer, offset, size, docBase, maxTermFrequency, positionsOffset, null);
+    }
+
+    private BlockPostings(ByteBuffer buffer, int offset, int size, int docBase, double maxTermFrequency,
+                          int positionsOffset, DecodedBlock decoded) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.size = size;
+        this.docBase = docBase;
+        this.maxTermFrequency = maxTermFrequency;
+        this.positionsOffset = positionsOffset;
+        this.blockCount = size / BLOCK_SIZE;
+        this.decoded = decoded;
+    }
+
+    @Override
+    public Postings reader() {
+        return decoded != null ? this
+                : new BlockPostings(buffer, offset, size, docBase, maxTermFrequency, positionsOffset, new DecodedBlock());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int docId(int index) {
+        return decode(index / BLOCK_SIZE).docIds[index % BLOCK_SIZE];
+    }
+
+    @Override
+    public int frequency(int index) {
+        return decode(index / BLOCK_SIZE).frequencies[index % BLOCK_SIZE];
+    }
+
+    /**
+     * Binary searches the last doc ids of the blocks from the one holding {@code fromIndex}, then scans one block.
+     */
+    @Override
+    public int advance(int fromIndex, int target) {
+        int low = fromIndex / BLOCK_SIZE;
+        int high = blockCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (lastDocId(middle) < target) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        int block = low;
+        int index = Math.max(fromIndex, block * BLOCK_SIZE);
+        int end = Math.min(size, (block + 1) * BLOCK_SIZE);
+        int[] docIds = decode(block).docIds;
+        while (index < end && docIds[index % BLOCK_SIZE] < target) {
+            index++;
+        }
+        return index;
+    }
+
+    @Override
+    public int[] positions(int index) {
+        if (positionsOffset == 0) {
+            return null;
+        }
+        int start = buffer.getInt(positionsOffset + Integer.BYTES * index);
+        return start < 0 ? null : Positions.decodePositions(buffer, start, frequency(index));
+    }
+
+    @Override
+    public int[] offsets(int index) {
+        if (positionsOffset == 0) {
+            return null;
+        }
+        int start = buffer.getInt(positionsOffset + Integer.BYTES * index);
+        return start < 0 ? null : Positions.decodeOffsets(buffer, start, frequency(index));
+    }
+
+    @Override
+    public double maxTermFrequency() {
+        return maxTermFrequency;
+    }
+
+    /**
+     * Full blocks come from the skip table, the trailing partial block falls back to the bounds of the whole list.
+     */
+    @Override
+    public int blockCount() {
+        return (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    @Override
+    public int blockLastDocId(int block) {
+        return block < blockCount ? lastDocId(block) : docId(size - 1);
+    }
+
+    @Override
+    public double blockMaxTermFrequency(int block) {
+        return block < blockCount ? buffer.getFloat(offset + SKIP_ENTRY_SIZE * block + 2 * Integer.BYTES)
+                : maxTermFrequency;
+    }
+
+    private int lastDocId(int block) {
+        return buffer.getInt(offset + SKIP_ENTRY_SIZE * block);
+    }
+
+    private int blockStart(int block) {
+        return block == 0 ? offset + SKIP_ENTRY_SIZE * blockCount
+                : buffer.getInt(offset + SKIP_ENTRY_SIZE * (block - 1) + Integer.BYTES);
+    }
+
+    private DecodedBlock decode(int block) {
+        DecodedBlock target = decoded != null ? decoded : new DecodedBlock();
+        if (target.block == block) {
+            return target;
+        }
+
+        int previous = block == 0 ? docBase - 1 : lastDocId(block - 1);
+        int[] docIds = target.docIds;
+        int[] frequencies = target.frequencies;
+        int position = blockStart(block);
+
+        if (block < blockCount) {
+            position = BlockCodec.readPacked(buffer, position, target.packed, docIds);
+            BlockCodec.readPacked(buffer, position, target.packed, frequencies);
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                previous += docIds[i] + 1;
+                docIds[i] = previous;
+                frequencies[i]++;
+            }
+        } else {
+            int[] end = new int[1];
+            for (int i = 0; i < size - block * BLOCK_SIZE; i++) {
+                previous += readVInt(position, end) + 1;
+                docIds[i] = previous;
+                frequencies[i] = readVInt(end[0], end) + 1;
+                position = end[0];
+            }
+        }
+        target.block = block;
+        return target;
+    }
+
+    private int readVInt(int position, int[] end) {
+        int value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = buffer.get(position++);
+            value |= (current & 0x7F) << shift;
+            shift += 7;
+        } while (current < 0);
+        end[0] = position;
+        return value;
+    }
+
+    private static final class DecodedBlock {
+
+        private final int[] docIds = new int[BLOCK_SIZE];
+        private final int[] frequencies = new int[BLOCK_SIZE];
+        private final int[] packed = BlockCodec.newPackedBuffer();
+        private int block = -1;
+    }
+}
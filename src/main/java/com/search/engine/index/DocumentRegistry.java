@@ -0,0 +1,61 @@
+package com.search.engine.index;
+
+import java.util.Arrays;
+
+/**
+ * Assigns dense int ids, starting from the doc base, to uploaded documents and keeps their names and lengths
+ * in arrays indexed by id. Registration is serialized, lookups never lock.
+ */
+public class DocumentRegistry {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int docBase;
+    private volatile Table table = new Table(new String[INITIAL_CAPACITY], new int[INITIAL_CAPACITY]);
+    private volatile int size;
+
+    public DocumentRegistry(int docBase) {
+        this.docBase = docBase;
+    }
+
+    public synchronized int register(String documentName, int length) {
+        Table current = table;
+        int index = size;
+
+        if (index == current.names.length) {
+            current = new Table(Arrays.copyOf(current.names, index * 2), Arrays.copyOf(current.lengths, index * 2));
+        }
+        current.names[index] = documentName;
+        current.lengths[index] = length;
+
+        table = current;
+        size = index + 1;
+        return docBase + index;
+    }
+
+    public String getName(int docId) {
+        return table.names[docId - docBase];
+    }
+
+    public int getLength(int docId) {
+        return table.lengths[docId - docBase];
+    }
+
+    public int getDocBase() {
+        return docBase;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static final class Table {
+        private final String[] names;
+        private final int[] lengths;
+
+        private Table(String[] names, int[] lengths) {
+            this.names = names;
+            this.lengths = lengths;
+        }
+    }
+}
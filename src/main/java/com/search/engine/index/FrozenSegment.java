@@ -0,0 +1,114 @@
+package com.search.engine.index;
+
+import java.util.Arrays;
+
+/**
+ * Read-only copy of the first {@code docCount} documents of a {@link MemorySegment}: the terms in a sorted array
+ * and one {@link ArrayPostings} view per term, cut before the first document left out. The views share the
+ * posting arrays of the buffer, whose entries below a published size never change, so freezing copies no postings.
+ */
+final class FrozenSegment implements IndexSegment {
+
+    private static final int TERM_ENTRY_BYTES = 48;
+
+    private final String[] terms;
+    private final ArrayPostings[] postings;
+    private final DocumentRegistry documentRegistry;
+    private final int docCount;
+    private final long postingsCount;
+
+    FrozenSegment(String[] terms, ArrayPostings[] postings, DocumentRegistry documentRegistry, int docCount) {
+        this.terms = terms;
+        this.postings = postings;
+        this.documentRegistry = documentRegistry;
+        this.docCount = docCount;
+
+        long count = 0;
+        for (ArrayPostings termPostings : postings) {
+            count += termPostings.size();
+        }
+        this.postingsCount = count;
+    }
+
+    @Override
+    public int getDocBase() {
+        return documentRegistry.getDocBase();
+    }
+
+    @Override
+    public int getDocCount() {
+        return docCount;
+    }
+
+    @Override
+    public Postings getPostings(String term) {
+        int index = Arrays.binarySearch(terms, term);
+        return index >= 0 ? postings[index] : null;
+    }
+
+    @Override
+    public String getDocumentName(int docId) {
+        return documentRegistry.getName(docId);
+    }
+
+    @Override
+    public int getDocumentLength(int docId) {
+        return documentRegistry.getLength(docId);
+    }
+
+    @Override
+    public int getTermCount() {
+        return terms.length;
+    }
+
+    @Override
+    public long getPostingsCount() {
+        return postingsCount;
+    }
+
+    /**
+     * Only the term and view arrays, terms, postings and documents belong to the buffer.
+     */
+    @Override
+    public long estimateHeapBytes() {
+        return (long) terms.length * TERM_ENTRY_BYTES;
+    }
+
+    @Override
+    public long getTermDictionaryBytes() {
+        return (long) terms.length * TERM_ENTRY_BYTES;
+    }
+
+    @Override
+    public TermsEnum terms() {
+        return new FrozenTermsEnum();
+    }
+
+    private final class FrozenTermsEnum implements TermsEnum {
+
+        private int index = -1;
+
+        @Override
+        public boolean seekCeil(String target) {
+            int found = Arrays.binarySearch(terms, target);
+            index = found >= 0 ? found : -found - 1;
+            return index < terms.length;
+        }
+
+        @Override
+        public boolean next() {
+            index++;
+            return index < terms.length;
+        }
+
+        @Override
+        public String term() {
+            return index < terms.length ? terms[index] : null;
+        }
+
+        @Override
+        public Postings postings() {
+            return postings[index];
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.search.engine.index;
+
+public enum FsyncPolicy {
+
+    /**
+     * Every operation is forced to disk before it is acknowledged, concurrent writers share one fsync.
+     */
+    ALWAYS,
+
+    /**
+     * A background thread forces the log every {@code wal-fsync-interval-ms}.
+     */
+    INTERVAL,
+
+    /**
+     * The log is forced only when it is rotated or closed, otherwise the OS decides.
+     */
+    OS
+}
@@ -0,0 +1,30 @@
+package com.search.engine.index;
+
+/**
+ * Part of the index holding documents with ids in {@code [docBase, docBase + docCount)}.
+ */
+public interface IndexSegment {
+
+    int getDocBase();
+
+    int getDocCount();
+
+    Postings getPostings(String term);
+
+    String getDocumentName(int docId);
+
+    int getDocumentLength(int docId);
+
+    int getTermCount();
+
+    long getPostingsCount();
+
+    long estimateHeapBytes();
+
+    /**
+     * Bytes taken by the term dictionary, on or off the heap.
+     */
+    long getTermDictionaryBytes();
+
+    TermsEnum terms();
+}
@@ -0,0 +1,226 @@
+package com.search.engine.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.search.engine.index.InvertedIndex.POSITIONS_DISABLED_ERROR;
+
+/**
+ * Immutable view of one {@link InvertedIndex}: its segments with the buffer frozen, and frozen deletes. Two
+ * snapshots of one index with the same generation hold the same documents.
+ */
+public final class IndexSnapshot {
+
+    private final List<IndexSegment> segments;
+    private final LiveDocs liveDocs;
+    private final int documentCount;
+    private final long generation;
+    private final boolean indexPositions;
+    private volatile long totalDocumentLength = -1;
+    private volatile int[] deletedCounts;
+
+    IndexSnapshot(List<IndexSegment> segments, LiveDocs liveDocs, int documentCount, long generation,
+                  boolean indexPositions) {
+        this.segments = segments;
+        this.liveDocs = liveDocs;
+        this.documentCount = documentCount;
+        this.generation = generation;
+        this.indexPositions = indexPositions;
+    }
+
+    public List<Postings> getPostings(String term) {
+        List<Postings> result = new ArrayList<>();
+
+        for (IndexSegment segment : segments) {
+            Postings postings = segment.getPostings(term);
+            if (postings != null && postings.size() > 0) {
+                result.add(postings);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Live documents holding the phrase, with the phrase occurrences as frequencies. Positions are only read for
+     * documents holding every term, see {@link PhraseMatcher} for the slop.
+     */
+    public List<Postings> getPhrasePostings(List<String> terms, int slop) {
+        if (!indexPositions) {
+            throw new IllegalArgumentException(POSITIONS_DISABLED_ERROR);
+        }
+
+        PostingsIterator[] iterators = new PostingsIterator[terms.size()];
+        PostingsIterator lead = null;
+        for (int i = 0; i < iterators.length; i++) {
+            iterators[i] = new PostingsIterator(getPostings(terms.get(i)));
+            if (lead == null || iterators[i].cost() < lead.cost()) {
+                lead = iterators[i];
+            }
+        }
+        if (lead.cost() == 0) {
+            return Collections.emptyList();
+        }
+
+        int[] docIds = new int[lead.cost()];
+        int[] frequencies = new int[lead.cost()];
+        int[][] positions = new int[iterators.length][];
+        int size = 0;
+        double maxTermFrequency = 0;
+
+        int docId = lead.nextDoc();
+        while (docId != PostingsIterator.NO_MORE_DOCS) {
+            int candidate = docId;
+            for (int i = 0; i < iterators.length && candidate == docId; i++) {
+                candidate = iterators[i].advance(docId);
+            }
+            if (candidate != docId) {
+                docId = lead.advance(candidate);
+                continue;
+            }
+
+            if (liveDocs.isLive(docId)) {
+                for (int i = 0; i < iterators.length; i++) {
+                    positions[i] = iterators[i].positions();
+                }
+                int frequency = PhraseMatcher.count(positions, slop);
+                if (frequency > 0) {
+                    docIds[size] = docId;
+                    frequencies[size++] = frequency;
+                    maxTermFrequency = Math.max(maxTermFrequency, (double) frequency / getDocumentLength(docId));
+                }
+            }
+            docId = lead.nextDoc();
+        }
+        return size == 0 ? Collections.emptyList()
+                : Collections.singletonList(new ArrayPostings(docIds, frequencies, size, maxTermFrequency));
+    }
+
+    /**
+     * UTF-8 byte offsets of the term in the document, {@code null} when the document doesn't hold the term or
+     * was indexed without positions.
+     */
+    public int[] getOffsets(int docId, String term) {
+        Postings postings = findSegment(docId).getPostings(term);
+        if (postings == null) {
+            return null;
+        }
+
+        Postings reader = postings.reader();
+        int index = reader.advance(0, docId);
+        return index < reader.size() && reader.docId(index) == docId ? reader.offsets(index) : null;
+    }
+
+    public String getDocumentName(int docId) {
+        return findSegment(docId).getDocumentName(docId);
+    }
+
+    public int getDocumentLength(int docId) {
+        return findSegment(docId).getDocumentLength(docId);
+    }
+
+    public boolean isLive(int docId) {
+        return liveDocs.isLive(docId);
+    }
+
+    /**
+     * Number of documents that are not deleted.
+     */
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Sum of the lengths of the live documents, computed on first use.
+     */
+    public long getTotalDocumentLength() {
+        long total = totalDocumentLength;
+        if (total < 0) {
+            total = 0;
+            for (IndexSegment segment : segments) {
+                int end = segment.getDocBase() + segment.getDocCount();
+                for (int docId = segment.getDocBase(); docId < end; docId++) {
+                    if (liveDocs.isLive(docId)) {
+                        total += segment.getDocumentLength(docId);
+                    }
+                }
+            }
+            totalDocumentLength = total;
+        }
+        return total;
+    }
+
+    /**
+     * Number of live documents in the postings, only segments with deletes are decoded.
+     */
+    public int getDocumentFrequency(List<Postings> postings) {
+        int documentFrequency = 0;
+
+        for (Postings segmentPostings : postings) {
+            if (liveDocs.getDeletedCount() == 0 || segmentPostings.size() == 0
+                    || getDeletedCount(segmentPostings.docId(0)) == 0) {
+                documentFrequency += segmentPostings.size();
+                continue;
+            }
+            Postings reader = segmentPostings.reader();
+            for (int i = 0; i < reader.size(); i++) {
+                if (liveDocs.isLive(reader.docId(i))) {
+                    documentFrequency++;
+                }
+            }
+        }
+        return documentFrequency;
+    }
+
+    private int getDeletedCount(int docId) {
+        int[] counts = deletedCounts;
+        if (counts == null) {
+            counts = new int[segments.size()];
+            for (int i = 0; i < counts.length; i++) {
+                IndexSegment segment = segments.get(i);
+                counts[i] = liveDocs.getDeletedCount(segment.getDocBase(), segment.getDocBase() + segment.getDocCount());
+            }
+            deletedCounts = counts;
+        }
+        return counts[findSegmentIndex(docId)];
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * One cursor per segment over its sorted terms.
+     */
+    public List<TermsEnum> getTermsEnums() {
+        List<TermsEnum> termsEnums = new ArrayList<>(segments.size());
+        for (IndexSegment segment : segments) {
+            termsEnums.add(segment.terms());
+        }
+        return termsEnums;
+    }
+
+    public List<IndexSegment> getSegments() {
+        return segments;
+    }
+
+    private IndexSegment findSegment(int docId) {
+        return segments.get(findSegmentIndex(docId));
+    }
+
+    private int findSegmentIndex(int docId) {
+        int low = 0;
+        int high = segments.size() - 1;
+
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (segments.get(middle).getDocBase() <= docId) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+}
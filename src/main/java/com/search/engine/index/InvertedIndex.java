@@ -0,0 +1,606 @@
+package com.search.engine.index;
+
+import com.search.engine.analysis.TermFrequencies;
+import com.search.engine.config.StorageProperties;
+import com.search.engine.exception.IndexException;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.search.engine.exception.IndexException.WRITE_SEGMENT_ERROR;
+
+/**
+ * Memory mapped segments plus one in-memory buffer backed by the {@link WriteAheadLog}. Locks are taken in the
+ * order flushLock, bufferLock, appendLock, publishLock. Queries read the {@link IndexSnapshot} of the last
+ * {@link #refresh()} and take none of them.
+ */
+public class InvertedIndex {
+
+    public static final String SEGMENT_SUFFIX = ".seg";
+    private static final String SEGMENT_NAME_FORMAT = "%010d" + SEGMENT_SUFFIX;
+    private static final String COMPACTED_SEGMENT_NAME_FORMAT = "%010d_%d" + SEGMENT_SUFFIX;
+    private static final char COMPACTION_SEPARATOR = '_';
+    public static final String POSITIONS_DISABLED_ERROR = "Phrase queries need storage.index-positions=true";
+    private static final String DELETES_FILE = "deleted.docs";
+
+    private final Path directory;
+    private final int flushThreshold;
+    private final double compactionDeletedRatio;
+    private final boolean indexPositions;
+    private final boolean deleteOnClose;
+    private final WriteAheadLog writeAheadLog;
+    private final ReentrantReadWriteLock bufferLock = new ReentrantReadWriteLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Object appendLock = new Object();
+    private final Object refreshLock = new Object();
+    private final Object publishLock = new Object();
+    private final NavigableMap<Integer, Integer> appliedBatches = new TreeMap<>();
+    private final Map<String, Integer> docIdsByName = new ConcurrentHashMap<>();
+    private final AtomicInteger documentCount = new AtomicInteger();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+    private final RetiredSegments retiredSegments = new RetiredSegments();
+    private volatile LiveDocs liveDocs = new LiveDocs();
+    private volatile IndexState state = new IndexState(Collections.emptyList(), new MemorySegment(0));
+    private volatile AppliedState applied;
+    private volatile IndexSnapshot snapshot;
+    private AppliedState snapshotApplied;
+    private int appliedDocCount;
+
+    public InvertedIndex(StorageProperties storageProperties) {
+        this(Paths.get(storageProperties.getIndexLocation()), storageProperties);
+    }
+
+    public InvertedIndex(Path directory, StorageProperties storageProperties) {
+        this.directory = directory;
+        this.flushThreshold = storageProperties.getFlushThreshold();
+        this.compactionDeletedRatio = storageProperties.getCompactionDeletedRatio();
+        this.indexPositions = storageProperties.isIndexPositions();
+        this.deleteOnClose = storageProperties.isDeleteOnShutdown();
+        this.writeAheadLog = new WriteAheadLog(directory, storageProperties.getWalFsyncPolicy(),
+                storageProperties.getWalFsyncIntervalMs());
+    }
+
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+
+        Map<Integer, Path> segmentFiles = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                Path kept = segmentFiles.get(docBaseOf(file));
+                if (kept != null && compactionsOf(kept) > compactionsOf(file)) {
+                    Files.delete(file);
+                    continue;
+                }
+                if (kept != null) {
+                    Files.delete(kept);
+                }
+                segmentFiles.put(docBaseOf(file), file);
+            }
+        }
+        List<IndexSegment> segments = new ArrayList<>();
+        for (Path file : segmentFiles.values()) {
+            segments.add(MappedSegment.open(file));
+        }
+        segments.sort((first, second) -> Integer.compare(first.getDocBase(), second.getDocBase()));
+
+        int nextDocId = segments.isEmpty() ? 0 : last(segments).getDocBase() + last(segments).getDocCount();
+        documentCount.set(nextDocId);
+        liveDocs = LiveDocs.read(directory.resolve(DELETES_FILE));
+        state = new IndexState(segments, new MemorySegment(nextDocId, indexPositions));
+        for (IndexSegment segment : segments) {
+            for (int docId = segment.getDocBase(); docId < segment.getDocBase() + segment.getDocCount(); docId++) {
+                if (liveDocs.isLive(docId)) {
+                    docIdsByName.put(segment.getDocumentName(docId), docId);
+                }
+            }
+        }
+
+        if (writeAheadLog.replay(nextDocId, new ReplayConsumer()) > 0) {
+            flush();
+        } else {
+            writeAheadLog.rotate(nextDocId);
+        }
+        writeAheadLog.deleteBefore(state.getBuffer().getDocBase());
+        synchronized (publishLock) {
+            appliedDocCount = state.getBuffer().getDocCount();
+            publish(true);
+        }
+        refresh();
+    }
+
+    public void close() throws IOException {
+        if (deleteOnClose) {
+            writeAheadLog.close();
+            FileSystemUtils.deleteRecursively(directory);
+        } else {
+            flush();
+            writeAheadLog.close();
+        }
+    }
+
+    public int addDocument(String documentName, TermFrequencies termFrequencies) {
+        return addDocuments(Collections.singletonList(documentName), Collections.singletonList(termFrequencies))[0];
+    }
+
+    /**
+     * Adds the documents under one buffer lock acquisition and one log write, returns their doc ids in order.
+     */
+    public int[] addDocuments(List<String> documentNames, List<TermFrequencies> termFrequencies) {
+        int[] docIds = new int[documentNames.size()];
+        long logPosition;
+
+        bufferLock.readLock().lock();
+        try {
+            MemorySegment buffer = state.getBuffer();
+            synchronized (appendLock) {
+                logPosition = writeAheadLog.appendAddDocuments(documentNames, termFrequencies);
+                registerDocuments(buffer, documentNames, termFrequencies, docIds);
+            }
+            for (int i = 0; i < docIds.length; i++) {
+                buffer.addPostings(docIds[i], termFrequencies.get(i));
+            }
+            publishBatch(buffer, docIds, false);
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+        writeAheadLog.awaitDurable(logPosition);
+        documentCount.addAndGet(docIds.length);
+        flushIfFull();
+
+        return docIds;
+    }
+
+    /**
+     * Deletes the live document with the given name, returns {@code false} when there is none.
+     */
+    public boolean deleteDocument(String documentName) {
+        long logPosition;
+
+        bufferLock.readLock().lock();
+        try {
+            synchronized (appendLock) {
+                Integer docId = docIdsByName.get(documentName);
+                if (docId == null) {
+                    return false;
+                }
+                logPosition = writeAheadLog.appendDeleteDocument(docId);
+                applyDelete(docId);
+            }
+            publishBatch(state.getBuffer(), new int[0], true);
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+        writeAheadLog.awaitDurable(logPosition);
+
+        return true;
+    }
+
+    /**
+     * The delete and the add are logged and registered together, so no query sees the name twice.
+     */
+    public int replaceDocument(String documentName, TermFrequencies termFrequencies) {
+        List<String> documentNames = Collections.singletonList(documentName);
+        List<TermFrequencies> documentTermFrequencies = Collections.singletonList(termFrequencies);
+        int[] docIds = new int[1];
+        long logPosition;
+        Integer previousDocId;
+
+        bufferLock.readLock().lock();
+        try {
+            MemorySegment buffer = state.getBuffer();
+            synchronized (appendLock) {
+                previousDocId = docIdsByName.get(documentName);
+                if (previousDocId != null) {
+                    writeAheadLog.appendDeleteDocument(previousDocId);
+                    applyDelete(previousDocId);
+                }
+                logPosition = writeAheadLog.appendAddDocuments(documentNames, documentTermFrequencies);
+                registerDocuments(buffer, documentNames, documentTermFrequencies, docIds);
+            }
+            buffer.addPostings(docIds[0], termFrequencies);
+            publishBatch(buffer, docIds, previousDocId != null);
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+        writeAheadLog.awaitDurable(logPosition);
+        documentCount.incrementAndGet();
+        flushIfFull();
+
+        return docIds[0];
+    }
+
+    /**
+     * Called in log order under the append lock, so replayed documents get the same ids.
+     */
+    private void registerDocuments(MemorySegment buffer, List<String> documentNames,
+                                   List<TermFrequencies> termFrequencies, int[] docIds) {
+        for (int i = 0; i < docIds.length; i++) {
+            docIds[i] = buffer.registerDocument(documentNames.get(i), termFrequencies.get(i).getTotalTerms());
+            docIdsByName.put(documentNames.get(i), docIds[i]);
+        }
+    }
+
+    /**
+     * Batches finish out of order, the applied doc count only covers batches without a gap before them. Holds
+     * the buffer read lock, so the buffer can't be swapped meanwhile.
+     */
+    private void publishBatch(MemorySegment buffer, int[] docIds, boolean deleted) {
+        synchronized (publishLock) {
+            if (docIds.length > 0) {
+                appliedBatches.put(docIds[0] - buffer.getDocBase(), docIds[docIds.length - 1] + 1 - buffer.getDocBase());
+                Integer end;
+                while ((end = appliedBatches.remove(appliedDocCount)) != null) {
+                    appliedDocCount = end;
+                }
+            }
+            publish(deleted);
+        }
+    }
+
+    private void publish(boolean deleted) {
+        applied = new AppliedState(state, appliedDocCount, generation.incrementAndGet(),
+                deleted || applied == null ? liveDocs.snapshot() : applied.liveDocs);
+    }
+
+    private void applyDelete(int docId) {
+        if (liveDocs.delete(docId) && docId < state.getBuffer().getDocBase() + state.getBuffer().getDocCount()) {
+            docIdsByName.remove(getDocumentName(docId), docId);
+        }
+    }
+
+    private void flushIfFull() {
+        if (state.getBuffer().getDocCount() >= flushThreshold && flushLock.tryLock()) {
+            try {
+                if (state.getBuffer().getDocCount() >= flushThreshold) {
+                    flushBuffer();
+                }
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushBuffer();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushBuffer() {
+        MemorySegment flushedBuffer;
+
+        bufferLock.writeLock().lock();
+        try {
+            flushedBuffer = state.getBuffer();
+            if (flushedBuffer.getDocCount() == 0) {
+                liveDocs.write(directory.resolve(DELETES_FILE));
+                writeAheadLog.rotate(flushedBuffer.getDocBase());
+                return;
+            }
+            MemorySegment newBuffer = new MemorySegment(flushedBuffer.getDocBase() + flushedBuffer.getDocCount(), indexPositions);
+            writeAheadLog.rotate(newBuffer.getDocBase());
+            state = state.withBuffer(newBuffer);
+            synchronized (publishLock) {
+                appliedBatches.clear();
+                appliedDocCount = 0;
+                publish(false);
+            }
+        } finally {
+            bufferLock.writeLock().unlock();
+        }
+
+        Path file = directory.resolve(String.format(SEGMENT_NAME_FORMAT, flushedBuffer.getDocBase()));
+        SegmentWriter.write(flushedBuffer, liveDocs, file);
+        liveDocs.write(directory.resolve(DELETES_FILE));
+        synchronized (publishLock) {
+            state = state.replace(flushedBuffer, MappedSegment.open(file));
+            publish(false);
+        }
+        writeAheadLog.delete(flushedBuffer.getDocBase());
+    }
+
+    /**
+     * Rewrites segments with at least {@code compactionDeletedRatio} deleted documents, returns the bytes
+     * reclaimed. The old file is retired until no snapshot maps it, after a crash the most compacted file wins.
+     */
+    public long compact() {
+        long reclaimed = 0;
+
+        flushLock.lock();
+        try {
+            retiredSegments.deleteUnreferenced();
+            for (IndexSegment segment : state.getSegments()) {
+                if (!(segment instanceof MappedSegment)) {
+                    continue;
+                }
+                MappedSegment mappedSegment = (MappedSegment) segment;
+                int deletedDocuments = countUncompactedDeletes(mappedSegment);
+                if (deletedDocuments == 0 || deletedDocuments < compactionDeletedRatio * mappedSegment.getDocCount()) {
+                    continue;
+                }
+
+                Path file = directory.resolve(String.format(COMPACTED_SEGMENT_NAME_FORMAT,
+                        mappedSegment.getDocBase(), compactionsOf(mappedSegment.getFile()) + 1));
+                SegmentWriter.write(mappedSegment, liveDocs, file);
+                MappedSegment compactedSegment = MappedSegment.open(file);
+                synchronized (publishLock) {
+                    state = state.replace(mappedSegment, compactedSegment);
+                    publish(false);
+                }
+                retiredSegments.retire(mappedSegment);
+                reclaimed += Files.size(mappedSegment.getFile()) - Files.size(file);
+            }
+        } catch (IOException e) {
+            throw new IndexException(WRITE_SEGMENT_ERROR + directory, e);
+        } finally {
+            flushLock.unlock();
+        }
+
+        reclaimedBytes.addAndGet(reclaimed);
+        return reclaimed;
+    }
+
+    /**
+     * Deleted documents of a compacted segment are left with length 0.
+     */
+    private int countUncompactedDeletes(MappedSegment segment) {
+        int count = 0;
+        for (int docId : liveDocs.getDeletedDocIds()) {
+            if (docId >= segment.getDocBase() && docId < segment.getDocBase() + segment.getDocCount()
+                    && segment.getDocumentLength(docId) > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns {@code false} when the applied state was already published. Never takes the buffer lock.
+     */
+    public boolean refresh() {
+        synchronized (refreshLock) {
+            AppliedState current = applied;
+            if (snapshot != null && current == snapshotApplied) {
+                return false;
+            }
+
+            List<IndexSegment> segments = current.state.getSegments();
+            List<IndexSegment> snapshotSegments = new ArrayList<>(segments.subList(0, segments.size() - 1));
+            MemorySegment buffer = current.state.getBuffer();
+            if (current.bufferDocCount > 0) {
+                snapshotSegments.add(buffer.freeze(current.bufferDocCount));
+            }
+            int documentCount = buffer.getDocBase() + current.bufferDocCount - current.liveDocs.getDeletedCount();
+
+            snapshot = new IndexSnapshot(Collections.unmodifiableList(snapshotSegments), current.liveDocs,
+                    documentCount, current.generation, indexPositions);
+            snapshotApplied = current;
+            retiredSegments.deleteUnreferenced();
+            return true;
+        }
+    }
+
+    /**
+     * The snapshot published by the last {@link #refresh()}.
+     */
+    public IndexSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Unfrozen view of the current state, not safe for queries.
+     */
+    private IndexSnapshot currentView() {
+        return new IndexSnapshot(state.getSegments(), liveDocs, getDocumentCount(), generation.get(), indexPositions);
+    }
+
+    public List<Postings> getPostings(String term) {
+        return currentView().getPostings(term);
+    }
+
+    public List<Postings> getPhrasePostings(List<String> terms, int slop) {
+        return currentView().getPhrasePostings(terms, slop);
+    }
+
+    public int[] getOffsets(int docId, String term) {
+        return currentView().getOffsets(docId, term);
+    }
+
+    public boolean isIndexPositions() {
+        return indexPositions;
+    }
+
+    public String getDocumentName(int docId) {
+        return currentView().getDocumentName(docId);
+    }
+
+    public int getDocumentLength(int docId) {
+        return currentView().getDocumentLength(docId);
+    }
+
+    public boolean isLive(int docId) {
+        return liveDocs.isLive(docId);
+    }
+
+    public boolean containsDocument(String documentName) {
+        return docIdsByName.containsKey(documentName);
+    }
+
+    /**
+     * Number of documents that are not deleted.
+     */
+    public int getDocumentCount() {
+        return documentCount.get() - liveDocs.getDeletedCount();
+    }
+
+    public int getDeletedDocumentCount() {
+        return liveDocs.getDeletedCount();
+    }
+
+    public int getDocumentFrequency(List<Postings> postings) {
+        return currentView().getDocumentFrequency(postings);
+    }
+
+    public long getReclaimedBytes() {
+        return reclaimedBytes.get();
+    }
+
+    /**
+     * Changes whenever a document is added or deleted, snapshots of another generation hold other documents.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public int getTermCount() {
+        int termCount = 0;
+        for (IndexSegment segment : state.getSegments()) {
+            termCount += segment.getTermCount();
+        }
+        return termCount;
+    }
+
+    public long getPostingsCount() {
+        long postingsCount = 0;
+        for (IndexSegment segment : state.getSegments()) {
+            postingsCount += segment.getPostingsCount();
+        }
+        return postingsCount;
+    }
+
+    public long estimateHeapBytes() {
+        long heapBytes = 0;
+        for (IndexSegment segment : state.getSegments()) {
+            heapBytes += segment.estimateHeapBytes();
+        }
+        return heapBytes;
+    }
+
+    public long getTermDictionaryBytes() {
+        long dictionaryBytes = 0;
+        for (IndexSegment segment : state.getSegments()) {
+            dictionaryBytes += segment.getTermDictionaryBytes();
+        }
+        return dictionaryBytes;
+    }
+
+    /**
+     * One cursor per segment over its sorted terms.
+     */
+    public List<TermsEnum> getTermsEnums() {
+        return currentView().getTermsEnums();
+    }
+
+    public List<IndexSegment> getSegments() {
+        return state.getSegments();
+    }
+
+    /**
+     * Deletes the files of compacted away segments that no snapshot reads anymore, returns how many are still kept.
+     */
+    public int deleteRetiredSegments() {
+        return retiredSegments.deleteUnreferenced();
+    }
+
+    private static int docBaseOf(Path segmentFile) {
+        String name = segmentFile.getFileName().toString();
+        int end = name.indexOf(COMPACTION_SEPARATOR);
+        return Integer.parseInt(name.substring(0, end < 0 ? name.length() - SEGMENT_SUFFIX.length() : end));
+    }
+
+    private static int compactionsOf(Path segmentFile) {
+        String name = segmentFile.getFileName().toString();
+        int start = name.indexOf(COMPACTION_SEPARATOR);
+        return start < 0 ? 0 : Integer.parseInt(name.substring(start + 1, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static IndexSegment last(List<IndexSegment> segments) {
+        return segments.get(segments.size() - 1);
+    }
+
+    private final class ReplayConsumer implements WriteAheadLog.RecordConsumer {
+
+        @Override
+        public void addDocument(String documentName, TermFrequencies termFrequencies) {
+            docIdsByName.put(documentName, state.getBuffer().addDocument(documentName, termFrequencies));
+            documentCount.incrementAndGet();
+        }
+
+        @Override
+        public void deleteDocument(int docId) {
+            applyDelete(docId);
+        }
+    }
+
+    /**
+     * Everything {@link #refresh()} reads. Buffer documents below {@code bufferDocCount} have all their postings.
+     */
+    private static final class AppliedState {
+
+        private final IndexState state;
+        private final int bufferDocCount;
+        private final long generation;
+        private final LiveDocs liveDocs;
+
+        private AppliedState(IndexState state, int bufferDocCount, long generation, LiveDocs liveDocs) {
+            this.state = state;
+            this.bufferDocCount = bufferDocCount;
+            this.generation = generation;
+            this.liveDocs = liveDocs;
+        }
+    }
+
+    /**
+     * Segments ordered by doc base, the current buffer is always the last one.
+     */
+    private static final class IndexState {
+
+        private final List<IndexSegment> segments;
+        private final MemorySegment buffer;
+
+        private IndexState(List<IndexSegment> flushedSegments, MemorySegment buffer) {
+            List<IndexSegment> allSegments = new ArrayList<>(flushedSegments);
+            allSegments.add(buffer);
+            this.segments = Collections.unmodifiableList(allSegments);
+            this.buffer = buffer;
+        }
+
+        private IndexState withBuffer(MemorySegment newBuffer) {
+            return new IndexState(segments, newBuffer);
+        }
+
+        private IndexState replace(IndexSegment oldSegment, IndexSegment newSegment) {
+            List<IndexSegment> flushedSegments = new ArrayList<>(segments.subList(0, segments.size() - 1));
+            flushedSegments.set(flushedSegments.indexOf(oldSegment), newSegment);
+            return new IndexState(flushedSegments, buffer);
+        }
+
+        private List<IndexSegment> getSegments() {
+            return segments;
+        }
+
+        private MemorySegment getBuffer() {
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.search.engine.index;
+
+import com.search.engine.exception.IndexException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.search.engine.exception.IndexException.READ_DELETES_ERROR;
+import static com.search.engine.exception.IndexException.WRITE_DELETES_ERROR;
+
+/**
+ * Bitset of deleted doc ids, every id not marked is live. The bits live in fixed size pages allocated on the first
+ * delete in their range, so growing never copies bits. Deletes are serialized, lookups never lock.
+ * A {@link #snapshot()} shares the pages, the first later delete in a shared page copies it.
+ * The file form is {@code count} followed by the deleted ids in ascending order.
+ */
+public class LiveDocs {
+
+    private static final int PAGE_SHIFT = 16;
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+    private static final int PAGE_WORDS = (1 << PAGE_SHIFT) / Long.SIZE;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private volatile AtomicLongArray[] pages = new AtomicLongArray[0];
+    private volatile int deletedCount;
+    private boolean[] ownedPages = new boolean[0];
+
+    public LiveDocs() {
+    }
+
+    private LiveDocs(AtomicLongArray[] pages, int deletedCount) {
+        this.pages = pages;
+        this.deletedCount = deletedCount;
+    }
+
+    public static LiveDocs read(Path file) {
+        LiveDocs liveDocs = new LiveDocs();
+        if (!Files.exists(file)) {
+            return liveDocs;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                liveDocs.delete(input.readInt());
+            }
+        } catch (IOException e) {
+            throw new IndexException(READ_DELETES_ERROR + file, e);
+        }
+        return liveDocs;
+    }
+
+    public boolean isLive(int docId) {
+        AtomicLongArray[] currentPages = pages;
+        int page = docId >>> PAGE_SHIFT;
+        if (page >= currentPages.length || currentPages[page] == null) {
+            return true;
+        }
+        return (currentPages[page].get((docId & PAGE_MASK) >>> 6) & (1L << docId)) == 0;
+    }
+
+    /**
+     * Returns {@code false} when the document was already deleted.
+     */
+    public synchronized boolean delete(int docId) {
+        int page = docId >>> PAGE_SHIFT;
+        AtomicLongArray[] currentPages = pages;
+        if (page >= currentPages.length) {
+            currentPages = Arrays.copyOf(currentPages, page + 1);
+        }
+        if (page >= ownedPages.length) {
+            ownedPages = Arrays.copyOf(ownedPages, currentPages.length);
+        }
+        if (currentPages[page] == null) {
+            currentPages[page] = new AtomicLongArray(PAGE_WORDS);
+            ownedPages[page] = true;
+        }
+
+        int word = (docId & PAGE_MASK) >>> 6;
+        long bits = currentPages[page].get(word);
+        if ((bits & (1L << docId)) != 0) {
+            pages = currentPages;
+            return false;
+        }
+        if (!ownedPages[page]) {
+            currentPages[page] = copy(currentPages[page]);
+            ownedPages[page] = true;
+        }
+        pages = currentPages;
+        currentPages[page].set(word, bits | (1L << docId));
+        deletedCount++;
+        return true;
+    }
+
+    /**
+     * Frozen copy of the current deletes. Costs a copy of the page table, pages are copied lazily by later deletes.
+     */
+    public synchronized LiveDocs snapshot() {
+        AtomicLongArray[] currentPages = pages;
+        ownedPages = new boolean[currentPages.length];
+        return new LiveDocs(currentPages.clone(), deletedCount);
+    }
+
+    private static AtomicLongArray copy(AtomicLongArray page) {
+        long[] words = new long[PAGE_WORDS];
+        for (int word = 0; word < PAGE_WORDS; word++) {
+            words[word] = page.get(word);
+        }
+        return new AtomicLongArray(words);
+    }
+
+    public int getDeletedCount() {
+        return deletedCount;
+    }
+
+    /**
+     * Deleted ids from {@code fromDocId} inclusive to {@code toDocId} exclusive.
+     */
+    public int getDeletedCount(int fromDocId, int toDocId) {
+        AtomicLongArray[] currentPages = pages;
+        int count = 0;
+        for (int docId = fromDocId; docId < toDocId; ) {
+            int page = docId >>> PAGE_SHIFT;
+            if (page >= currentPages.length) {
+                break;
+            }
+            int pageEnd = (int) Math.min((long) (page + 1) << PAGE_SHIFT, toDocId);
+            if (currentPages[page] == null) {
+                docId = pageEnd;
+                continue;
+            }
+            int word = (docId & PAGE_MASK) >>> 6;
+            long bits = currentPages[page].get(word) & (-1L << docId);
+            int wordEnd = (page << PAGE_SHIFT) + ((word + 1) << 6);
+            if (wordEnd > pageEnd) {
+                bits &= (1L << pageEnd) - 1;
+            }
+            count += Long.bitCount(bits);
+            docId = Math.min(wordEnd, pageEnd);
+        }
+        return count;
+    }
+
+    /**
+     * Deleted ids in ascending order.
+     */
+    public synchronized int[] getDeletedDocIds() {
+        int[] docIds = new int[deletedCount];
+        int count = 0;
+
+        for (int page = 0; page < pages.length; page++) {
+            if (pages[page] == null) {
+                continue;
+            }
+            for (int word = 0; word < PAGE_WORDS; word++) {
+                long bits = pages[page].get(word);
+                while (bits != 0) {
+                    docIds[count++] = (page << PAGE_SHIFT) + (word << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                }
+            }
+        }
+        return docIds;
+    }
+
+    /**
+     * Writes the deleted ids next to the target, forces them to disk and moves the file into place.
+     */
+    public void write(Path file) {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+        int[] docIds = getDeletedDocIds();
+
+        try {
+            try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+                output.writeInt(docIds.length);
+                for (int docId : docIds) {
+                    output.writeInt(docId);
+                }
+            }
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IndexException(WRITE_DELETES_ERROR + file, e);
+        }
+    }
+}
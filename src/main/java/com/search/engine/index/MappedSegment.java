@@ -0,0 +1,293 @@
+package com.search.engine.index;
+
+import com.search.engine.exception.IndexException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static com.search.engine.exception.IndexException.CORRUPTED_SEGMENT_ERROR;
+import static com.search.engine.exception.IndexException.READ_SEGMENT_ERROR;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Immutable segment served straight from a memory mapped file, nothing but the header is read onto the heap.
+ * All ints are big endian, all offsets are absolute:
+ * <pre>
+ * header      magic, version, docBase, docCount, termCount, docTableOffset, termIndexOffset, positionsOffset,
+ *             postingsOffset, postingsCount
+ * doc table   int[docCount] exact lengths, no BM25 norms, int[docCount + 1] name offsets, UTF-8 names
+ * term index  termCount entries of (docFreq, postingsOffset, float maxTermFrequency, positionsOffset) in term order,
+ *             positionsOffset is 0 for a term without positions
+ * term blocks int[blockCount] block offsets followed by the UTF-8 terms sorted by bytes and front coded in blocks
+ *             of TERM_BLOCK_SIZE, the first term of a block as (vint length, bytes) and every other one as
+ *             (vint shared prefix length, vint suffix length, suffix bytes)
+ * positions   per term with positions int[docFreq] offsets, -1 for a posting without them, followed by the
+ *             delta vint positions and token byte offsets of every posting, empty when the index keeps no positions
+ * postings    per term the doc ids and frequencies in blocks, see {@link BlockCodec}
+ * </pre>
+ * A term lookup binary searches the first terms of the blocks and scans a single block.
+ * A single mapping limits a segment to 2 GB.
+ */
+public class MappedSegment implements IndexSegment {
+
+    static final int MAGIC = 0x53454731;
+    static final int VERSION = 6;
+    static final int HEADER_SIZE = 10 * Integer.BYTES;
+    static final int TERM_ENTRY_SIZE = 4 * Integer.BYTES;
+    static final int TERM_BLOCK_SIZE = 16;
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final int docBase;
+    private final int docCount;
+    private final int termCount;
+    private final int docTableOffset;
+    private final int termIndexOffset;
+    private final int termBlocksOffset;
+    private final int blockCount;
+    private final int positionsOffset;
+    private final int postingsOffset;
+    private final long postingsCount;
+
+    private MappedSegment(Path file, ByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IndexException(CORRUPTED_SEGMENT_ERROR + file);
+        }
+        this.docBase = buffer.getInt(8);
+        this.docCount = buffer.getInt(12);
+        this.termCount = buffer.getInt(16);
+        this.docTableOffset = buffer.getInt(20);
+        this.termIndexOffset = buffer.getInt(24);
+        this.termBlocksOffset = termIndexOffset + TERM_ENTRY_SIZE * termCount;
+        this.blockCount = (termCount + TERM_BLOCK_SIZE - 1) / TERM_BLOCK_SIZE;
+        this.positionsOffset = buffer.getInt(28);
+        this.postingsOffset = buffer.getInt(32);
+        this.postingsCount = buffer.getInt(36);
+    }
+
+    public static MappedSegment open(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedSegment(file, buffer);
+        } catch (IOException e) {
+            throw new IndexException(READ_SEGMENT_ERROR + file, e);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * The mapping every postings and lookup of this segment reads through.
+     */
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public int getDocBase() {
+        return docBase;
+    }
+
+    @Override
+    public int getDocCount() {
+        return docCount;
+    }
+
+    @Override
+    public int getTermCount() {
+        return termCount;
+    }
+
+    @Override
+    public long getPostingsCount() {
+        return postingsCount;
+    }
+
+    /**
+     * Size of the compressed postings, without positions.
+     */
+    public long getPostingsBytes() {
+        return buffer.capacity() - postingsOffset;
+    }
+
+    /**
+     * Only the segment object itself, the mapped file is outside the heap.
+     */
+    @Override
+    public long estimateHeapBytes() {
+        return HEADER_SIZE + 64;
+    }
+
+    /**
+     * Block offsets and front coded terms, mapped outside the heap.
+     */
+    @Override
+    public long getTermDictionaryBytes() {
+        return positionsOffset - termBlocksOffset;
+    }
+
+    @Override
+    public Postings getPostings(String term) {
+        MappedTermsEnum termsEnum = new MappedTermsEnum();
+        byte[] target = term.getBytes(UTF_8);
+        return termsEnum.seekCeil(target) && termsEnum.compareTo(target) == 0 ? termsEnum.postings() : null;
+    }
+
+    Postings getPostings(int termIndex) {
+        int entry = termIndexOffset + TERM_ENTRY_SIZE * termIndex;
+        return new BlockPostings(buffer, buffer.getInt(entry + 4), buffer.getInt(entry), docBase,
+                buffer.getFloat(entry + 8), buffer.getInt(entry + 12));
+    }
+
+    @Override
+    public TermsEnum terms() {
+        return new MappedTermsEnum();
+    }
+
+    @Override
+    public String getDocumentName(int docId) {
+        int nameOffsetEntry = docTableOffset + Integer.BYTES * (docCount + docId - docBase);
+        int start = buffer.getInt(nameOffsetEntry);
+        int end = buffer.getInt(nameOffsetEntry + Integer.BYTES);
+        return readString(start, end - start);
+    }
+
+    @Override
+    public int getDocumentLength(int docId) {
+        return buffer.getInt(docTableOffset + Integer.BYTES * (docId - docBase));
+    }
+
+    private int blockOffset(int block) {
+        return buffer.getInt(termBlocksOffset + Integer.BYTES * block);
+    }
+
+    private int readVInt(int offset, int[] end) {
+        int value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = buffer.get(offset++);
+            value |= (current & 0x7F) << shift;
+            shift += 7;
+        } while (current < 0);
+        end[0] = offset;
+        return value;
+    }
+
+    private String readString(int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Decodes the front coded terms one by one into a reused buffer, seeking starts at the block of the target.
+     */
+    private final class MappedTermsEnum implements TermsEnum {
+
+        private final int[] end = new int[1];
+        private byte[] term = new byte[32];
+        private int termLength;
+        private int termIndex = -1;
+        private int position;
+
+        @Override
+        public boolean seekCeil(String target) {
+            return seekCeil(target.getBytes(UTF_8));
+        }
+
+        private boolean seekCeil(byte[] target) {
+            int low = 0;
+            int high = blockCount - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                seekBlock(middle);
+                if (compareTo(target) <= 0) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            if (blockCount == 0) {
+                return false;
+            }
+
+            seekBlock(low);
+            while (compareTo(target) < 0) {
+                if (!next()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void seekBlock(int block) {
+            termIndex = block * TERM_BLOCK_SIZE - 1;
+            position = blockOffset(block);
+            next();
+        }
+
+        @Override
+        public boolean next() {
+            if (termIndex + 1 >= termCount) {
+                termIndex = termCount;
+                return false;
+            }
+            if (termIndex < 0) {
+                position = blockOffset(0);
+            }
+
+            termIndex++;
+            int sharedLength = 0;
+            if (termIndex % TERM_BLOCK_SIZE != 0) {
+                sharedLength = readVInt(position, end);
+                position = end[0];
+            }
+            int suffixLength = readVInt(position, end);
+            position = end[0];
+
+            termLength = sharedLength + suffixLength;
+            if (termLength > term.length) {
+                term = Arrays.copyOf(term, Math.max(termLength, 2 * term.length));
+            }
+            for (int i = 0; i < suffixLength; i++) {
+                term[sharedLength + i] = buffer.get(position + i);
+            }
+            position += suffixLength;
+            return true;
+        }
+
+        @Override
+        public String term() {
+            return new String(term, 0, termLength, UTF_8);
+        }
+
+        @Override
+        public Postings postings() {
+            return getPostings(termIndex);
+        }
+
+        private int compareTo(byte[] target) {
+            int length = Math.min(termLength, target.length);
+            for (int i = 0; i < length; i++) {
+                int difference = (term[i] & 0xFF) - (target[i] & 0xFF);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return termLength - target.length;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.search.engine.index;
+
+import com.search.engine.analysis.TermFrequencies;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory buffer receiving new documents until it is flushed into a {@link MappedSegment}. Token positions
+ * are only kept when the segment is created with {@code keepPositions}.
+ */
+public class MemorySegment implements IndexSegment {
+
+    private static final int TERM_BYTES = 200;
+    private static final int TERM_DICTIONARY_BYTES = 96;
+    private static final int POSTING_BYTES = 12;
+    private static final int DOCUMENT_BYTES = 100;
+    private static final int POSITIONS_ARRAY_BYTES = 24;
+
+    private final ConcurrentNavigableMap<String, PostingList> wordsDictionary = new ConcurrentSkipListMap<>();
+    private final DocumentRegistry documentRegistry;
+    private final AtomicInteger termCount = new AtomicInteger();
+    private final AtomicLong termChars = new AtomicLong();
+    private final AtomicLong postingsCount = new AtomicLong();
+    private final AtomicLong positionsBytes = new AtomicLong();
+    private final boolean keepPositions;
+
+    public MemorySegment(int docBase) {
+        this(docBase, false);
+    }
+
+    public MemorySegment(int docBase, boolean keepPositions) {
+        this.documentRegistry = new DocumentRegistry(docBase);
+        this.keepPositions = keepPositions;
+    }
+
+    public int addDocument(String documentName, TermFrequencies termFrequencies) {
+        int docId = registerDocument(documentName, termFrequencies.getTotalTerms());
+        addPostings(docId, termFrequencies);
+        return docId;
+    }
+
+    /**
+     * Assigns the next doc id, {@link #addPostings} makes the document searchable. The index registers documents
+     * in log order so replayed documents get the same ids.
+     */
+    public int registerDocument(String documentName, int documentLength) {
+        return documentRegistry.register(documentName, documentLength);
+    }
+
+    public void addPostings(int docId, TermFrequencies termFrequencies) {
+        int documentLength = termFrequencies.getTotalTerms();
+
+        termFrequencies.forEachWithPositions((word, wordFrequency, positions, offsets) -> {
+            byte[] encodedPositions = keepPositions && positions != null
+                    ? Positions.encode(positions, offsets, wordFrequency) : null;
+            PostingList postingList = wordsDictionary.computeIfAbsent(word, key -> new PostingList());
+            if (postingList.add(docId, wordFrequency, documentLength, encodedPositions) == 1) {
+                termCount.incrementAndGet();
+                termChars.addAndGet(word.length());
+            }
+            if (encodedPositions != null) {
+                positionsBytes.addAndGet(encodedPositions.length);
+            }
+        });
+        postingsCount.addAndGet(termFrequencies.size());
+    }
+
+    public boolean isKeepPositions() {
+        return keepPositions;
+    }
+
+    @Override
+    public int getDocBase() {
+        return documentRegistry.getDocBase();
+    }
+
+    @Override
+    public int getDocCount() {
+        return documentRegistry.size();
+    }
+
+    @Override
+    public Postings getPostings(String term) {
+        PostingList postingList = wordsDictionary.get(term);
+        return postingList != null ? postingList.getPostings() : null;
+    }
+
+    @Override
+    public String getDocumentName(int docId) {
+        return documentRegistry.getName(docId);
+    }
+
+    @Override
+    public int getDocumentLength(int docId) {
+        return documentRegistry.getLength(docId);
+    }
+
+    @Override
+    public int getTermCount() {
+        return termCount.get();
+    }
+
+    @Override
+    public long getPostingsCount() {
+        return postingsCount.get();
+    }
+
+    /**
+     * Rough size of the dictionary, posting arrays, positions and document table, from average object sizes.
+     */
+    @Override
+    public long estimateHeapBytes() {
+        long positionArrays = positionsBytes.get() > 0 ? postingsCount.get() * POSITIONS_ARRAY_BYTES + positionsBytes.get() : 0;
+        return (long) termCount.get() * TERM_BYTES + 2 * termChars.get()
+                + postingsCount.get() * POSTING_BYTES + positionArrays + (long) getDocCount() * DOCUMENT_BYTES;
+    }
+
+    /**
+     * Skip list nodes and term strings, the posting lists are not part of the dictionary.
+     */
+    @Override
+    public long getTermDictionaryBytes() {
+        return (long) termCount.get() * TERM_DICTIONARY_BYTES + 2 * termChars.get();
+    }
+
+    @Override
+    public TermsEnum terms() {
+        return new MemoryTermsEnum();
+    }
+
+    /**
+     * Sorted copy of the dictionary limited to the first {@code docCount} documents. The caller makes sure these
+     * documents have all their postings added, terms of later documents only are left out.
+     */
+    FrozenSegment freeze(int docCount) {
+        int docLimit = getDocBase() + docCount;
+        List<String> terms = new ArrayList<>(termCount.get());
+        List<ArrayPostings> postings = new ArrayList<>(termCount.get());
+
+        for (Map.Entry<String, PostingList> entry : wordsDictionary.entrySet()) {
+            ArrayPostings frozenPostings = entry.getValue().getPostings().truncate(docLimit);
+            if (frozenPostings.size() > 0) {
+                terms.add(entry.getKey());
+                postings.add(frozenPostings);
+            }
+        }
+        return new FrozenSegment(terms.toArray(new String[0]), postings.toArray(new ArrayPostings[0]),
+                documentRegistry, docCount);
+    }
+
+    NavigableMap<String, PostingList> getWordsDictionary() {
+        return wordsDictionary;
+    }
+
+    private final class MemoryTermsEnum implements TermsEnum {
+
+        private String term;
+
+        @Override
+        public boolean seekCeil(String target) {
+            term = wordsDictionary.ceilingKey(target);
+            return term != null;
+        }
+
+        @Override
+        public boolean next() {
+            term = term == null ? wordsDictionary.ceilingKey("") : wordsDictionary.higherKey(term);
+            return term != null;
+        }
+
+        @Override
+        public String term() {
+            return term;
+        }
+
+        @Override
+        public Postings postings() {
+            return getPostings(term);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.search.engine.index;
+
+import java.util.Arrays;
+
+/**
+ * Counts phrase occurrences in one document from the ascending positions of every phrase term. With slop 0
+ * the terms have to follow each other in query order. With a positive slop they may come in any order as long
+ * as a window holds all of them with at most {@code slop} other words, every such window counts once.
+ */
+final class PhraseMatcher {
+
+    private PhraseMatcher() {
+    }
+
+    /**
+     * Returns 0 when a term has no positions.
+     */
+    static int count(int[][] positions, int slop) {
+        for (int[] termPositions : positions) {
+            if (termPositions == null || termPositions.length == 0) {
+                return 0;
+            }
+        }
+        return slop == 0 ? countExact(positions) : countWithin(positions, positions.length - 1 + slop);
+    }
+
+    private static int countExact(int[][] positions) {
+        int count = 0;
+        for (int start : positions[0]) {
+            boolean matches = true;
+            for (int i = 1; i < positions.length && matches; i++) {
+                matches = Arrays.binarySearch(positions[i], start + i) >= 0;
+            }
+            if (matches) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Moves the term at the smallest position forward until one term runs out, counting the windows whose first
+     * and last positions are at most {@code maxSpan} apart.
+     */
+    private static int countWithin(int[][] positions, int maxSpan) {
+        int[] next = new int[positions.length];
+        int count = 0;
+
+        while (true) {
+            int first = 0;
+            int last = positions[0][next[0]];
+            for (int i = 1; i < positions.length; i++) {
+                int position = positions[i][next[i]];
+                if (position < positions[first][next[first]]) {
+                    first = i;
+                }
+                last = Math.max(last, position);
+            }
+            if (last - positions[first][next[first]] <= maxSpan) {
+                count++;
+            }
+            if (++next[first] == positions[first].length) {
+                return count;
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.search.engine.index;
+
+import com.search.engine.analysis.TermFrequencies;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Token positions of one posting as the gaps between ascending positions, followed by the gaps between the
+ * UTF-8 byte offsets where the tokens start, each gap a vint. The count is the frequency of the posting, so it is
+ * not stored. Unknown offsets are kept as {@link TermFrequencies#NO_OFFSET}.
+ */
+final class Positions {
+
+    private Positions() {
+    }
+
+    static byte[] encode(int[] positions, int[] offsets, int count) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(2 * count + 4);
+        write(output, positions, offsets, count);
+        return output.toByteArray();
+    }
+
+    static void write(ByteArrayOutputStream output, int[] positions, int[] offsets, int count) {
+        writeDeltas(output, positions, count);
+        if (offsets != null) {
+            writeDeltas(output, offsets, count);
+        } else {
+            int[] unknownOffsets = new int[count];
+            Arrays.fill(unknownOffsets, TermFrequencies.NO_OFFSET);
+            writeDeltas(output, unknownOffsets, count);
+        }
+    }
+
+    private static void writeDeltas(ByteArrayOutputStream output, int[] values, int count) {
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            int delta = values[i] - previous;
+            while ((delta & ~0x7F) != 0) {
+                output.write((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            output.write(delta);
+            previous = values[i];
+        }
+    }
+
+    static int[] decodePositions(byte[] bytes, int count) {
+        return decodePositions(ByteBuffer.wrap(bytes), 0, count);
+    }
+
+    static int[] decodePositions(ByteBuffer buffer, int offset, int count) {
+        int[] positions = new int[count];
+        readDeltas(buffer, offset, positions);
+        return positions;
+    }
+
+    static int[] decodeOffsets(byte[] bytes, int count) {
+        return decodeOffsets(ByteBuffer.wrap(bytes), 0, count);
+    }
+
+    static int[] decodeOffsets(ByteBuffer buffer, int offset, int count) {
+        int[] offsets = new int[count];
+        readDeltas(buffer, readDeltas(buffer, offset, offsets), offsets);
+        return offsets;
+    }
+
+    /**
+     * Fills the values and returns the offset right after the last vint.
+     */
+    private static int readDeltas(ByteBuffer buffer, int offset, int[] values) {
+        int previous = 0;
+        for (int i = 0; i < values.length; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte current;
+            do {
+                current = buffer.get(offset++);
+                delta |= (current & 0x7F) << shift;
+                shift += 7;
+            } while (current < 0);
+            previous += delta;
+            values[i] = previous;
+        }
+        return offset;
+    }
+}
@@ -0,0 +1,88 @@
+package com.search.engine.index;
+
+import java.util.Arrays;
+
+/**
+ * Growable posting list of one term. Writers lock the list, readers take the current {@link ArrayPostings} view
+ * without locking. Appends reuse spare capacity of the shared arrays because readers never look past the
+ * size of their view, out of order inserts copy the arrays so published views stay unchanged. The positions
+ * array is only allocated once a posting with positions arrives.
+ */
+public final class PostingList {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private volatile ArrayPostings postings = ArrayPostings.EMPTY;
+
+    /**
+     * Returns the size of the list after the add, 1 for the first posting of the term.
+     */
+    public int add(int docId, int frequency, int documentLength) {
+        return add(docId, frequency, documentLength, null);
+    }
+
+    /**
+     * Adds a posting with its positions encoded by {@link Positions}, {@code null} when there are none.
+     */
+    public synchronized int add(int docId, int frequency, int documentLength, byte[] encodedPositions) {
+        ArrayPostings current = postings;
+        int size = current.size();
+        int[] docIds = current.docIds();
+        int[] frequencies = current.frequencies();
+        byte[][] positions = current.encodedPositions();
+        if (positions == null && encodedPositions != null) {
+            positions = new byte[docIds.length][];
+        }
+
+        if (size == 0 || docIds[size - 1] < docId) {
+            if (size == docIds.length) {
+                int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+                docIds = Arrays.copyOf(docIds, capacity);
+                frequencies = Arrays.copyOf(frequencies, capacity);
+                positions = positions != null ? Arrays.copyOf(positions, capacity) : null;
+            }
+            docIds[size] = docId;
+            frequencies[size] = frequency;
+            if (positions != null) {
+                positions[size] = encodedPositions;
+            }
+        } else {
+            int position = Arrays.binarySearch(docIds, 0, size, docId);
+            if (position >= 0) {
+                throw new IllegalStateException("Document " + docId + " is already in the posting list");
+            }
+            int insertAt = -position - 1;
+            docIds = insert(docIds, size, insertAt, docId);
+            frequencies = insert(frequencies, size, insertAt, frequency);
+            positions = positions != null ? insert(positions, size, insertAt, encodedPositions) : null;
+        }
+
+        double maxTermFrequency = Math.max(current.maxTermFrequency(), (double) frequency / documentLength);
+        postings = new ArrayPostings(docIds, frequencies, positions, size + 1, maxTermFrequency);
+        return size + 1;
+    }
+
+    public ArrayPostings getPostings() {
+        return postings;
+    }
+
+    public int size() {
+        return postings.size();
+    }
+
+    private static int[] insert(int[] source, int size, int insertAt, int value) {
+        int[] target = new int[Math.max(INITIAL_CAPACITY, source.length == size ? size * 2 : source.length)];
+        System.arraycopy(source, 0, target, 0, insertAt);
+        target[insertAt] = value;
+        System.arraycopy(source, insertAt, target, insertAt + 1, size - insertAt);
+        return target;
+    }
+
+    private static byte[][] insert(byte[][] source, int size, int insertAt, byte[] value) {
+        byte[][] target = new byte[Math.max(INITIAL_CAPACITY, source.length == size ? size * 2 : source.length)][];
+        System.arraycopy(source, 0, target, 0, insertAt);
+        target[insertAt] = value;
+        System.arraycopy(source, insertAt, target, insertAt + 1, size - insertAt);
+        return target;
+    }
+}
@@ -0,0 +1,82 @@
+package com.search.engine.index;
+
+/**
+ * Read only view of a posting list: global doc ids sorted ascending with their frequencies.
+ */
+public interface Postings {
+
+    int size();
+
+    int docId(int index);
+
+    int frequency(int index);
+
+    /**
+     * Ascending token positions of the posting, {@code null} when the document was indexed without positions.
+     */
+    int[] positions(int index);
+
+    /**
+     * UTF-8 byte offsets where the tokens at {@link #positions(int)} start in the document, {@code null} when the
+     * document was indexed without positions.
+     */
+    int[] offsets(int index);
+
+    /**
+     * Upper bound of frequency divided by document length over the whole list.
+     */
+    double maxTermFrequency();
+
+    /**
+     * Number of blocks whose last doc id and frequency bound are known without decoding, the whole list is a
+     * single block unless the postings are compressed.
+     */
+    default int blockCount() {
+        return size() == 0 ? 0 : 1;
+    }
+
+    default int blockLastDocId(int block) {
+        return docId(size() - 1);
+    }
+
+    /**
+     * Upper bound of frequency divided by document length within the block, never above {@link #maxTermFrequency()}.
+     */
+    default double blockMaxTermFrequency(int block) {
+        return maxTermFrequency();
+    }
+
+    /**
+     * Index of the first posting from {@code fromIndex} on whose doc id is at least {@code target}, {@link #size()}
+     * when there is none. Gallops and then binary searches.
+     */
+    default int advance(int fromIndex, int target) {
+        int low = fromIndex;
+        int high = low;
+        int step = 1;
+        while (high < size() && docId(high) < target) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high, size());
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (docId(middle) < target) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * View for a single reader. Compressed postings decode a block at a time into buffers of the returned view,
+     * the others return themselves.
+     */
+    default Postings reader() {
+        return this;
+    }
+}
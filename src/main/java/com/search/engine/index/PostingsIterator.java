@@ -0,0 +1,148 @@
+package com.search.engine.index;
+
+import java.util.List;
+
+/**
+ * Forward only cursor over the postings of one term in every segment. Segments hold increasing doc id ranges,
+ * so docs come out sorted. {@link #advance(int)} skips whole segments by their last doc id and then lets the
+ * segment postings skip, which keeps intersections close to the size of the shortest list.
+ * {@link #advanceShallow(int)} moves a separate block cursor that only reads block bounds, so scorers can rule
+ * out a whole block before any of it is decoded.
+ */
+public final class PostingsIterator {
+
+    public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    private final List<Postings> postings;
+    private final int cost;
+    private final double maxTermFrequency;
+    private int segmentIndex;
+    private Postings current;
+    private int currentLastDocId;
+    private int index = -1;
+    private int docId = -1;
+    private int shallowSegmentIndex;
+    private Postings shallow;
+    private int shallowBlock;
+    private int shallowLastDocId = -1;
+
+    public PostingsIterator(List<Postings> postings) {
+        this.postings = postings;
+        this.current = postings.isEmpty() ? ArrayPostings.EMPTY : postings.get(0).reader();
+        this.currentLastDocId = lastDocId(current);
+        this.shallow = current;
+
+        int size = 0;
+        double maxSegmentTermFrequency = 0;
+        for (Postings segmentPostings : postings) {
+            size += segmentPostings.size();
+            maxSegmentTermFrequency = Math.max(maxSegmentTermFrequency, segmentPostings.maxTermFrequency());
+        }
+        this.cost = size;
+        this.maxTermFrequency = maxSegmentTermFrequency;
+    }
+
+    public int docId() {
+        return docId;
+    }
+
+    public int frequency() {
+        return current.frequency(index);
+    }
+
+    /**
+     * Positions of the current posting, {@code null} when it was indexed without them.
+     */
+    public int[] positions() {
+        return current.positions(index);
+    }
+
+    public int cost() {
+        return cost;
+    }
+
+    public double maxTermFrequency() {
+        return maxTermFrequency;
+    }
+
+    public int nextDoc() {
+        while (++index >= current.size()) {
+            if (!nextSegment()) {
+                return docId = NO_MORE_DOCS;
+            }
+        }
+        return docId = current.docId(index);
+    }
+
+    /**
+     * Moves to the first doc greater than or equal to the target, staying put when already there.
+     */
+    public int advance(int target) {
+        if (docId >= target) {
+            return docId;
+        }
+
+        while (currentLastDocId < target) {
+            if (!nextSegment()) {
+                return docId = NO_MORE_DOCS;
+            }
+        }
+
+        index = current.advance(index + 1, target);
+        return docId = current.docId(index);
+    }
+
+    /**
+     * Moves the block cursor to the block holding the first doc at or after the target, or the current doc when
+     * that is further, without decoding postings. Returns the last doc id of that block, {@link #NO_MORE_DOCS}
+     * when no doc is left. Targets must not decrease.
+     */
+    public int advanceShallow(int target) {
+        target = Math.max(target, docId);
+        if (target <= shallowLastDocId) {
+            return shallowLastDocId;
+        }
+
+        while (shallow.blockCount() == 0 || shallow.blockLastDocId(shallow.blockCount() - 1) < target) {
+            if (shallowSegmentIndex + 1 >= postings.size()) {
+                return shallowLastDocId = NO_MORE_DOCS;
+            }
+            shallow = postings.get(++shallowSegmentIndex).reader();
+            shallowBlock = 0;
+        }
+
+        int high = shallow.blockCount() - 1;
+        while (shallowBlock < high) {
+            int middle = (shallowBlock + high) >>> 1;
+            if (shallow.blockLastDocId(middle) < target) {
+                shallowBlock = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return shallowLastDocId = shallow.blockLastDocId(shallowBlock);
+    }
+
+    /**
+     * Upper bound of frequency divided by document length up to the doc returned by the last
+     * {@link #advanceShallow(int)}.
+     */
+    public double blockMaxTermFrequency() {
+        return shallowLastDocId == NO_MORE_DOCS ? 0 : shallow.blockMaxTermFrequency(shallowBlock);
+    }
+
+    private boolean nextSegment() {
+        if (segmentIndex + 1 >= postings.size()) {
+            index = current.size();
+            return false;
+        }
+        current = postings.get(++segmentIndex).reader();
+        currentLastDocId = lastDocId(current);
+        index = -1;
+        return true;
+    }
+
+    private static int lastDocId(Postings postings) {
+        return postings.size() == 0 ? -1 : postings.docId(postings.size() - 1);
+    }
+}
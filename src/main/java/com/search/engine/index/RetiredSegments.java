@@ -0,0 +1,63 @@
+package com.search.engine.index;
+
+import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Segment files replaced by compaction. Snapshots, cached term statistics and postings all read a segment through
+ * views of its mapping, so once the mapping is unreachable no reader is left and the file is deleted. A mapped
+ * file is never deleted, which some platforms refuse, and a file that can't be deleted yet is tried again later.
+ */
+final class RetiredSegments {
+
+    private final ReferenceQueue<ByteBuffer> queue = new ReferenceQueue<>();
+    private final Set<RetiredSegment> pending = ConcurrentHashMap.newKeySet();
+
+    void retire(MappedSegment segment) {
+        pending.add(new RetiredSegment(segment.getBuffer(), segment.getFile(), queue));
+    }
+
+    /**
+     * Deletes the files of the retired segments nobody reads anymore, returns how many are still kept.
+     */
+    int deleteUnreferenced() {
+        Reference<? extends ByteBuffer> reference;
+        while ((reference = queue.poll()) != null) {
+            ((RetiredSegment) reference).released = true;
+        }
+
+        for (RetiredSegment segment : pending) {
+            if (segment.released && delete(segment.file)) {
+                pending.remove(segment);
+            }
+        }
+        return pending.size();
+    }
+
+    private static boolean delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static final class RetiredSegment extends PhantomReference<ByteBuffer> {
+
+        private final Path file;
+        private volatile boolean released;
+
+        private RetiredSegment(ByteBuffer mapping, Path file, ReferenceQueue<ByteBuffer> queue) {
+            super(mapping, queue);
+            this.file = file;
+        }
+    }
+}
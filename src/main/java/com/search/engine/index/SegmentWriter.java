@@ -0,0 +1,317 @@
+package com.search.engine.index;
+
+import com.search.engine.exception.IndexException;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.search.engine.exception.IndexException.WRITE_SEGMENT_ERROR;
+import static com.search.engine.index.MappedSegment.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Writes a flushed {@link MemorySegment}, or rewrites a {@link MappedSegment}, as an immutable segment file. The
+ * layout is described in {@link MappedSegment}. Deleted documents keep their ids with an empty name and length,
+ * their postings are dropped. The file is written next to its target, forced to disk and moved into place once
+ * complete.
+ */
+public final class SegmentWriter {
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] DELETED_NAME = new byte[0];
+
+    private SegmentWriter() {
+    }
+
+    public static void write(MemorySegment segment, LiveDocs liveDocs, Path file) {
+        SegmentData data = new SegmentData(segment, liveDocs);
+        for (Map.Entry<String, PostingList> entry : sortedByBytes(segment.getWordsDictionary())) {
+            data.addTerm(entry.getKey(), entry.getValue().getPostings());
+        }
+        write(data, file);
+    }
+
+    /**
+     * Rewrites the segment without the postings of deleted documents, the terms are already in byte order.
+     */
+    public static void write(MappedSegment segment, LiveDocs liveDocs, Path file) {
+        SegmentData data = new SegmentData(segment, liveDocs);
+        TermsEnum terms = segment.terms();
+        while (terms.next()) {
+            data.addTerm(terms.term(), terms.postings());
+        }
+        write(data, file);
+    }
+
+    private static void write(SegmentData data, Path file) {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+
+        try {
+            try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporaryFile), BUFFER_SIZE))) {
+                write(data, output);
+            }
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IndexException(WRITE_SEGMENT_ERROR + file, e);
+        }
+    }
+
+    private static void write(SegmentData data, DataOutputStream output) throws IOException {
+        int docCount = data.documentNames.size();
+        int namesLength = 0;
+        for (byte[] name : data.documentNames) {
+            namesLength += name.length;
+        }
+
+        List<Postings> postings = data.postings;
+        int termCount = data.terms.size();
+        ByteArrayOutputStream termBlocks = new ByteArrayOutputStream();
+        int[] blockOffsets = frontCode(data.terms, termBlocks);
+
+        int docTableOffset = HEADER_SIZE;
+        int namesOffset = docTableOffset + Integer.BYTES * (2 * docCount + 1);
+        int termIndexOffset = align(namesOffset + namesLength);
+        int termBlocksOffset = termIndexOffset + TERM_ENTRY_SIZE * termCount;
+        int termBytesOffset = termBlocksOffset + Integer.BYTES * blockOffsets.length;
+        int positionsOffset = align(termBytesOffset + termBlocks.size());
+        ByteArrayOutputStream positions = new ByteArrayOutputStream();
+        int[] termPositionsOffsets = writePositions(postings, positionsOffset, positions);
+        int postingsOffset = positionsOffset + positions.size();
+        ByteArrayOutputStream encodedPostings = new ByteArrayOutputStream();
+        int[] termPostingsOffsets = new int[termCount];
+        long postingsCount = 0;
+        for (int i = 0; i < termCount; i++) {
+            termPostingsOffsets[i] = postingsOffset + encodedPostings.size();
+            BlockCodec.write(postings.get(i), data.docBase, data.documentLengths, termPostingsOffsets[i], encodedPostings);
+            postingsCount += postings.get(i).size();
+        }
+
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(data.docBase);
+        output.writeInt(docCount);
+        output.writeInt(termCount);
+        output.writeInt(docTableOffset);
+        output.writeInt(termIndexOffset);
+        output.writeInt(positionsOffset);
+        output.writeInt(postingsOffset);
+        output.writeInt((int) postingsCount);
+
+        for (int length : data.documentLengths) {
+            output.writeInt(length);
+        }
+        int nameOffset = namesOffset;
+        for (byte[] name : data.documentNames) {
+            output.writeInt(nameOffset);
+            nameOffset += name.length;
+        }
+        output.writeInt(nameOffset);
+        for (byte[] name : data.documentNames) {
+            output.write(name);
+        }
+        pad(output, termIndexOffset - (namesOffset + namesLength));
+
+        for (int i = 0; i < termCount; i++) {
+            output.writeInt(postings.get(i).size());
+            output.writeInt(termPostingsOffsets[i]);
+            output.writeFloat(Math.nextUp((float) postings.get(i).maxTermFrequency()));
+            output.writeInt(termPositionsOffsets[i]);
+        }
+        for (int blockOffset : blockOffsets) {
+            output.writeInt(termBytesOffset + blockOffset);
+        }
+        termBlocks.writeTo(output);
+        pad(output, positionsOffset - (termBytesOffset + termBlocks.size()));
+        positions.writeTo(output);
+        encodedPostings.writeTo(output);
+    }
+
+    /**
+     * Writes the positions of every term having some, each term aligned, and returns the absolute offsets of the
+     * terms, 0 for a term without positions.
+     */
+    private static int[] writePositions(List<Postings> postings, int positionsOffset, ByteArrayOutputStream output)
+            throws IOException {
+        int[] termOffsets = new int[postings.size()];
+
+        for (int term = 0; term < postings.size(); term++) {
+            Postings termPostings = postings.get(term);
+            int[][] termPositions = new int[termPostings.size()][];
+            int[][] tokenOffsets = new int[termPostings.size()][];
+            boolean hasPositions = false;
+            for (int i = 0; i < termPostings.size(); i++) {
+                termPositions[i] = termPostings.positions(i);
+                tokenOffsets[i] = termPostings.offsets(i);
+                hasPositions |= termPositions[i] != null;
+            }
+            if (!hasPositions) {
+                continue;
+            }
+
+            termOffsets[term] = positionsOffset + output.size();
+            ByteArrayOutputStream deltas = new ByteArrayOutputStream();
+            int deltasOffset = termOffsets[term] + Integer.BYTES * termPositions.length;
+            for (int i = 0; i < termPositions.length; i++) {
+                writeInt(output, termPositions[i] != null ? deltasOffset + deltas.size() : -1);
+                if (termPositions[i] != null) {
+                    Positions.write(deltas, termPositions[i], tokenOffsets[i], termPositions[i].length);
+                }
+            }
+            deltas.writeTo(output);
+            while (output.size() % Integer.BYTES != 0) {
+                output.write(0);
+            }
+        }
+        return termOffsets;
+    }
+
+    private static void writeInt(ByteArrayOutputStream output, int value) {
+        output.write(value >>> 24);
+        output.write(value >>> 16);
+        output.write(value >>> 8);
+        output.write(value);
+    }
+
+    /**
+     * Writes the terms front coded in blocks of {@link MappedSegment#TERM_BLOCK_SIZE}, returns the block offsets
+     * relative to the start of the output.
+     */
+    private static int[] frontCode(List<byte[]> terms, ByteArrayOutputStream output) {
+        int[] blockOffsets = new int[(terms.size() + TERM_BLOCK_SIZE - 1) / TERM_BLOCK_SIZE];
+        byte[] previous = new byte[0];
+
+        for (int i = 0; i < terms.size(); i++) {
+            byte[] term = terms.get(i);
+            int sharedLength = 0;
+            if (i % TERM_BLOCK_SIZE == 0) {
+                blockOffsets[i / TERM_BLOCK_SIZE] = output.size();
+            } else {
+                int length = Math.min(previous.length, term.length);
+                while (sharedLength < length && previous[sharedLength] == term[sharedLength]) {
+                    sharedLength++;
+                }
+                writeVInt(output, sharedLength);
+            }
+            writeVInt(output, term.length - sharedLength);
+            output.write(term, sharedLength, term.length - sharedLength);
+            previous = term;
+        }
+        return blockOffsets;
+    }
+
+    private static void writeVInt(ByteArrayOutputStream output, int value) {
+        while ((value & ~0x7F) != 0) {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+
+    private static List<Map.Entry<String, PostingList>> sortedByBytes(Map<String, PostingList> dictionary) {
+        List<Map.Entry<String, PostingList>> entries = new ArrayList<>(dictionary.entrySet());
+        entries.sort((first, second) -> compareBytes(first.getKey().getBytes(UTF_8), second.getKey().getBytes(UTF_8)));
+        return entries;
+    }
+
+    static int compareBytes(byte[] first, byte[] second) {
+        int length = Math.min(first.length, second.length);
+        for (int i = 0; i < length; i++) {
+            int difference = (first[i] & 0xFF) - (second[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return first.length - second.length;
+    }
+
+    private static int align(int offset) {
+        return (offset + Integer.BYTES - 1) & -Integer.BYTES;
+    }
+
+    private static void pad(DataOutputStream output, int bytes) throws IOException {
+        for (int i = 0; i < bytes; i++) {
+            output.writeByte(0);
+        }
+    }
+
+    /**
+     * Document table and live postings of the written segment, terms are added in byte order.
+     */
+    private static final class SegmentData {
+
+        private final int docBase;
+        private final LiveDocs liveDocs;
+        private final List<byte[]> documentNames;
+        private final int[] documentLengths;
+        private final List<byte[]> terms = new ArrayList<>();
+        private final List<Postings> postings = new ArrayList<>();
+
+        private SegmentData(IndexSegment segment, LiveDocs liveDocs) {
+            this.docBase = segment.getDocBase();
+            this.liveDocs = liveDocs;
+            this.documentNames = new ArrayList<>(segment.getDocCount());
+            this.documentLengths = new int[segment.getDocCount()];
+
+            for (int i = 0; i < documentLengths.length; i++) {
+                int docId = docBase + i;
+                boolean live = liveDocs.isLive(docId);
+                documentNames.add(live ? segment.getDocumentName(docId).getBytes(UTF_8) : DELETED_NAME);
+                documentLengths[i] = live ? segment.getDocumentLength(docId) : 0;
+            }
+        }
+
+        private void addTerm(String term, Postings termPostings) {
+            Postings livePostings = livePostings(termPostings.reader());
+            if (livePostings.size() > 0) {
+                terms.add(term.getBytes(UTF_8));
+                postings.add(livePostings);
+            }
+        }
+
+        private Postings livePostings(Postings termPostings) {
+            int[] docIds = new int[termPostings.size()];
+            int[] frequencies = new int[termPostings.size()];
+            int[] sources = new int[termPostings.size()];
+            int size = 0;
+            double maxTermFrequency = 0;
+
+            for (int i = 0; i < termPostings.size(); i++) {
+                int docId = termPostings.docId(i);
+                if (liveDocs.isLive(docId)) {
+                    docIds[size] = docId;
+                    frequencies[size] = termPostings.frequency(i);
+                    sources[size] = i;
+                    maxTermFrequency = Math.max(maxTermFrequency,
+                            (double) frequencies[size] / documentLengths[docId - docBase]);
+                    size++;
+                }
+            }
+            if (size == termPostings.size()) {
+                return termPostings;
+            }
+
+            byte[][] positions = new byte[size][];
+            for (int i = 0; i < size; i++) {
+                int[] documentPositions = termPostings.positions(sources[i]);
+                positions[i] = documentPositions != null
+                        ? Positions.encode(documentPositions, termPostings.offsets(sources[i]), documentPositions.length) : null;
+            }
+            return new ArrayPostings(docIds, frequencies, positions, size, maxTermFrequency);
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package com.search.engine.index;
+
+import com.search.engine.analysis.TermFrequencies;
+import com.search.engine.config.StorageProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Documents partitioned by name hash over independent {@link InvertedIndex} shards. Doc ids are interleaved as
+ * {@code localDocId * shardCount + shard}, so the shard count must not change once documents are indexed.
+ * Queries never refresh, with a {@code refreshIntervalMs} of 0 each write waits for a snapshot holding it.
+ */
+@Slf4j
+public class ShardedIndex {
+
+    public static final String SHARDS_ERROR = "Shard count must be positive";
+    private static final String SHARD_DIRECTORY_FORMAT = "shard-%d";
+
+    private final Path directory;
+    private final boolean deleteOnClose;
+    private final long compactionIntervalMs;
+    private final long refreshIntervalMs;
+    private final List<InvertedIndex> shards;
+    private final Object refreshLock = new Object();
+    private final Object requestLock = new Object();
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong refreshNanos = new AtomicLong();
+    private volatile ShardedSnapshot snapshot;
+    private CompletableFuture<Void> pendingRefresh;
+    private ScheduledExecutorService compactionScheduler;
+    private ScheduledExecutorService refreshScheduler;
+
+    public ShardedIndex(StorageProperties storageProperties) {
+        int shardCount = storageProperties.getShards();
+        if (shardCount < 1) {
+            throw new IllegalArgumentException(SHARDS_ERROR);
+        }
+
+        this.directory = Paths.get(storageProperties.getIndexLocation());
+        this.deleteOnClose = storageProperties.isDeleteOnShutdown();
+        this.compactionIntervalMs = storageProperties.getCompactionIntervalMs();
+        this.refreshIntervalMs = storageProperties.getRefreshIntervalMs();
+
+        if (shardCount == 1) {
+            shards = Collections.singletonList(new InvertedIndex(directory, storageProperties));
+        } else {
+            List<InvertedIndex> indexes = new ArrayList<>(shardCount);
+            for (int shard = 0; shard < shardCount; shard++) {
+                indexes.add(new InvertedIndex(directory.resolve(String.format(SHARD_DIRECTORY_FORMAT, shard)), storageProperties));
+            }
+            shards = Collections.unmodifiableList(indexes);
+        }
+    }
+
+    public void open() throws IOException {
+        for (InvertedIndex shard : shards) {
+            shard.open();
+        }
+        refresh();
+
+        if (compactionIntervalMs > 0) {
+            compactionScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "index-compaction");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactionScheduler.scheduleWithFixedDelay(this::compactQuietly, compactionIntervalMs, compactionIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+        refreshScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "index-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (refreshIntervalMs > 0) {
+            refreshScheduler.scheduleWithFixedDelay(this::refreshQuietly, refreshIntervalMs, refreshIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void close() throws IOException {
+        if (compactionScheduler != null) {
+            compactionScheduler.shutdownNow();
+        }
+        if (refreshScheduler != null) {
+            refreshScheduler.shutdownNow();
+            synchronized (requestLock) {
+                if (pendingRefresh != null) {
+                    pendingRefresh.complete(null);
+                }
+            }
+        }
+        for (InvertedIndex shard : shards) {
+            shard.close();
+        }
+        if (deleteOnClose) {
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+    /**
+     * Refreshes afterwards, the buffers stay reachable until no snapshot holds them.
+     */
+    public void flush() {
+        for (InvertedIndex shard : shards) {
+            shard.flush();
+        }
+        refresh();
+    }
+
+    public int addDocument(String documentName, TermFrequencies termFrequencies) {
+        int shard = shardOf(documentName);
+        int docId = toGlobalDocId(shard, shards.get(shard).addDocument(documentName, termFrequencies));
+        awaitVisible();
+        return docId;
+    }
+
+    /**
+     * Splits the batch by shard and adds every part as one batch, returns the doc ids in input order.
+     */
+    public int[] addDocuments(List<String> documentNames, List<TermFrequencies> termFrequencies) {
+        if (shards.size() == 1) {
+            int[] docIds = shards.get(0).addDocuments(documentNames, termFrequencies);
+            awaitVisible();
+            return docIds;
+        }
+
+        List<List<Integer>> positions = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            positions.add(new ArrayList<>());
+        }
+        for (int i = 0; i < documentNames.size(); i++) {
+            positions.get(shardOf(documentNames.get(i))).add(i);
+        }
+
+        int[] docIds = new int[documentNames.size()];
+        for (int shard = 0; shard < shards.size(); shard++) {
+            List<Integer> shardPositions = positions.get(shard);
+            if (shardPositions.isEmpty()) {
+                continue;
+            }
+
+            List<String> shardNames = new ArrayList<>(shardPositions.size());
+            List<TermFrequencies> shardTermFrequencies = new ArrayList<>(shardPositions.size());
+            for (int position : shardPositions) {
+                shardNames.add(documentNames.get(position));
+                shardTermFrequencies.add(termFrequencies.get(position));
+            }
+
+            int[] localDocIds = shards.get(shard).addDocuments(shardNames, shardTermFrequencies);
+            for (int i = 0; i < localDocIds.length; i++) {
+                docIds[shardPositions.get(i)] = toGlobalDocId(shard, localDocIds[i]);
+            }
+        }
+        awaitVisible();
+        return docIds;
+    }
+
+    public boolean deleteDocument(String documentName) {
+        boolean deleted = shards.get(shardOf(documentName)).deleteDocument(documentName);
+        awaitVisible();
+        return deleted;
+    }
+
+    public int replaceDocument(String documentName, TermFrequencies termFrequencies) {
+        int shard = shardOf(documentName);
+        int docId = toGlobalDocId(shard, shards.get(shard).replaceDocument(documentName, termFrequencies));
+        awaitVisible();
+        return docId;
+    }
+
+    /**
+     * A refresh already running may have missed the caller's write, so the caller waits for the next one.
+     */
+    private void awaitVisible() {
+        if (refreshIntervalMs > 0) {
+            return;
+        }
+
+        CompletableFuture<Void> refreshed;
+        synchronized (requestLock) {
+            if (pendingRefresh == null) {
+                pendingRefresh = new CompletableFuture<>();
+                CompletableFuture<Void> next = pendingRefresh;
+                refreshScheduler.execute(() -> {
+                    synchronized (requestLock) {
+                        pendingRefresh = null;
+                    }
+                    refreshQuietly();
+                    next.complete(null);
+                });
+            }
+            refreshed = pendingRefresh;
+        }
+        refreshed.join();
+    }
+
+    /**
+     * Compacts every shard in turn and returns the number of bytes reclaimed.
+     */
+    public long compact() {
+        long reclaimed = 0;
+        for (InvertedIndex shard : shards) {
+            reclaimed += shard.compact();
+        }
+        if (reclaimed > 0) {
+            log.info("Compaction reclaimed {} bytes in {}", reclaimed, directory);
+            refresh();
+        }
+        return reclaimed;
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            log.warn("Compaction failed in {}", directory, e);
+        }
+    }
+
+    /**
+     * Refreshes every shard and publishes their snapshots together when any of them changed.
+     */
+    public void refresh() {
+        synchronized (refreshLock) {
+            long start = System.nanoTime();
+            boolean changed = snapshot == null;
+            for (InvertedIndex shard : shards) {
+                changed |= shard.refresh();
+            }
+            if (!changed) {
+                return;
+            }
+
+            List<IndexSnapshot> shardSnapshots = new ArrayList<>(shards.size());
+            for (InvertedIndex shard : shards) {
+                shardSnapshots.add(shard.getSnapshot());
+            }
+            snapshot = new ShardedSnapshot(Collections.unmodifiableList(shardSnapshots));
+            refreshCount.incrementAndGet();
+            refreshNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.warn("Refresh failed in {}", directory, e);
+        }
+    }
+
+    public ShardedSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Refreshes that published a snapshot since the index was opened.
+     */
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    /**
+     * Time spent in refreshes that published a snapshot, including freezing the buffers.
+     */
+    public double getRefreshTime(TimeUnit unit) {
+        return (double) refreshNanos.get() / unit.toNanos(1);
+    }
+
+    public int shardOf(String documentName) {
+        return Math.floorMod(documentName.hashCode(), shards.size());
+    }
+
+    public int toGlobalDocId(int shard, int localDocId) {
+        return localDocId * shards.size() + shard;
+    }
+
+    public String getDocumentName(int docId) {
+        return shards.get(docId % shards.size()).getDocumentName(docId / shards.size());
+    }
+
+    public int getDocumentLength(int docId) {
+        return shards.get(docId % shards.size()).getDocumentLength(docId / shards.size());
+    }
+
+    public int[] getOffsets(int docId, String term) {
+        return shards.get(docId % shards.size()).getOffsets(docId / shards.size(), term);
+    }
+
+    public boolean isLive(int docId) {
+        return shards.get(docId % shards.size()).isLive(docId / shards.size());
+    }
+
+    public boolean containsDocument(String documentName) {
+        return shards.get(shardOf(documentName)).containsDocument(documentName);
+    }
+
+    /**
+     * Number of live documents.
+     */
+    public int getDocumentCount() {
+        int documentCount = 0;
+        for (InvertedIndex shard : shards) {
+            documentCount += shard.getDocumentCount();
+        }
+        return documentCount;
+    }
+
+    public int getDeletedDocumentCount() {
+        int deletedCount = 0;
+        for (InvertedIndex shard : shards) {
+            deletedCount += shard.getDeletedDocumentCount();
+        }
+        return deletedCount;
+    }
+
+    /**
+     * Segment bytes reclaimed by compaction since the index was opened.
+     */
+    public long getReclaimedBytes() {
+        long reclaimedBytes = 0;
+        for (InvertedIndex shard : shards) {
+            reclaimedBytes += shard.getReclaimedBytes();
+        }
+        return reclaimedBytes;
+    }
+
+    /**
+     * Dictionary entries of all segments, a term present in several segments is counted in each of them.
+     */
+    public long getTermCount() {
+        long termCount = 0;
+        for (InvertedIndex shard : shards) {
+            termCount += shard.getTermCount();
+        }
+        return termCount;
+    }
+
+    public long getPostingsCount() {
+        long postingsCount = 0;
+        for (InvertedIndex shard : shards) {
+            postingsCount += shard.getPostingsCount();
+        }
+        return postingsCount;
+    }
+
+    public long estimateHeapBytes() {
+        long heapBytes = 0;
+        for (InvertedIndex shard : shards) {
+            heapBytes += shard.estimateHeapBytes();
+        }
+        return heapBytes;
+    }
+
+    /**
+     * Size of the term dictionaries of all segments, see {@link IndexSegment#getTermDictionaryBytes()}.
+     */
+    public long getTermDictionaryBytes() {
+        long dictionaryBytes = 0;
+        for (InvertedIndex shard : shards) {
+            dictionaryBytes += shard.getTermDictionaryBytes();
+        }
+        return dictionaryBytes;
+    }
+
+    /**
+     * Sum of the shard generations, changes whenever any shard does.
+     */
+    public long getGeneration() {
+        long generation = 0;
+        for (InvertedIndex shard : shards) {
+            generation += shard.getGeneration();
+        }
+        return generation;
+    }
+
+    public boolean isIndexPositions() {
+        return shards.get(0).isIndexPositions();
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public InvertedIndex getShard(int shard) {
+        return shards.get(shard);
+    }
+}
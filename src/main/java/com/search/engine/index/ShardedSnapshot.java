@@ -0,0 +1,71 @@
+package com.search.engine.index;
+
+import java.util.List;
+
+/**
+ * One {@link IndexSnapshot} per shard, published together by {@link ShardedIndex#refresh()}. Doc ids are global,
+ * interleaved like in {@link ShardedIndex}.
+ */
+public final class ShardedSnapshot {
+
+    private final List<IndexSnapshot> shards;
+    private final long generation;
+    private final int documentCount;
+
+    ShardedSnapshot(List<IndexSnapshot> shards) {
+        this.shards = shards;
+
+        long sumOfGenerations = 0;
+        int liveDocuments = 0;
+        for (IndexSnapshot shard : shards) {
+            sumOfGenerations += shard.getGeneration();
+            liveDocuments += shard.getDocumentCount();
+        }
+        this.generation = sumOfGenerations;
+        this.documentCount = liveDocuments;
+    }
+
+    public IndexSnapshot getShard(int shard) {
+        return shards.get(shard);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public int toGlobalDocId(int shard, int localDocId) {
+        return localDocId * shards.size() + shard;
+    }
+
+    public String getDocumentName(int docId) {
+        return shards.get(docId % shards.size()).getDocumentName(docId / shards.size());
+    }
+
+    /**
+     * Number of live documents.
+     */
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Average length of the live documents, 0 when there are none.
+     */
+    public double getAverageDocumentLength() {
+        if (documentCount == 0) {
+            return 0;
+        }
+        long totalLength = 0;
+        for (IndexSnapshot shard : shards) {
+            totalLength += shard.getTotalDocumentLength();
+        }
+        return (double) totalLength / documentCount;
+    }
+
+    /**
+     * Sum of the shard generations, results computed under the same generation are still valid.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+}
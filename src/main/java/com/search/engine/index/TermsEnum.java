@@ -0,0 +1,22 @@
+package com.search.engine.index;
+
+/**
+ * Cursor over the sorted terms of one segment. The buffer sorts terms as strings and mapped segments as UTF-8
+ * bytes, both orders keep the terms sharing a prefix next to each other, which is all term expansion relies on.
+ */
+public interface TermsEnum {
+
+    /**
+     * Moves to the first term greater than or equal to the target, returns {@code false} when there is none.
+     */
+    boolean seekCeil(String target);
+
+    /**
+     * Moves to the following term, returns {@code false} after the last one.
+     */
+    boolean next();
+
+    String term();
+
+    Postings postings();
+}
@@ -0,0 +1,330 @@
+package com.search.engine.index;
+
+import com.search.engine.analysis.TermFrequencies;
+import com.search.engine.exception.IndexException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static com.search.engine.exception.IndexException.WRITE_LOG_ERROR;
+
+/**
+ * Append only log of index operations not yet covered by a segment. There is one log file per buffer,
+ * named after the buffer doc base, and it is deleted once that buffer is written as a segment.
+ * Every record is {@code length, crc32, payload}, a torn record at the end of a file ends the replay.
+ */
+public class WriteAheadLog implements Closeable {
+
+    public static final String LOG_SUFFIX = ".wal";
+    private static final String LOG_NAME_FORMAT = "%010d" + LOG_SUFFIX;
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final byte ADD_DOCUMENT = 1;
+    private static final byte DELETE_DOCUMENT = 2;
+    private static final byte ADD_DOCUMENT_WITH_OFFSETS = 4;
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final Object writeLock = new Object();
+    private final Object syncLock = new Object();
+    private final ScheduledExecutorService syncScheduler;
+    private FileChannel channel;
+    private long writtenPosition;
+    private volatile long syncedPosition;
+
+    public interface RecordConsumer {
+        void addDocument(String documentName, TermFrequencies termFrequencies);
+
+        void deleteDocument(int docId);
+    }
+
+    public WriteAheadLog(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMs) {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            syncScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wal-fsync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncScheduler.scheduleWithFixedDelay(this::sync, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            syncScheduler = null;
+        }
+    }
+
+    /**
+     * Replays, in doc base order, every log file starting at or after {@code fromDocBase}. Documents in older
+     * files are already covered by segments, only their deletes are replayed because the deleted documents
+     * file may not include them yet. Returns the number of replayed records.
+     */
+    public int replay(int fromDocBase, RecordConsumer consumer) throws IOException {
+        int replayedRecords = 0;
+
+        for (Path file : listLogFiles()) {
+            replayedRecords += replayFile(file, docBaseOf(file) >= fromDocBase, consumer);
+        }
+
+        return replayedRecords;
+    }
+
+    /**
+     * Deletes log files of buffers that were already written as segments.
+     */
+    public void deleteBefore(int docBase) throws IOException {
+        for (Path file : listLogFiles()) {
+            if (docBaseOf(file) < docBase) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Starts a new log file for the buffer with the given doc base, the previous file is forced and closed.
+     * An existing file with that name never holds a replayable record, so it is truncated.
+     */
+    public void rotate(int docBase) {
+        synchronized (writeLock) {
+            try {
+                closeChannel();
+                channel = FileChannel.open(directory.resolve(String.format(LOG_NAME_FORMAT, docBase)),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (IOException e) {
+                throw new IndexException(WRITE_LOG_ERROR + directory, e);
+            }
+        }
+    }
+
+    public void delete(int docBase) {
+        try {
+            Files.deleteIfExists(directory.resolve(String.format(LOG_NAME_FORMAT, docBase)));
+        } catch (IOException e) {
+            throw new IndexException(WRITE_LOG_ERROR + directory, e);
+        }
+    }
+
+    /**
+     * Appends the record and returns the log position it ends at, to be passed to {@link #awaitDurable(long)}.
+     */
+    public long appendAddDocument(String documentName, TermFrequencies termFrequencies) {
+        return appendAddDocuments(Collections.singletonList(documentName), Collections.singletonList(termFrequencies));
+    }
+
+    /**
+     * Appends the records with a single gathering write, so a batch costs one write and at most one fsync.
+     */
+    public long appendAddDocuments(List<String> documentNames, List<TermFrequencies> termFrequencies) {
+        ByteBuffer[] records = new ByteBuffer[documentNames.size()];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = encodeAddDocument(documentNames.get(i), termFrequencies.get(i));
+        }
+        return append(records);
+    }
+
+    public long appendDeleteDocument(int docId) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + 1 + Integer.BYTES);
+        record.put(RECORD_HEADER_SIZE, DELETE_DOCUMENT);
+        record.putInt(RECORD_HEADER_SIZE + 1, docId);
+        return append(seal(record));
+    }
+
+    private long append(ByteBuffer... records) {
+        long recordsSize = 0;
+        for (ByteBuffer record : records) {
+            recordsSize += record.remaining();
+        }
+
+        synchronized (writeLock) {
+            try {
+                long written = 0;
+                while (written < recordsSize) {
+                    written += channel.write(records);
+                }
+                writtenPosition += recordsSize;
+                return writtenPosition;
+            } catch (IOException e) {
+                throw new IndexException(WRITE_LOG_ERROR + directory, e);
+            }
+        }
+    }
+
+    /**
+     * Blocks until the log is durable up to the position when the policy is {@link FsyncPolicy#ALWAYS}.
+     * Writers waiting at the same time are covered by a single fsync.
+     */
+    public void awaitDurable(long position) {
+        if (fsyncPolicy == FsyncPolicy.ALWAYS && syncedPosition < position) {
+            synchronized (syncLock) {
+                if (syncedPosition < position) {
+                    sync();
+                }
+            }
+        }
+    }
+
+    private void sync() {
+        FileChannel currentChannel;
+        long position;
+
+        synchronized (writeLock) {
+            currentChannel = channel;
+            position = writtenPosition;
+        }
+        if (position <= syncedPosition || currentChannel == null) {
+            return;
+        }
+
+        try {
+            currentChannel.force(false);
+            syncedPosition = Math.max(syncedPosition, position);
+        } catch (IOException e) {
+            if (currentChannel.isOpen()) {
+                throw new IndexException(WRITE_LOG_ERROR + directory, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (syncScheduler != null) {
+            syncScheduler.shutdownNow();
+        }
+        synchronized (writeLock) {
+            closeChannel();
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+            channel = null;
+            syncedPosition = writtenPosition;
+        }
+    }
+
+    private List<Path> listLogFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + LOG_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort((first, second) -> Integer.compare(docBaseOf(first), docBaseOf(second)));
+        return files;
+    }
+
+    private static int docBaseOf(Path file) {
+        String fileName = file.getFileName().toString();
+        return Integer.parseInt(fileName.substring(0, fileName.length() - LOG_SUFFIX.length()));
+    }
+
+    private static ByteBuffer encodeAddDocument(String documentName, TermFrequencies termFrequencies) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream payload = new DataOutputStream(bytes)) {
+            payload.writeInt(0);
+            payload.writeInt(0);
+            payload.writeByte(termFrequencies.hasPositions() ? ADD_DOCUMENT_WITH_OFFSETS : ADD_DOCUMENT);
+            payload.writeUTF(documentName);
+            payload.writeInt(termFrequencies.size());
+            termFrequencies.forEachWithPositions((term, count, positions, offsets) -> {
+                try {
+                    payload.writeUTF(term);
+                    payload.writeInt(count);
+                    for (int i = 0; positions != null && i < count; i++) {
+                        payload.writeInt(positions[i]);
+                        payload.writeInt(offsets[i]);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new IndexException(WRITE_LOG_ERROR + documentName, e);
+        }
+
+        return seal(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    private static ByteBuffer seal(ByteBuffer record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER_SIZE, record.capacity() - RECORD_HEADER_SIZE);
+        record.putInt(0, record.capacity() - RECORD_HEADER_SIZE);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+        return record;
+    }
+
+    private static int replayFile(Path file, boolean replayDocuments, RecordConsumer consumer) throws IOException {
+        int replayedRecords = 0;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            byte[] payload;
+            while ((payload = readRecord(input)) != null) {
+                if (decode(payload, replayDocuments, consumer)) {
+                    replayedRecords++;
+                }
+            }
+        }
+
+        return replayedRecords;
+    }
+
+    private static byte[] readRecord(DataInputStream input) throws IOException {
+        try {
+            int length = input.readInt();
+            int checksum = input.readInt();
+            if (length <= 0) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            input.readFully(payload);
+
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, length);
+            return (int) crc.getValue() == checksum ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static boolean decode(byte[] payload, boolean replayDocuments, RecordConsumer consumer) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+        byte operation = input.readByte();
+
+        if (operation == DELETE_DOCUMENT) {
+            consumer.deleteDocument(input.readInt());
+            return true;
+        }
+        boolean withPositions = operation == ADD_DOCUMENT_WITH_OFFSETS;
+        if ((operation == ADD_DOCUMENT || withPositions) && replayDocuments) {
+            String documentName = input.readUTF();
+            int distinctTerms = input.readInt();
+            TermFrequencies termFrequencies = withPositions ? TermFrequencies.withPositions() : new TermFrequencies();
+            for (int i = 0; i < distinctTerms; i++) {
+                String term = input.readUTF();
+                int count = input.readInt();
+                int[] positions = withPositions ? new int[count] : null;
+                int[] offsets = withPositions ? new int[count] : null;
+                for (int j = 0; withPositions && j < count; j++) {
+                    positions[j] = input.readInt();
+                    offsets[j] = input.readInt();
+                }
+                termFrequencies.add(term, count, positions, offsets);
+            }
+            consumer.addDocument(documentName, termFrequencies);
+            return true;
+        }
+        return false;
+    }
+}
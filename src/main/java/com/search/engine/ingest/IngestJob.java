@@ -0,0 +1,80 @@
+package com.search.engine.ingest;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Progress of one asynchronous upload. Files are updated by the ingest worker and read by status requests.
+ */
+@Getter
+public class IngestJob {
+
+    private final String id;
+    private final List<IngestFile> files = new ArrayList<>();
+
+    public IngestJob(String id) {
+        this.id = id;
+    }
+
+    public IngestFile addFile(String name, long size) {
+        IngestFile file = new IngestFile(name, size);
+        files.add(file);
+        return file;
+    }
+
+    public List<IngestFile> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    /**
+     * QUEUED until a file is picked up, DONE when every file is finished and at least one was indexed,
+     * FAILED when none were.
+     */
+    public IngestStatus getStatus() {
+        boolean started = false;
+        boolean finished = true;
+        boolean indexed = false;
+
+        for (IngestFile file : files) {
+            IngestStatus status = file.getStatus();
+            started |= status != IngestStatus.QUEUED;
+            finished &= status.isFinished();
+            indexed |= status == IngestStatus.DONE;
+        }
+
+        if (finished) {
+            return indexed ? IngestStatus.DONE : IngestStatus.FAILED;
+        }
+        return started ? IngestStatus.INDEXING : IngestStatus.QUEUED;
+    }
+
+    @Getter
+    public static class IngestFile {
+
+        private final String name;
+        private final long size;
+        private volatile IngestStatus status = IngestStatus.QUEUED;
+        private volatile String error;
+
+        private IngestFile(String name, long size) {
+            this.name = name;
+            this.size = size;
+        }
+
+        public void indexing() {
+            status = IngestStatus.INDEXING;
+        }
+
+        public void done() {
+            status = IngestStatus.DONE;
+        }
+
+        public void failed(String error) {
+            this.error = error;
+            status = IngestStatus.FAILED;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.search.engine.ingest;
+
+public enum IngestStatus {
+    QUEUED,
+    INDEXING,
+    DONE,
+    FAILED;
+
+    public boolean isFinished() {
+        return this == DONE || this == FAILED;
+    }
+}
@@ -0,0 +1,81 @@
+package com.search.engine.metrics;
+
+import com.search.engine.search.GenerationalCache;
+import com.search.engine.search.Operator;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Timers of the ingest and query hot paths, all created up front so recording never registers a meter.
+ */
+@Getter
+@Component
+public class EngineMetrics {
+
+    @Getter(AccessLevel.NONE)
+    private final MeterRegistry meterRegistry;
+    private final Timer storeTimer;
+    private final Timer tokenizeTimer;
+    private final Timer mergeTimer;
+    private final Timer lookupTimer;
+    private final Timer snippetTimer;
+    private final Map<Operator, Timer> rankingTimers = new EnumMap<>(Operator.class);
+
+    public EngineMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.storeTimer = timer("engine.upload.store", "Writing an upload to storage", meterRegistry);
+        this.tokenizeTimer = timer("engine.upload.tokenize", "Reading and tokenizing an upload", meterRegistry);
+        this.mergeTimer = timer("engine.index.merge", "Adding analyzed documents to the index", meterRegistry);
+        this.lookupTimer = timer("engine.query.lookup", "Collecting postings and statistics of a term", meterRegistry);
+        this.snippetTimer = timer("engine.query.snippet", "Cutting and highlighting the snippet of a hit", meterRegistry);
+        for (Operator operator : Operator.values()) {
+            rankingTimers.put(operator, Timer.builder("engine.query.ranking")
+                    .description("Scoring and ranking the documents of a query")
+                    .tag("operator", operator.name())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Metrics kept in memory only, for code running outside the application context.
+     */
+    public static EngineMetrics detached() {
+        return new EngineMetrics(new SimpleMeterRegistry());
+    }
+
+    public Timer getRankingTimer(Operator operator) {
+        return rankingTimers.get(operator);
+    }
+
+    public void bindCache(GenerationalCache<?, ?> cache) {
+        Gauge.builder("engine.cache.size", cache, GenerationalCache::size)
+                .tag("cache", cache.getName())
+                .register(meterRegistry);
+        FunctionCounter.builder("engine.cache.hits", cache, GenerationalCache::getHits)
+                .tag("cache", cache.getName())
+                .register(meterRegistry);
+        FunctionCounter.builder("engine.cache.misses", cache, GenerationalCache::getMisses)
+                .tag("cache", cache.getName())
+                .register(meterRegistry);
+        FunctionCounter.builder("engine.cache.evictions", cache, GenerationalCache::getEvictions)
+                .tag("cache", cache.getName())
+                .register(meterRegistry);
+    }
+
+    private static Timer timer(String name, String description, MeterRegistry meterRegistry) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
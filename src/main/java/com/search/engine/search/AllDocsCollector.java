@@ -0,0 +1,23 @@
+package com.search.engine.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class AllDocsCollector implements ScoreCollector {
+
+    private final List<ScoredDocument> documents = new ArrayList<>();
+
+    @Override
+    public void collect(int docId, double score) {
+        documents.add(new ScoredDocument(docId, score));
+    }
+
+    @Override
+    public double minCompetitiveScore() {
+        return Double.NEGATIVE_INFINITY;
+    }
+
+    public List<ScoredDocument> getDocuments() {
+        return documents;
+    }
+}
@@ -0,0 +1,114 @@
+package com.search.engine.search;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Okapi BM25. Document lengths are quantized to a one byte norm, 4 significant bits above the first 24 lengths,
+ * so the length part of the formula is looked up in a table of 256 entries. Norms aren't stored, segments keep
+ * the exact lengths TF-IDF and the average length need, so the norm is encoded per posting. The table only
+ * depends on the average length and is shared by every term scored on the same snapshot.
+ */
+public class BM25Similarity implements Similarity {
+
+    private static final int EXACT_LENGTHS = 255 - toInt4(Integer.MAX_VALUE);
+    private static final int NORM_VALUES = 256;
+
+    /**
+     * A decoded norm is more than 8/9 of the length, see {@link #decodeLength(int)}.
+     */
+    private static final double MIN_DECODED_RATIO = 8.0 / 9;
+
+    private final double k1;
+    private final double b;
+    private volatile LengthNorms lengthNorms;
+
+    public BM25Similarity(double k1, double b) {
+        if (k1 < 0 || b < 0 || b > 1) {
+            throw new IllegalArgumentException("BM25 needs k1 >= 0 and b between 0 and 1");
+        }
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    @Override
+    public double idf(int documentFrequency, int documentCount) {
+        return Math.log(1 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    @Override
+    public DocScorer scorer(double idf, DoubleSupplier averageDocumentLength) {
+        double average = Math.max(1, averageDocumentLength.getAsDouble());
+        double[] lengthNorms = getLengthNorms(average);
+        double weight = idf * (k1 + 1);
+
+        return new DocScorer() {
+
+            @Override
+            public double score(int frequency, int documentLength) {
+                return weight * frequency / (frequency + lengthNorms[encodeLength(documentLength)]);
+            }
+
+            /**
+             * The length is at least the frequency divided by {@code maxTermFrequency}, the score grows with the
+             * frequency towards its limit at that length.
+             */
+            @Override
+            public double maxScore(double maxTermFrequency) {
+                double lengthWeight = k1 * b * MIN_DECODED_RATIO / (maxTermFrequency * average);
+                return weight / (1 + lengthWeight);
+            }
+        };
+    }
+
+    private double[] getLengthNorms(double average) {
+        LengthNorms current = lengthNorms;
+        if (current == null || current.average != average) {
+            double[] values = new double[NORM_VALUES];
+            for (int norm = 0; norm < NORM_VALUES; norm++) {
+                values[norm] = k1 * (1 - b + b * decodeLength(norm) / average);
+            }
+            current = new LengthNorms(average, values);
+            lengthNorms = current;
+        }
+        return current.values;
+    }
+
+    /**
+     * Byte norm of a document length, lengths below 24 are exact and longer ones keep 4 significant bits.
+     */
+    static int encodeLength(int length) {
+        return length < EXACT_LENGTHS ? length : EXACT_LENGTHS + toInt4(length - EXACT_LENGTHS);
+    }
+
+    /**
+     * Smallest length with the norm, more than 8/9 of any length encoded to it.
+     */
+    static int decodeLength(int norm) {
+        return norm < EXACT_LENGTHS ? norm : EXACT_LENGTHS + fromInt4(norm - EXACT_LENGTHS);
+    }
+
+    private static int toInt4(int value) {
+        int bits = Integer.SIZE - Integer.numberOfLeadingZeros(value);
+        if (bits < 4) {
+            return value;
+        }
+        int shift = bits - 4;
+        return ((value >>> shift) & 0x07) | (shift + 1) << 3;
+    }
+
+    private static int fromInt4(int value) {
+        int shift = (value >>> 3) - 1;
+        return shift < 0 ? value : ((value & 0x07) | 0x08) << shift;
+    }
+
+    private static final class LengthNorms {
+
+        private final double average;
+        private final double[] values;
+
+        private LengthNorms(double average, double[] values) {
+            this.average = average;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.search.engine.search;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands the documents every shard scores to one collector, which is only ever called on the thread that created
+ * this one. Other shards put their documents in a bounded queue and wait while it is full, the owning thread
+ * drains it before each document of its own shard and in {@link #drainUntil(CompletableFuture)} afterwards.
+ * Closing makes waiting shards give up, so a failed owner never leaves them blocked.
+ */
+public class ForwardingCollector implements ScoreCollector, AutoCloseable {
+
+    public static final String STREAM_CLOSED_ERROR = "Scored documents are no longer consumed";
+    public static final String STREAM_INTERRUPTED_ERROR = "Streaming scored documents was interrupted";
+    private static final long POLL_TIMEOUT_MS = 10;
+
+    private final ScoreCollector target;
+    private final Thread owner = Thread.currentThread();
+    private final BlockingQueue<ScoredDocument> queue;
+    private volatile boolean closed;
+
+    public ForwardingCollector(ScoreCollector target, int capacity) {
+        this.target = target;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public void collect(int docId, double score) {
+        if (Thread.currentThread() == owner) {
+            drain();
+            forward(docId, score);
+            return;
+        }
+
+        ScoredDocument document = new ScoredDocument(docId, score);
+        try {
+            while (!queue.offer(document, POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                if (closed) {
+                    throw new IllegalStateException(STREAM_CLOSED_ERROR);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(STREAM_INTERRUPTED_ERROR, e);
+        }
+    }
+
+    @Override
+    public double minCompetitiveScore() {
+        return Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Forwards queued documents on the owning thread until the other shards are done, then rethrows their failure.
+     */
+    public void drainUntil(CompletableFuture<?> shards) {
+        try {
+            while (!shards.isDone()) {
+                ScoredDocument document = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (document != null) {
+                    forward(document.getDocId(), document.getScore());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(STREAM_INTERRUPTED_ERROR, e);
+        }
+        drain();
+        shards.join();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        queue.clear();
+    }
+
+    private void drain() {
+        ScoredDocument document;
+        while ((document = queue.poll()) != null) {
+            forward(document.getDocId(), document.getScore());
+        }
+    }
+
+    private void forward(int docId, double score) {
+        try {
+            target.collect(docId, score);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.search.engine.search;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache whose entries are tagged with the index generation they were computed for. An entry
+ * read under a different generation counts as a miss and is dropped.
+ */
+public class GenerationalCache<K, V> {
+
+    private final String name;
+    private final int maxSize;
+    private final LinkedHashMap<K, CachedValue<V>> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public GenerationalCache(String name, int maxSize) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<K, CachedValue<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CachedValue<V>> eldest) {
+                boolean evict = size() > GenerationalCache.this.maxSize;
+                if (evict) {
+                    evictions++;
+                }
+                return evict;
+            }
+        };
+    }
+
+    public synchronized V get(K key, long generation) {
+        CachedValue<V> entry = entries.get(key);
+
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.generation != generation) {
+            entries.remove(key);
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    public synchronized void put(K key, long generation, V value) {
+        if (maxSize > 0) {
+            entries.put(key, new CachedValue<>(generation, value));
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    private static final class CachedValue<V> {
+        private final long generation;
+        private final V value;
+
+        private CachedValue(long generation, V value) {
+            this.generation = generation;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.search.engine.search;
+
+public enum Operator {
+
+    /**
+     * Documents containing every term of the query.
+     */
+    AND,
+
+    /**
+     * Documents containing at least one term of the query.
+     */
+    OR
+}
@@ -0,0 +1,179 @@
+package com.search.engine.search;
+
+import com.search.engine.analysis.Analyzer;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One clause of a keyword query. Plain words are analyzed like indexed text, {@code optim*} is a prefix,
+ * {@code opt?m*ze} a wildcard pattern where {@code ?} is one character and {@code *} any run of characters,
+ * and {@code optimise~} or {@code optimise~1} a fuzzy term within 2 or the given number of edits.
+ * {@code "connection pool"} is a phrase and {@code "connection timeout"~5} a proximity query matching the words
+ * in any order within 5 other words, both need an index with positions.
+ */
+@Getter
+@EqualsAndHashCode
+public class QueryTerm {
+
+    public static final int MAX_EDITS = 2;
+    static final char ANY_CHARACTER = '?';
+    static final char ANY_CHARACTERS = '*';
+    private static final char FUZZY = '~';
+    private static final char QUOTE = '"';
+    private static final String PHRASE_SEPARATOR = " ";
+    private static final int MAX_SLOP_DIGITS = 4;
+
+    public enum Type {
+        TERM, PREFIX, WILDCARD, FUZZY, PHRASE
+    }
+
+    private final Type type;
+
+    private final String text;
+
+    private final int maxEdits;
+
+    private final int slop;
+
+    private QueryTerm(Type type, String text, int maxEdits) {
+        this(type, text, maxEdits, 0);
+    }
+
+    private QueryTerm(Type type, String text, int maxEdits, int slop) {
+        this.type = type;
+        this.text = text;
+        this.maxEdits = maxEdits;
+        this.slop = slop;
+    }
+
+    public static QueryTerm term(String text) {
+        return new QueryTerm(Type.TERM, text, 0);
+    }
+
+    /**
+     * Splits the keyword with the analyzer separators, a quoted part is a single phrase clause.
+     * Repeated clauses are kept once.
+     */
+    public static List<QueryTerm> parse(String keyword, Analyzer analyzer) {
+        Set<QueryTerm> queryTerms = new LinkedHashSet<>();
+        int start = 0;
+
+        for (int i = 0; i <= keyword.length(); i++) {
+            if (i == start && i < keyword.length() && keyword.charAt(i) == QUOTE) {
+                int end = keyword.indexOf(QUOTE, i + 1);
+                end = end < 0 ? keyword.length() : end;
+                int slopEnd = end + 1;
+                if (slopEnd < keyword.length() && keyword.charAt(slopEnd) == FUZZY) {
+                    slopEnd++;
+                    while (slopEnd < keyword.length() && slopEnd - end - 2 < MAX_SLOP_DIGITS
+                            && Character.isDigit(keyword.charAt(slopEnd))) {
+                        slopEnd++;
+                    }
+                }
+                QueryTerm queryTerm = parsePhrase(keyword.substring(i + 1, end), slop(keyword, end + 2, slopEnd), analyzer);
+                if (queryTerm != null) {
+                    queryTerms.add(queryTerm);
+                }
+                start = slopEnd;
+                i = slopEnd - 1;
+                continue;
+            }
+            if (i == keyword.length() || analyzer.isSeparator(keyword.charAt(i))) {
+                if (i > start) {
+                    QueryTerm queryTerm = parseToken(keyword.substring(start, i), analyzer);
+                    if (queryTerm != null) {
+                        queryTerms.add(queryTerm);
+                    }
+                }
+                start = i + 1;
+            }
+        }
+        return new ArrayList<>(queryTerms);
+    }
+
+    private static int slop(String keyword, int start, int end) {
+        return start < end ? Integer.parseInt(keyword.substring(start, end)) : 0;
+    }
+
+    /**
+     * A proximity query ignores the order, so its repeated words are kept once.
+     */
+    private static QueryTerm parsePhrase(String phrase, int slop, Analyzer analyzer) {
+        Collection<String> terms = slop > 0 ? new LinkedHashSet<>(analyzer.analyze(phrase)) : analyzer.analyze(phrase);
+        if (terms.isEmpty()) {
+            return null;
+        }
+        String text = String.join(PHRASE_SEPARATOR, terms);
+        return terms.size() == 1 ? term(text) : new QueryTerm(Type.PHRASE, text, 0, slop);
+    }
+
+    private static QueryTerm parseToken(String token, Analyzer analyzer) {
+        int fuzzyAt = token.lastIndexOf(FUZZY);
+        if (fuzzyAt > 0 && isEdits(token.substring(fuzzyAt + 1))) {
+            String text = normalize(token.substring(0, fuzzyAt), analyzer, false);
+            int maxEdits = fuzzyAt + 1 == token.length() ? MAX_EDITS : Integer.parseInt(token.substring(fuzzyAt + 1));
+            return text.isEmpty() ? null : new QueryTerm(Type.FUZZY, text, maxEdits);
+        }
+
+        if (token.indexOf(ANY_CHARACTER) >= 0 || token.indexOf(ANY_CHARACTERS) >= 0) {
+            String pattern = normalize(token, analyzer, true);
+            int firstWildcard = pattern.indexOf(ANY_CHARACTERS);
+            if (firstWildcard == pattern.length() - 1 && pattern.indexOf(ANY_CHARACTER) < 0) {
+                return new QueryTerm(Type.PREFIX, pattern.substring(0, firstWildcard), 0);
+            }
+            return new QueryTerm(Type.WILDCARD, pattern, 0);
+        }
+
+        String text = normalize(token, analyzer, false);
+        return text.isEmpty() ? null : new QueryTerm(Type.TERM, text, 0);
+    }
+
+    private static boolean isEdits(String edits) {
+        return edits.isEmpty() || (edits.length() == 1 && edits.charAt(0) >= '0' && edits.charAt(0) <= '0' + MAX_EDITS);
+    }
+
+    private static String normalize(String token, Analyzer analyzer, boolean keepWildcards) {
+        StringBuilder text = new StringBuilder(token.length());
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (keepWildcards && (c == ANY_CHARACTER || c == ANY_CHARACTERS)) {
+                text.append(c);
+            } else if (!analyzer.isIgnored(c)) {
+                text.append(analyzer.normalize(c));
+            }
+        }
+        return text.toString();
+    }
+
+    public boolean isMultiTerm() {
+        return type != Type.TERM && type != Type.PHRASE;
+    }
+
+    /**
+     * Words of a phrase in query order.
+     */
+    public List<String> getPhraseTerms() {
+        return Arrays.asList(text.split(PHRASE_SEPARATOR));
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case PREFIX:
+                return text + ANY_CHARACTERS;
+            case FUZZY:
+                return text + FUZZY + maxEdits;
+            case PHRASE:
+                return QUOTE + text + QUOTE + (slop > 0 ? String.valueOf(FUZZY) + slop : "");
+            default:
+                return text;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.search.engine.search;
+
+/**
+ * Receives scored documents in doc id order.
+ */
+public interface ScoreCollector {
+
+    void collect(int docId, double score);
+
+    /**
+     * Documents scoring at or below this value would be dropped, so scorers may skip them.
+     */
+    double minCompetitiveScore();
+}
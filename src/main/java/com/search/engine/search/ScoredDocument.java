@@ -0,0 +1,26 @@
+package com.search.engine.search;
+
+import lombok.Getter;
+
+@Getter
+public class ScoredDocument {
+
+    private final int docId;
+
+    /**
+     * Resolved on the snapshot that scored the document, {@code null} straight from a collector.
+     */
+    private final String name;
+
+    private final double score;
+
+    public ScoredDocument(int docId, double score) {
+        this(docId, null, score);
+    }
+
+    public ScoredDocument(int docId, String name, double score) {
+        this.docId = docId;
+        this.name = name;
+        this.score = score;
+    }
+}
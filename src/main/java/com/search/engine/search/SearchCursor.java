@@ -0,0 +1,66 @@
+package com.search.engine.search;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position after the last document of a page: the snapshot generation the page was ranked on and the score and
+ * doc id of its last document. The next page holds the documents ranked after it, lower scores first and on equal
+ * scores higher doc ids, so pages never overlap or skip a document while the snapshot is kept.
+ */
+@Getter
+public class SearchCursor {
+
+    public static final String INVALID_CURSOR_ERROR = "Invalid cursor: ";
+
+    private static final String SEPARATOR = ".";
+
+    private final long generation;
+
+    private final double score;
+
+    private final int docId;
+
+    public SearchCursor(long generation, double score, int docId) {
+        this.generation = generation;
+        this.score = score;
+        this.docId = docId;
+    }
+
+    /**
+     * True when the document is ranked after this position.
+     */
+    public boolean isBefore(int docId, double score) {
+        return score < this.score || (score == this.score && docId > this.docId);
+    }
+
+    /**
+     * Opaque URL safe form handed to clients.
+     */
+    public String encode() {
+        String cursor = Long.toHexString(generation) + SEPARATOR
+                + Long.toHexString(Double.doubleToLongBits(score)) + SEPARATOR + Integer.toHexString(docId);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static SearchCursor decode(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII)
+                    .split("\\" + SEPARATOR);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException(INVALID_CURSOR_ERROR + cursor);
+            }
+            return new SearchCursor(Long.parseUnsignedLong(parts[0], 16),
+                    Double.longBitsToDouble(Long.parseUnsignedLong(parts[1], 16)), Integer.parseUnsignedInt(parts[2], 16));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(INVALID_CURSOR_ERROR + cursor);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+}
@@ -0,0 +1,22 @@
+package com.search.engine.search;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Best documents of one page and the cursor of the next one, {@code null} after the last page or for pages
+ * requested by offset.
+ */
+@Getter
+public class SearchPage {
+
+    private final List<ScoredDocument> documents;
+
+    private final SearchCursor nextCursor;
+
+    public SearchPage(List<ScoredDocument> documents, SearchCursor nextCursor) {
+        this.documents = documents;
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,35 @@
+package com.search.engine.search;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Scoring model applied at query time to the raw term frequencies and document lengths kept by the index.
+ */
+public interface Similarity {
+
+    /**
+     * Weight of a term held by {@code documentFrequency} of the {@code documentCount} live documents.
+     */
+    double idf(int documentFrequency, int documentCount);
+
+    /**
+     * Scorer of one term, the average length of the live documents is only computed by models that need it.
+     */
+    DocScorer scorer(double idf, DoubleSupplier averageDocumentLength);
+
+    interface DocScorer {
+
+        double score(int frequency, int documentLength);
+
+        /**
+         * Highest score of a posting whose frequency divided by the document length is at most
+         * {@code maxTermFrequency}, never below zero.
+         */
+        double maxScore(double maxTermFrequency);
+    }
+
+    enum Model {
+        TFIDF,
+        BM25
+    }
+}
@@ -0,0 +1,31 @@
+package com.search.engine.search;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Frequency divided by document length times {@code log(N / df)}.
+ */
+public class TFIDFSimilarity implements Similarity {
+
+    @Override
+    public double idf(int documentFrequency, int documentCount) {
+        return Math.log((double) documentCount / documentFrequency);
+    }
+
+    @Override
+    public DocScorer scorer(double idf, DoubleSupplier averageDocumentLength) {
+        return new DocScorer() {
+
+            @Override
+            public double score(int frequency, int documentLength) {
+                double paramTF = (double) frequency / documentLength;
+                return paramTF * idf;
+            }
+
+            @Override
+            public double maxScore(double maxTermFrequency) {
+                return Math.max(0, maxTermFrequency * idf);
+            }
+        };
+    }
+}
@@ -0,0 +1,195 @@
+package com.search.engine.search;
+
+import com.search.engine.index.TermsEnum;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Expands a prefix, wildcard or fuzzy {@link QueryTerm} into the indexed terms it matches. Every walk seeks the
+ * sorted dictionary of a segment instead of scanning it: a prefix or the literal start of a wildcard bounds the
+ * range, and the fuzzy walk drops every term sharing a prefix once that prefix is already too many edits away.
+ * At most {@code maxExpansions} terms are kept, closest first and then in term order.
+ */
+public final class TermExpansion {
+
+    private static final String PAST_PREFIX = String.valueOf(Character.MAX_VALUE);
+
+    private final QueryTerm queryTerm;
+    private final int maxExpansions;
+    private final Map<String, Integer> edits = new HashMap<>();
+
+    public TermExpansion(QueryTerm queryTerm, int maxExpansions) {
+        this.queryTerm = queryTerm;
+        this.maxExpansions = maxExpansions;
+    }
+
+    public void collect(TermsEnum terms) {
+        switch (queryTerm.getType()) {
+            case PREFIX:
+                collectPrefix(terms, queryTerm.getText());
+                break;
+            case WILDCARD:
+                collectWildcard(terms);
+                break;
+            case FUZZY:
+                collectFuzzy(terms);
+                break;
+            default:
+                edits.put(queryTerm.getText(), 0);
+        }
+    }
+
+    /**
+     * Matched terms, closest first and then in term order, at most {@code maxExpansions} of them.
+     */
+    public List<String> getTerms() {
+        List<String> terms = new ArrayList<>(edits.keySet());
+        terms.sort(Comparator.comparingInt((String term) -> edits.get(term)).thenComparing(Comparator.naturalOrder()));
+        return terms.size() > maxExpansions ? terms.subList(0, maxExpansions) : terms;
+    }
+
+    private void collectPrefix(TermsEnum terms, String prefix) {
+        int collected = 0;
+        for (boolean found = terms.seekCeil(prefix); found && collected < maxExpansions; found = terms.next()) {
+            String term = terms.term();
+            if (!term.startsWith(prefix)) {
+                return;
+            }
+            edits.putIfAbsent(term, 0);
+            collected++;
+        }
+    }
+
+    private void collectWildcard(TermsEnum terms) {
+        String pattern = queryTerm.getText();
+        String literalPrefix = pattern.substring(0, firstWildcard(pattern));
+        int collected = 0;
+
+        for (boolean found = terms.seekCeil(literalPrefix); found && collected < maxExpansions; found = terms.next()) {
+            String term = terms.term();
+            if (!term.startsWith(literalPrefix)) {
+                return;
+            }
+            if (matchesWildcard(pattern, term)) {
+                edits.putIfAbsent(term, 0);
+                collected++;
+            }
+        }
+    }
+
+    /**
+     * Computes one Levenshtein row per term character and reuses the rows of the prefix shared with the previous
+     * term. When every cell of a row exceeds the allowed edits no term with that prefix can match, so the walk
+     * seeks past the prefix.
+     */
+    private void collectFuzzy(TermsEnum terms) {
+        String target = queryTerm.getText();
+        int maxEdits = queryTerm.getMaxEdits();
+        int[][] rows = new int[target.length() + maxEdits + 2][];
+        rows[0] = new int[target.length() + 1];
+        for (int i = 0; i <= target.length(); i++) {
+            rows[0][i] = i;
+        }
+        String previous = "";
+        int validRows = 0;
+
+        boolean found = terms.seekCeil("");
+        while (found) {
+            String term = terms.term();
+            int depth = Math.min(commonPrefixLength(previous, term), validRows);
+            previous = term;
+
+            int rejectedAt = -1;
+            while (depth < term.length()) {
+                if (depth + 1 >= rows.length) {
+                    rejectedAt = depth;
+                    break;
+                }
+                rows[depth + 1] = nextRow(rows[depth], rows[depth + 1], target, term.charAt(depth));
+                depth++;
+                if (min(rows[depth]) > maxEdits) {
+                    rejectedAt = depth;
+                    break;
+                }
+            }
+            validRows = depth;
+
+            if (rejectedAt >= 0) {
+                found = terms.seekCeil(term.substring(0, rejectedAt) + PAST_PREFIX);
+                continue;
+            }
+            int distance = rows[depth][target.length()];
+            if (distance <= maxEdits) {
+                edits.merge(term, distance, Math::min);
+            }
+            found = terms.next();
+        }
+    }
+
+    private static int[] nextRow(int[] row, int[] reused, String target, char c) {
+        int[] next = reused != null ? reused : new int[row.length];
+        next[0] = row[0] + 1;
+        for (int i = 1; i < row.length; i++) {
+            int substitution = row[i - 1] + (target.charAt(i - 1) == c ? 0 : 1);
+            next[i] = Math.min(substitution, Math.min(row[i] + 1, next[i - 1] + 1));
+        }
+        return next;
+    }
+
+    private static int min(int[] row) {
+        return Arrays.stream(row).min().orElse(0);
+    }
+
+    private static int commonPrefixLength(String first, String second) {
+        int length = Math.min(first.length(), second.length());
+        int common = 0;
+        while (common < length && first.charAt(common) == second.charAt(common)) {
+            common++;
+        }
+        return common;
+    }
+
+    private static int firstWildcard(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == QueryTerm.ANY_CHARACTER || c == QueryTerm.ANY_CHARACTERS) {
+                return i;
+            }
+        }
+        return pattern.length();
+    }
+
+    /**
+     * Greedy match that backtracks to the last {@code *} on a mismatch.
+     */
+    static boolean matchesWildcard(String pattern, String term) {
+        int p = 0;
+        int t = 0;
+        int starAt = -1;
+        int starMatch = 0;
+
+        while (t < term.length()) {
+            if (p < pattern.length() && (pattern.charAt(p) == QueryTerm.ANY_CHARACTER || pattern.charAt(p) == term.charAt(t))) {
+                p++;
+                t++;
+            } else if (p < pattern.length() && pattern.charAt(p) == QueryTerm.ANY_CHARACTERS) {
+                starAt = p++;
+                starMatch = t;
+            } else if (starAt >= 0) {
+                p = starAt + 1;
+                t = ++starMatch;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == QueryTerm.ANY_CHARACTERS) {
+            p++;
+        }
+        return p == pattern.length();
+    }
+}
@@ -0,0 +1,52 @@
+package com.search.engine.search;
+
+import com.search.engine.index.PostingsIterator;
+
+/**
+ * Postings cursor of one query term together with its {@link Similarity.DocScorer} and its position in the query.
+ */
+public class TermScorer {
+
+    private final PostingsIterator iterator;
+    private final Similarity.DocScorer docScorer;
+    private final int termIndex;
+
+    public TermScorer(PostingsIterator iterator, Similarity.DocScorer docScorer, int termIndex) {
+        this.iterator = iterator;
+        this.docScorer = docScorer;
+        this.termIndex = termIndex;
+    }
+
+    public PostingsIterator iterator() {
+        return iterator;
+    }
+
+    public int termIndex() {
+        return termIndex;
+    }
+
+    /**
+     * Highest score any document can get from this term, never below zero.
+     */
+    public double maxScore() {
+        return docScorer.maxScore(iterator.maxTermFrequency());
+    }
+
+    /**
+     * Moves the block bounds to the target without decoding postings, returns the last doc id they cover.
+     */
+    public int advanceShallow(int target) {
+        return iterator.advanceShallow(target);
+    }
+
+    /**
+     * Highest score from this term up to the doc id returned by the last {@link #advanceShallow(int)}.
+     */
+    public double blockMaxScore() {
+        return docScorer.maxScore(iterator.blockMaxTermFrequency());
+    }
+
+    public double score(int documentLength) {
+        return docScorer.score(iterator.frequency(), documentLength);
+    }
+}
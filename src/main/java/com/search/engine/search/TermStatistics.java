@@ -0,0 +1,41 @@
+package com.search.engine.search;
+
+import com.search.engine.index.Postings;
+
+import java.util.List;
+
+/**
+ * Postings of a term in every segment of every shard, its index wide IDF and the scorer built from it, valid for one
+ * index generation.
+ */
+public class TermStatistics {
+
+    private final List<List<Postings>> shardPostings;
+    private final int documentFrequency;
+    private final double paramIDF;
+    private final Similarity.DocScorer docScorer;
+
+    public TermStatistics(List<List<Postings>> shardPostings, int documentFrequency, double paramIDF,
+                          Similarity.DocScorer docScorer) {
+        this.shardPostings = shardPostings;
+        this.documentFrequency = documentFrequency;
+        this.paramIDF = paramIDF;
+        this.docScorer = docScorer;
+    }
+
+    public List<Postings> getPostings(int shard) {
+        return shardPostings.get(shard);
+    }
+
+    public int getDocumentFrequency() {
+        return documentFrequency;
+    }
+
+    public double getParamIDF() {
+        return paramIDF;
+    }
+
+    public Similarity.DocScorer getDocScorer() {
+        return docScorer;
+    }
+}
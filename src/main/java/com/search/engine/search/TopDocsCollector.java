@@ -0,0 +1,82 @@
+package com.search.engine.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the {@code offset + limit} best documents in a min-heap. Documents come in doc id order and
+ * must beat the weakest kept one, so ties go to the lower doc id. Created with a {@link SearchCursor}, only
+ * documents ranked after it are kept, so a page costs the same however deep it is.
+ */
+public class TopDocsCollector implements ScoreCollector {
+
+    private static final Comparator<ScoredDocument> WORST_FIRST = Comparator
+            .comparingDouble(ScoredDocument::getScore)
+            .thenComparing(Comparator.comparingInt(ScoredDocument::getDocId).reversed());
+
+    private final int offset;
+    private final int size;
+    private final SearchCursor after;
+    private final PriorityQueue<ScoredDocument> queue;
+
+    public TopDocsCollector(int offset, int limit) {
+        this(offset, limit, null);
+    }
+
+    public TopDocsCollector(SearchCursor after, int limit) {
+        this(0, limit, after);
+    }
+
+    private TopDocsCollector(int offset, int limit, SearchCursor after) {
+        this.offset = offset;
+        this.size = offset + limit;
+        this.after = after;
+        this.queue = new PriorityQueue<>(Math.min(size, 1024), WORST_FIRST);
+    }
+
+    @Override
+    public void collect(int docId, double score) {
+        if (after != null && !after.isBefore(docId, score)) {
+            return;
+        }
+        if (queue.size() < size) {
+            queue.add(new ScoredDocument(docId, score));
+        } else if (score > queue.peek().getScore()) {
+            queue.poll();
+            queue.add(new ScoredDocument(docId, score));
+        }
+    }
+
+    @Override
+    public double minCompetitiveScore() {
+        return queue.size() < size ? Double.NEGATIVE_INFINITY : queue.peek().getScore();
+    }
+
+    /**
+     * Best documents first, without the first {@code offset} ones.
+     */
+    public List<ScoredDocument> getDocuments() {
+        List<ScoredDocument> documents = new ArrayList<>(queue);
+        documents.sort(Collections.reverseOrder(WORST_FIRST));
+        return documents.size() > offset ? documents.subList(offset, documents.size()) : Collections.emptyList();
+    }
+
+    /**
+     * Combines collectors of disjoint document sets, each created with offset 0 and at least
+     * {@code offset + limit} documents, into the requested page.
+     */
+    public static List<ScoredDocument> merge(List<TopDocsCollector> collectors, int offset, int limit) {
+        List<ScoredDocument> documents = new ArrayList<>();
+        for (TopDocsCollector collector : collectors) {
+            documents.addAll(collector.queue);
+        }
+        documents.sort(Collections.reverseOrder(WORST_FIRST));
+        if (documents.size() <= offset) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(documents.subList(offset, Math.min(documents.size(), offset + limit)));
+    }
+}
@@ -1,19 +1,35 @@
 package com.search.engine.service;
 
+import com.search.engine.analysis.TermFrequencies;
+import com.search.engine.config.IngestProperties;
+import com.search.engine.dto.DocumentResponse;
 import com.search.engine.exception.BadFileException;
+import com.search.engine.exception.DocumentNotFoundException;
+import com.search.engine.search.Operator;
+import com.search.engine.search.ScoredDocument;
+import com.search.engine.search.SearchCursor;
+import com.search.engine.search.SearchPage;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import static com.search.engine.exception.BadFileException.FILE_NULL_ERROR;
 import static com.search.engine.exception.BadFileException.READ_FILE_ERROR;
+import static com.search.engine.exception.DocumentNotFoundException.DOCUMENT_NOT_FOUND_ERROR;
+import static com.search.engine.service.SearchEngineService.FILENAME_NULL_MESSAGE;
 import static java.util.Objects.requireNonNull;
 
 @Service
@@ -21,20 +37,67 @@ public class DocumentService {
 
     public static final String KEYWORD_NULL_ERROR = "Keyword can't be null";
     public static final String EMPTY_KEYWORD_ERROR = "Keyword is empty";
-    public static final String NEW_LINE = "\n";
+    public static final String OFFSET_ERROR = "Offset can't be negative";
+    public static final String LIMIT_ERROR = "Limit must be between 1 and ";
+    public static final String CURSOR_OFFSET_ERROR = "Cursor and offset can't be used together";
+    public static final String FILES_NULL_ERROR = "Files can't be null";
+    public static final String INGEST_INTERRUPTED_ERROR = "Upload was interrupted";
+    public static final int MAX_LIMIT = 1000;
+    private static final int NAME_LOCK_STRIPES = 64;
 
     private final StorageService storageService;
     private final SearchEngineService searchEngineService;
+    private final ExecutorService tokenizerExecutor;
+    private final int inFlightLimit;
+    private final int mergeBatchSize;
+    private final Object[] nameLocks = new Object[NAME_LOCK_STRIPES];
 
-    public DocumentService(StorageService storageService, SearchEngineService searchEngineService) {
+    public DocumentService(StorageService storageService, SearchEngineService searchEngineService,
+                           @Qualifier("tokenizerExecutor") ExecutorService tokenizerExecutor,
+                           IngestProperties ingestProperties) {
         this.storageService = storageService;
         this.searchEngineService = searchEngineService;
+        this.tokenizerExecutor = tokenizerExecutor;
+        this.inFlightLimit = ingestProperties.getQueueCapacity();
+        this.mergeBatchSize = ingestProperties.getMergeBatchSize();
+        for (int i = 0; i < nameLocks.length; i++) {
+            nameLocks[i] = new Object();
+        }
+    }
+
+    public List<ScoredDocument> findDocumentsContaining(String keyword, Operator operator, int offset, int limit) {
+        valid(keyword);
+        validPage(offset, limit);
+
+        return searchEngineService.getDocumentsContaining(keyword, operator, offset, limit);
     }
 
-    public List<String> findDocumentsContaining(String keyword) {
+    /**
+     * Page by offset, or by the cursor returned with the previous page. Only pages reached by cursor, the first
+     * included, come with the cursor of the next one.
+     */
+    public SearchPage findDocumentsContaining(String keyword, Operator operator, int offset, String cursor, int limit) {
         valid(keyword);
+        validPage(offset, limit);
 
-        return searchEngineService.getDocumentsContaining(keyword);
+        if (offset > 0) {
+            if (cursor != null) {
+                throw new IllegalArgumentException(CURSOR_OFFSET_ERROR);
+            }
+            return new SearchPage(searchEngineService.getDocumentsContaining(keyword, operator, offset, limit), null);
+        }
+        return searchEngineService.getDocumentsAfter(keyword, operator,
+                cursor == null ? null : SearchCursor.decode(cursor), limit);
+    }
+
+    private void validPage(int offset, int limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException(OFFSET_ERROR);
+        }
+
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException(LIMIT_ERROR + MAX_LIMIT);
+        }
     }
 
     private void valid(String keyword) {
@@ -48,27 +111,196 @@ public class DocumentService {
     public void processFile(MultipartFile file) {
         requireNonNull(file, FILE_NULL_ERROR);
 
-        storageService.store(file);
-        String text = getFileContent(file);
-        searchEngineService.createInvertedIndexStructure(text, file.getOriginalFilename());
+        TermFrequencies termFrequencies = readAndStore(file);
+        searchEngineService.createInvertedIndexStructure(termFrequencies, file.getOriginalFilename());
+    }
+
+    /**
+     * At most {@code ingest.queue-capacity} files are in flight. Files of a batch that can't be merged are
+     * removed from storage again.
+     */
+    public List<DocumentResponse> processFiles(MultipartFile[] files) {
+        requireNonNull(files, FILES_NULL_ERROR);
+
+        List<DocumentResponse> responses = new ArrayList<>(files.length);
+        Deque<Future<TermFrequencies>> inFlight = new ArrayDeque<>();
+        List<TermFrequencies> batch = new ArrayList<>(mergeBatchSize);
+        List<DocumentResponse> batchResponses = new ArrayList<>(mergeBatchSize);
+
+        for (MultipartFile file : files) {
+            if (inFlight.size() == inFlightLimit) {
+                collect(files[responses.size()], inFlight.poll(), responses, batch, batchResponses);
+            }
+            inFlight.add(tokenizerExecutor.submit(() -> readAndStore(requireNonNull(file, FILE_NULL_ERROR))));
+        }
+        while (responses.size() < files.length) {
+            collect(files[responses.size()], inFlight.poll(), responses, batch, batchResponses);
+        }
+        merge(batch, batchResponses);
+
+        return responses;
+    }
+
+    private void collect(MultipartFile file, Future<TermFrequencies> analyzed, List<DocumentResponse> responses,
+                         List<TermFrequencies> batch, List<DocumentResponse> batchResponses) {
+        String name = file == null ? null : file.getOriginalFilename();
+        long size = file == null ? 0 : file.getSize();
+
+        try {
+            batch.add(analyzed.get());
+            DocumentResponse response = new DocumentResponse(name, size);
+            batchResponses.add(response);
+            responses.add(response);
+        } catch (ExecutionException e) {
+            responses.add(new DocumentResponse(name, size, e.getCause().getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(INGEST_INTERRUPTED_ERROR, e);
+        }
+
+        if (batch.size() >= mergeBatchSize) {
+            merge(batch, batchResponses);
+        }
+    }
+
+    private void merge(List<TermFrequencies> batch, List<DocumentResponse> batchResponses) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<String> batchNames = new ArrayList<>(batchResponses.size());
+        for (DocumentResponse response : batchResponses) {
+            batchNames.add(response.getName());
+        }
+        try {
+            searchEngineService.createInvertedIndexStructure(new ArrayList<>(batch), batchNames);
+        } catch (RuntimeException e) {
+            for (DocumentResponse response : batchResponses) {
+                storageService.delete(response.getName());
+                response.setError(e.getMessage());
+            }
+        }
+        batch.clear();
+        batchResponses.clear();
+    }
+
+    /**
+     * Indexes a file already copied to storage by {@link StorageService#store(MultipartFile)}.
+     */
+    public void processStoredFile(String filename) {
+        requireNonNull(filename, FILENAME_NULL_MESSAGE);
+
+        TermFrequencies termFrequencies;
+        try (InputStream inputStream = storageService.load(filename)) {
+            termFrequencies = searchEngineService.analyze(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            storageService.delete(filename);
+            throw new BadFileException(READ_FILE_ERROR);
+        }
+        searchEngineService.createInvertedIndexStructure(termFrequencies, filename);
+    }
+
+    public boolean isIndexed(String filename) {
+        return searchEngineService.containsDocument(filename);
+    }
+
+    public void deleteFile(String filename) {
+        requireNonNull(filename, FILENAME_NULL_MESSAGE);
+
+        synchronized (lockFor(filename)) {
+            boolean stored = storageService.exists(filename);
+            boolean indexed = searchEngineService.deleteDocument(filename);
+            if (!stored && !indexed) {
+                throw new DocumentNotFoundException(DOCUMENT_NOT_FOUND_ERROR + filename);
+            }
+            storageService.delete(filename);
+        }
+    }
+
+    /**
+     * Indexes the new version before swapping the stored file, so the old file is there to index again if the
+     * swap fails. Holds the name lock shared with {@link #deleteFile(String)}.
+     */
+    public void replaceFile(String filename, MultipartFile file) {
+        requireNonNull(filename, FILENAME_NULL_MESSAGE);
+        requireNonNull(file, FILE_NULL_ERROR);
+
+        if (!storageService.exists(filename)) {
+            throw new DocumentNotFoundException(DOCUMENT_NOT_FOUND_ERROR + filename);
+        }
+
+        StagedFile staged = storageService.stageWhileReading(file);
+        TermFrequencies termFrequencies;
+        try (InputStream inputStream = staged.getInputStream()) {
+            termFrequencies = searchEngineService.analyze(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            storageService.discard(staged);
+            throw new BadFileException(READ_FILE_ERROR);
+        } catch (RuntimeException e) {
+            storageService.discard(staged);
+            throw e;
+        }
+
+        synchronized (lockFor(filename)) {
+            if (!storageService.exists(filename)) {
+                storageService.discard(staged);
+                throw new DocumentNotFoundException(DOCUMENT_NOT_FOUND_ERROR + filename);
+            }
+            try {
+                searchEngineService.replaceDocument(termFrequencies, filename);
+            } catch (RuntimeException e) {
+                storageService.discard(staged);
+                throw e;
+            }
+            try {
+                storageService.replace(filename, staged);
+            } catch (RuntimeException e) {
+                reindexStored(filename, e);
+                throw e;
+            }
+        }
     }
 
-    private String getFileContent(MultipartFile file) {
-        String content = "";
+    private void reindexStored(String filename, RuntimeException failure) {
+        try (InputStream inputStream = storageService.load(filename)) {
+            searchEngineService.replaceDocument(
+                    searchEngineService.analyze(new InputStreamReader(inputStream, StandardCharsets.UTF_8)), filename);
+        } catch (IOException | RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private Object lockFor(String filename) {
+        return nameLocks[Math.floorMod(filename.hashCode(), nameLocks.length)];
+    }
 
-        try (InputStream inputStream = file.getInputStream()) {
-            content = new BufferedReader(new InputStreamReader(inputStream))
-                    .lines().collect(Collectors.joining(NEW_LINE));
+    /**
+     * A {@link BadFileException} thrown while closing comes from storage, which has already removed the file.
+     */
+    private TermFrequencies readAndStore(MultipartFile file) {
+        InputStream stored = storageService.storeWhileReading(file);
+        try (InputStream inputStream = stored) {
+            return searchEngineService.analyze(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
         } catch (IOException e) {
+            storageService.delete(file.getOriginalFilename());
             throw new BadFileException(READ_FILE_ERROR);
+        } catch (BadFileException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            storageService.delete(file.getOriginalFilename());
+            throw e;
         }
+    }
+
+    public List<ScoredDocument> getTFIDF(String keyword, Operator operator) {
+        valid(keyword);
 
-        return content;
+        return searchEngineService.calculateTFIDFValuesFor(keyword, operator);
     }
 
-    public Map<String, Double> getTFIDF(String keyword) {
+    public void getTFIDF(String keyword, Operator operator, Consumer<ScoredDocument> documents) {
         valid(keyword);
 
-        return searchEngineService.calculateTFIDFValuesFor(keyword);
+        searchEngineService.calculateTFIDFValuesFor(keyword, operator, documents);
     }
 }
@@ -0,0 +1,184 @@
+package com.search.engine.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Names and content hashes of the stored files, persisted as an append only log compacted on open. A name is
+ * taken once reserved, the file is complete only once registered.
+ */
+@Slf4j
+public class FileRegistry implements Closeable {
+
+    public static final String REGISTRY_FILE = ".registry";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final String UNKNOWN_HASH = "";
+
+    private final Path directory;
+    private final Path file;
+    private final Set<String> names = ConcurrentHashMap.newKeySet();
+    private final Set<String> registered = ConcurrentHashMap.newKeySet();
+    private final Map<String, String> hashesByName = new ConcurrentHashMap<>();
+    private final Map<String, String> namesByHash = new ConcurrentHashMap<>();
+    private DataOutputStream logStream;
+
+    public FileRegistry(Path directory) {
+        this.directory = directory;
+        this.file = directory.resolve(REGISTRY_FILE);
+    }
+
+    /**
+     * Without a log every file counts as registered, otherwise unlogged files are interrupted uploads and deleted.
+     */
+    public synchronized void open() throws IOException {
+        boolean logged = Files.exists(file);
+        Map<String, String> loggedHashes = readLog();
+
+        try (DirectoryStream<Path> storedFiles = Files.newDirectoryStream(directory)) {
+            for (Path storedFile : storedFiles) {
+                String name = storedFile.getFileName().toString();
+                if (isRegistryFile(name) || !Files.isRegularFile(storedFile)) {
+                    continue;
+                }
+                if (logged && !loggedHashes.containsKey(name)) {
+                    Files.deleteIfExists(storedFile);
+                    log.info("Deleted {} left over from an interrupted upload", storedFile);
+                    continue;
+                }
+                names.add(name);
+                registered.add(name);
+                String hash = loggedHashes.getOrDefault(name, UNKNOWN_HASH);
+                if (!hash.isEmpty()) {
+                    hashesByName.put(name, hash);
+                    namesByHash.putIfAbsent(hash, name);
+                }
+            }
+        }
+
+        compact();
+    }
+
+    public boolean isRegistryFile(String name) {
+        return name.equals(REGISTRY_FILE) || name.equals(REGISTRY_FILE + TEMP_SUFFIX);
+    }
+
+    /**
+     * Claims the name for a file about to be stored, returns false when it is already taken.
+     */
+    public boolean reserve(String name) {
+        return names.add(name);
+    }
+
+    /**
+     * Returns the name of another file with the same hash instead of recording, the caller removes the new file.
+     */
+    public String register(String name, String hash) throws IOException {
+        if (hash != null) {
+            String existing = namesByHash.putIfAbsent(hash, name);
+            if (existing != null && !existing.equals(name)) {
+                return existing;
+            }
+        }
+        String previousHash = hash == null ? hashesByName.remove(name) : hashesByName.put(name, hash);
+        if (previousHash != null && !previousHash.equals(hash)) {
+            namesByHash.remove(previousHash, name);
+        }
+        append(ADD, name, hash == null ? UNKNOWN_HASH : hash);
+        registered.add(name);
+        return null;
+    }
+
+    public void remove(String name) throws IOException {
+        String hash = hashesByName.remove(name);
+        if (hash != null) {
+            namesByHash.remove(hash, name);
+        }
+        registered.remove(name);
+        if (names.remove(name)) {
+            append(REMOVE, name, UNKNOWN_HASH);
+        }
+    }
+
+    public boolean contains(String name) {
+        return names.contains(name);
+    }
+
+    /**
+     * Whether the file is completely stored, unlike {@link #contains(String)} which is true from the reservation on.
+     */
+    public boolean isRegistered(String name) {
+        return registered.contains(name);
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    public Set<String> getRegisteredNames() {
+        return Collections.unmodifiableSet(registered);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (logStream != null) {
+            logStream.close();
+            logStream = null;
+        }
+    }
+
+    private synchronized void append(byte operation, String name, String hash) throws IOException {
+        logStream.writeByte(operation);
+        logStream.writeUTF(name);
+        logStream.writeUTF(hash);
+        logStream.flush();
+    }
+
+    private Map<String, String> readLog() throws IOException {
+        Map<String, String> hashes = new HashMap<>();
+        if (!Files.exists(file)) {
+            return hashes;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                byte operation = input.readByte();
+                String name = input.readUTF();
+                String hash = input.readUTF();
+                if (operation == ADD) {
+                    hashes.put(name, hash);
+                } else {
+                    hashes.remove(name);
+                }
+            }
+        } catch (EOFException e) {
+            // a torn record at the end is dropped, the directory listing restores the name
+        }
+        return hashes;
+    }
+
+    private void compact() throws IOException {
+        close();
+
+        Path temp = directory.resolve(REGISTRY_FILE + TEMP_SUFFIX);
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            for (String name : registered) {
+                output.writeByte(ADD);
+                output.writeUTF(name);
+                output.writeUTF(hashesByName.getOrDefault(name, UNKNOWN_HASH));
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        logStream = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.APPEND)));
+    }
+}
@@ -0,0 +1,135 @@
+package com.search.engine.service;
+
+import com.search.engine.config.IngestProperties;
+import com.search.engine.exception.BadFileException;
+import com.search.engine.exception.IngestRejectedException;
+import com.search.engine.ingest.IngestJob;
+import com.search.engine.ingest.IngestJob.IngestFile;
+import com.search.engine.ingest.IngestStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static com.search.engine.exception.IngestRejectedException.INGEST_QUEUE_FULL_ERROR;
+import static com.search.engine.service.DocumentService.FILES_NULL_ERROR;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Jobs live in memory only, the last {@code ingest.max-tracked-jobs} of them. Stored files missing from the index
+ * are queued again on startup.
+ */
+@Slf4j
+@Service
+public class IngestJobService {
+
+    private final StorageService storageService;
+    private final DocumentService documentService;
+    private final ThreadPoolExecutor ingestExecutor;
+    private final int maxTrackedJobs;
+    private final Map<String, IngestJob> jobs = new ConcurrentHashMap<>();
+    private final Queue<String> jobIds = new ConcurrentLinkedQueue<>();
+
+    public IngestJobService(StorageService storageService, DocumentService documentService,
+                            @Qualifier("ingestExecutor") ThreadPoolExecutor ingestExecutor,
+                            IngestProperties ingestProperties) {
+        this.storageService = storageService;
+        this.documentService = documentService;
+        this.ingestExecutor = ingestExecutor;
+        this.maxTrackedJobs = ingestProperties.getMaxTrackedJobs();
+    }
+
+    @PostConstruct
+    public void resumeUnindexedFiles() {
+        IngestJob job = new IngestJob(UUID.randomUUID().toString());
+        for (String filename : storageService.getStoredFilenames()) {
+            if (!documentService.isIndexed(filename)) {
+                job.addFile(filename, storageService.getStoredFile(filename).getSize());
+            }
+        }
+
+        if (!job.getFiles().isEmpty()) {
+            log.info("Queued {} stored files missing from the index as job {}", job.getFiles().size(), job.getId());
+            ingestExecutor.execute(() -> process(job));
+            track(job);
+        }
+    }
+
+    public IngestJob submit(MultipartFile[] files) {
+        requireNonNull(files, FILES_NULL_ERROR);
+
+        if (ingestExecutor.getQueue().remainingCapacity() == 0) {
+            throw new IngestRejectedException(INGEST_QUEUE_FULL_ERROR);
+        }
+
+        IngestJob job = new IngestJob(UUID.randomUUID().toString());
+        boolean stored = false;
+        for (MultipartFile file : files) {
+            IngestFile ingestFile = job.addFile(file.getOriginalFilename(), file.getSize());
+            try {
+                storageService.store(file);
+                stored = true;
+            } catch (BadFileException e) {
+                ingestFile.failed(e.getMessage());
+            }
+        }
+
+        if (stored) {
+            try {
+                ingestExecutor.execute(() -> process(job));
+            } catch (RejectedExecutionException e) {
+                job.getFiles().stream()
+                        .filter(file -> file.getStatus() == IngestStatus.QUEUED)
+                        .forEach(file -> storageService.delete(file.getName()));
+                throw new IngestRejectedException(INGEST_QUEUE_FULL_ERROR);
+            }
+        }
+        track(job);
+
+        return job;
+    }
+
+    public Optional<IngestJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    private void process(IngestJob job) {
+        for (IngestFile file : job.getFiles()) {
+            if (file.getStatus() != IngestStatus.QUEUED) {
+                continue;
+            }
+
+            file.indexing();
+            try {
+                documentService.processStoredFile(file.getName());
+                file.done();
+            } catch (RuntimeException e) {
+                storageService.delete(file.getName());
+                file.failed(e.getMessage());
+            }
+        }
+    }
+
+    private void track(IngestJob job) {
+        jobs.put(job.getId(), job);
+        jobIds.add(job.getId());
+
+        while (jobs.size() > maxTrackedJobs) {
+            String oldest = jobIds.poll();
+            if (oldest == null) {
+                break;
+            }
+            jobs.remove(oldest);
+        }
+    }
+}
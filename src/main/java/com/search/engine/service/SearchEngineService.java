@@ -1,10 +1,28 @@
 package com.search.engine.service;
 
-import com.search.engine.entity.DocumentInfo;
-import com.search.engine.entity.Posting;
+import com.search.engine.analysis.Analyzer;
+import com.search.engine.analysis.TermFrequencies;
+import com.search.engine.analysis.Tokenizer;
+import com.search.engine.config.SearchProperties;
+import com.search.engine.index.IndexSnapshot;
+import com.search.engine.index.Postings;
+import com.search.engine.index.PostingsIterator;
+import com.search.engine.index.ShardedIndex;
+import com.search.engine.index.ShardedSnapshot;
+import com.search.engine.index.TermsEnum;
+import com.search.engine.metrics.EngineMetrics;
+import com.search.engine.search.*;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static com.search.engine.service.DocumentService.KEYWORD_NULL_ERROR;
@@ -13,123 +31,609 @@ import static java.util.Objects.requireNonNull;
 @Service
 public class SearchEngineService {
 
-    public static final String EMPTY_STRING = "";
-    public static final String SPACE_SEPARATOR = " ";
-    public static final String SPECIAL_CHARS = "[-+.^:,?!]";
     public static final String TEXT_NULL_MESSAGE = "Text can'be null";
     public static final String FILENAME_NULL_MESSAGE = "Filename can't be null";
-
-    private final Map<String, Posting> wordsDictionary = new TreeMap<>();
-    private int numberOfProcessedDocument = 0;
+    public static final String CURSOR_EXPIRED_ERROR = "Cursor points to a snapshot that is no longer kept: ";
+
+    private static final String TERM_SEPARATOR = " ";
+    private static final int CHUNK_SIZE = 8192;
+
+    private final Analyzer analyzer;
+    private final ShardedIndex shardedIndex;
+    private final Executor searchExecutor;
+    private final EngineMetrics metrics;
+    private final int maxExpansions;
+    private final Similarity similarity;
+    private final GenerationalCache<String, List<ScoredDocument>> resultCache;
+    private final GenerationalCache<String, TermStatistics> termCache;
+    private final GenerationalCache<Long, ShardedSnapshot> cursorSnapshots;
+    private final int streamQueueCapacity;
+
+    public SearchEngineService(Analyzer analyzer, ShardedIndex shardedIndex, SearchProperties searchProperties,
+                               @Qualifier("searchExecutor") Executor searchExecutor, EngineMetrics metrics) {
+        this.analyzer = analyzer;
+        this.shardedIndex = shardedIndex;
+        this.searchExecutor = searchExecutor;
+        this.metrics = metrics;
+        this.maxExpansions = searchProperties.getMaxExpansions();
+        this.streamQueueCapacity = searchProperties.getStreamQueueCapacity();
+        this.similarity = searchProperties.getSimilarity() == Similarity.Model.BM25
+                ? new BM25Similarity(searchProperties.getBm25K1(), searchProperties.getBm25B())
+                : new TFIDFSimilarity();
+        this.resultCache = new GenerationalCache<>("results", searchProperties.getResultCacheSize());
+        this.termCache = new GenerationalCache<>("terms", searchProperties.getTermCacheSize());
+        this.cursorSnapshots = new GenerationalCache<>("cursors", searchProperties.getCursorSnapshots());
+        metrics.bindCache(resultCache);
+        metrics.bindCache(termCache);
+        metrics.bindCache(cursorSnapshots);
+    }
 
     public void createInvertedIndexStructure(String text, String documentName) {
         requireNonNull(text, TEXT_NULL_MESSAGE);
         requireNonNull(documentName, FILENAME_NULL_MESSAGE);
 
-        List<String> wordsInDocument = getListWithProcessedWords(text);
+        TermFrequencies termFrequencies = newTermFrequencies();
+        analyzer.analyze(text, termFrequencies);
+        createInvertedIndexStructure(termFrequencies, documentName);
+    }
 
-        for (String word : wordsInDocument) {
-            if (wordsDictionary.containsKey(word)) {
-                addNewInfoToExistWord(documentName, word, wordsInDocument);
-            } else {
-                addNewWordToDictionary(documentName, word, wordsInDocument);
-            }
-        }
+    public void createInvertedIndexStructure(TermFrequencies termFrequencies, String documentName) {
+        requireNonNull(termFrequencies, TEXT_NULL_MESSAGE);
+        requireNonNull(documentName, FILENAME_NULL_MESSAGE);
 
-        numberOfProcessedDocument++;
+        long start = System.nanoTime();
+        shardedIndex.addDocument(documentName, termFrequencies);
+        metrics.getMergeTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
     }
 
-    private List<String> getListWithProcessedWords(String text) {
-        String textWithoutSpecialChars = text.replaceAll(SPECIAL_CHARS, EMPTY_STRING);
-        String[] textAfterSplit = textWithoutSpecialChars.split(SPACE_SEPARATOR);
+    public void createInvertedIndexStructure(List<TermFrequencies> termFrequencies, List<String> documentNames) {
+        requireNonNull(termFrequencies, TEXT_NULL_MESSAGE);
+        requireNonNull(documentNames, FILENAME_NULL_MESSAGE);
 
-        return Arrays.stream(textAfterSplit)
-                .map(String::toLowerCase)
-                .map(String::trim)
-                .collect(Collectors.toList());
+        long start = System.nanoTime();
+        shardedIndex.addDocuments(documentNames, termFrequencies);
+        metrics.getMergeTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
     }
 
-    private void addNewInfoToExistWord(String documentName, String word, List<String> wordsInDocument) {
-        Posting posting = wordsDictionary.get(word);
+    public boolean deleteDocument(String documentName) {
+        requireNonNull(documentName, FILENAME_NULL_MESSAGE);
 
-        boolean isWordAppearedInThisDocumentBefore = posting.getDocuments().containsKey(documentName);
+        return shardedIndex.deleteDocument(documentName);
+    }
 
-        if (isWordAppearedInThisDocumentBefore) {
-            updateWordsFrequencyInDocument(documentName, posting);
-        } else {
-            addNewDocumentInfo(documentName, posting);
+    public boolean containsDocument(String documentName) {
+        requireNonNull(documentName, FILENAME_NULL_MESSAGE);
+
+        return shardedIndex.containsDocument(documentName);
+    }
+
+    public void replaceDocument(TermFrequencies termFrequencies, String documentName) {
+        requireNonNull(termFrequencies, TEXT_NULL_MESSAGE);
+        requireNonNull(documentName, FILENAME_NULL_MESSAGE);
+
+        long start = System.nanoTime();
+        shardedIndex.replaceDocument(documentName, termFrequencies);
+        metrics.getMergeTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Tokenizes the text chunk by chunk, memory use depends on the number of distinct terms, not on text size.
+     */
+    public TermFrequencies analyze(Reader reader) throws IOException {
+        long start = System.nanoTime();
+        TermFrequencies termFrequencies = newTermFrequencies();
+        Tokenizer tokenizer = analyzer.tokenizer(termFrequencies);
+        char[] chunk = new char[CHUNK_SIZE];
+
+        int read;
+        while ((read = reader.read(chunk)) != -1) {
+            tokenizer.process(chunk, 0, read);
         }
+        tokenizer.end();
+        metrics.getTokenizeTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
 
-        updateParamTF(documentName, wordsInDocument, posting);
+        return termFrequencies;
     }
 
-    private void addNewDocumentInfo(String documentName, Posting posting) {
-        DocumentInfo documentInfo = new DocumentInfo();
-        posting.getDocuments().put(documentName, documentInfo);
+    /**
+     * Positions are only collected when the index keeps them.
+     */
+    private TermFrequencies newTermFrequencies() {
+        return shardedIndex.isIndexPositions() ? TermFrequencies.withPositions() : new TermFrequencies();
     }
 
-    private void updateParamTF(String documentName, List<String> wordsInDocument, Posting posting) {
-        int wordFrequency = posting.getDocuments().get(documentName).getWordFrequencyInDocument();
-        int totalWords = wordsInDocument.size();
-        double paramTF = (double) wordFrequency / totalWords;
-        posting.getDocuments().get(documentName).setTermFrequency(paramTF);
+    public List<ScoredDocument> getDocumentsContaining(String keyword, Operator operator, int offset, int limit) {
+        requireNonNull(keyword, KEYWORD_NULL_ERROR);
+
+        List<QueryTerm> queryTerms = QueryTerm.parse(keyword, analyzer);
+        ShardedSnapshot snapshot = shardedIndex.getSnapshot();
+        long generation = snapshot.getGeneration();
+        String cacheKey = operator + ":" + offset + ":" + limit + ":" + queryTerms.stream()
+                .map(QueryTerm::toString)
+                .collect(Collectors.joining(TERM_SEPARATOR));
+
+        List<ScoredDocument> cachedDocuments = resultCache.get(cacheKey, generation);
+        if (cachedDocuments != null) {
+            return cachedDocuments;
+        }
+
+        long start = System.nanoTime();
+        List<TopDocsCollector> shardCollectors = calculateTFIDF(expand(queryTerms, snapshot), operator, snapshot,
+                () -> new TopDocsCollector(0, offset + limit));
+        List<ScoredDocument> documents = Collections.unmodifiableList(
+                withNames(TopDocsCollector.merge(shardCollectors, offset, limit), snapshot));
+        metrics.getRankingTimer(operator).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        resultCache.put(cacheKey, generation, documents);
+        return documents;
     }
 
-    private void updateWordsFrequencyInDocument(String documentName, Posting posting) {
-        int wordFrequencyInDocument = posting.getDocuments().get(documentName).getWordFrequencyInDocument();
-        posting.getDocuments().get(documentName).setWordFrequencyInDocument(wordFrequencyInDocument + 1);
+    /**
+     * Every page of a cursor chain is ranked on the snapshot of its first page, kept for the last
+     * {@code search.cursor-snapshots} chains.
+     */
+    public SearchPage getDocumentsAfter(String keyword, Operator operator, SearchCursor after, int limit) {
+        requireNonNull(keyword, KEYWORD_NULL_ERROR);
+
+        ShardedSnapshot snapshot = after == null ? shardedIndex.getSnapshot() : getCursorSnapshot(after);
+        long generation = snapshot.getGeneration();
+        List<QueryTerm> queryTerms = QueryTerm.parse(keyword, analyzer);
+        String cacheKey = operator + ":" + after + ":" + limit + ":" + queryTerms.stream()
+                .map(QueryTerm::toString)
+                .collect(Collectors.joining(TERM_SEPARATOR));
+
+        List<ScoredDocument> documents = resultCache.get(cacheKey, generation);
+        if (documents == null) {
+            long start = System.nanoTime();
+            List<TopDocsCollector> shardCollectors = calculateTFIDF(expand(queryTerms, snapshot), operator, snapshot,
+                    () -> new TopDocsCollector(after, limit));
+            documents = Collections.unmodifiableList(withNames(TopDocsCollector.merge(shardCollectors, 0, limit), snapshot));
+            metrics.getRankingTimer(operator).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            resultCache.put(cacheKey, generation, documents);
+        }
+
+        if (documents.size() < limit) {
+            return new SearchPage(documents, null);
+        }
+        cursorSnapshots.put(generation, generation, snapshot);
+        ScoredDocument last = documents.get(documents.size() - 1);
+        return new SearchPage(documents, new SearchCursor(generation, last.getScore(), last.getDocId()));
     }
 
-    private void addNewWordToDictionary(String documentName, String word, List<String> wordsInDocument) {
-        Posting posting = new Posting();
-        DocumentInfo documentInfo = new DocumentInfo();
-        posting.getDocuments().put(documentName, documentInfo);
-        updateParamTF(documentName, wordsInDocument, posting);
-        wordsDictionary.put(word, posting);
+    private ShardedSnapshot getCursorSnapshot(SearchCursor cursor) {
+        ShardedSnapshot snapshot = cursorSnapshots.get(cursor.getGeneration(), cursor.getGeneration());
+        if (snapshot != null) {
+            return snapshot;
+        }
+        snapshot = shardedIndex.getSnapshot();
+        if (snapshot.getGeneration() != cursor.getGeneration()) {
+            throw new IllegalArgumentException(CURSOR_EXPIRED_ERROR + cursor);
+        }
+        return snapshot;
     }
 
-    public List<String> getDocumentsContaining(String keyword) {
+    public List<ScoredDocument> calculateTFIDFValuesFor(String keyword, Operator operator) {
         requireNonNull(keyword, KEYWORD_NULL_ERROR);
 
-        String searchWord = keyword.toLowerCase().trim();
-        return wordsDictionary.containsKey(searchWord) ? getDocumentsFor(searchWord) : Collections.emptyList();
+        long start = System.nanoTime();
+        ShardedSnapshot snapshot = shardedIndex.getSnapshot();
+        List<AllDocsCollector> shardCollectors = calculateTFIDF(expand(QueryTerm.parse(keyword, analyzer), snapshot),
+                operator, snapshot, AllDocsCollector::new);
+        List<ScoredDocument> documents = new ArrayList<>();
+        for (AllDocsCollector collector : shardCollectors) {
+            documents.addAll(collector.getDocuments());
+        }
+        if (shardCollectors.size() > 1) {
+            documents.sort(Comparator.comparingInt(ScoredDocument::getDocId));
+        }
+        metrics.getRankingTimer(operator).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return withNames(documents, snapshot);
+    }
+
+    private static List<ScoredDocument> withNames(List<ScoredDocument> documents, ShardedSnapshot snapshot) {
+        List<ScoredDocument> named = new ArrayList<>(documents.size());
+        for (ScoredDocument document : documents) {
+            named.add(new ScoredDocument(document.getDocId(), snapshot.getDocumentName(document.getDocId()),
+                    document.getScore()));
+        }
+        return named;
     }
 
-    private List<String> getDocumentsFor(String searchWord) {
-        Map<String, Double> documentsForSearchWord = calculateTFIDF(searchWord);
-        return getSortedListByTFIDF(documentsForSearchWord);
+    /**
+     * The collector is only called on the calling thread, other shards block once
+     * {@code search.stream-queue-capacity} documents wait for it.
+     */
+    public void calculateTFIDFValuesFor(String keyword, Operator operator, ScoreCollector collector) {
+        requireNonNull(keyword, KEYWORD_NULL_ERROR);
+
+        calculateTFIDFValuesFor(keyword, operator, shardedIndex.getSnapshot(), collector);
     }
 
-    private List<String> getSortedListByTFIDF(Map<String, Double> documentsForSearchWord) {
-        Map<String, Double> sortedMapByTFIDF = new LinkedHashMap<>();
+    /**
+     * Same as {@link #calculateTFIDFValuesFor(String, Operator, ScoreCollector)}, every document comes with its name.
+     */
+    public void calculateTFIDFValuesFor(String keyword, Operator operator, Consumer<ScoredDocument> documents) {
+        requireNonNull(keyword, KEYWORD_NULL_ERROR);
 
-        documentsForSearchWord.entrySet().stream()
-                .sorted(Map.Entry.comparingByValue(Comparator.reverseOrder()))
-                .forEachOrdered(element -> sortedMapByTFIDF.put(element.getKey(), element.getValue()));
+        ShardedSnapshot snapshot = shardedIndex.getSnapshot();
+        calculateTFIDFValuesFor(keyword, operator, snapshot, new ScoreCollector() {
 
-        return new ArrayList<>(sortedMapByTFIDF.keySet());
+            @Override
+            public void collect(int docId, double score) {
+                documents.accept(new ScoredDocument(docId, snapshot.getDocumentName(docId), score));
+            }
+
+            @Override
+            public double minCompetitiveScore() {
+                return Double.NEGATIVE_INFINITY;
+            }
+        });
     }
 
-    public Map<String, Double> calculateTFIDFValuesFor(String keyword) {
+    private void calculateTFIDFValuesFor(String keyword, Operator operator, ShardedSnapshot snapshot,
+                                         ScoreCollector collector) {
+        long start = System.nanoTime();
+        try (ForwardingCollector forwardingCollector = new ForwardingCollector(collector, streamQueueCapacity)) {
+            List<CompletableFuture<ForwardingCollector>> shards = scoreShards(
+                    expand(QueryTerm.parse(keyword, analyzer), snapshot), operator, snapshot, () -> forwardingCollector);
+            forwardingCollector.drainUntil(CompletableFuture.allOf(shards.toArray(new CompletableFuture<?>[0])));
+        }
+        metrics.getRankingTimer(operator).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Indexed terms the keyword stands for, including the words of its phrases.
+     */
+    public Set<String> getHighlightTerms(String keyword) {
         requireNonNull(keyword, KEYWORD_NULL_ERROR);
 
-        String searchKeyword = keyword.toLowerCase();
-        return wordsDictionary.containsKey(searchKeyword) ? calculateTFIDF(searchKeyword) : Collections.emptyMap();
+        Set<String> terms = new LinkedHashSet<>();
+        for (List<QueryTerm> clause : expand(QueryTerm.parse(keyword, analyzer), shardedIndex.getSnapshot())) {
+            for (QueryTerm term : clause) {
+                if (term.getType() == QueryTerm.Type.PHRASE) {
+                    terms.addAll(term.getPhraseTerms());
+                } else {
+                    terms.add(term.getText());
+                }
+            }
+        }
+        return terms;
+    }
+
+    public List<GenerationalCache<?, ?>> getCaches() {
+        return Arrays.asList(resultCache, termCache, cursorSnapshots);
+    }
+
+    /**
+     * Turns every query term into the clause of indexed terms it stands for, a plain term or a phrase stands
+     * for itself.
+     */
+    private List<List<QueryTerm>> expand(List<QueryTerm> queryTerms, ShardedSnapshot snapshot) {
+        List<List<QueryTerm>> clauses = new ArrayList<>(queryTerms.size());
+
+        for (QueryTerm queryTerm : queryTerms) {
+            if (!queryTerm.isMultiTerm()) {
+                clauses.add(Collections.singletonList(queryTerm));
+                continue;
+            }
+            TermExpansion expansion = new TermExpansion(queryTerm, maxExpansions);
+            for (int shard = 0; shard < snapshot.getShardCount(); shard++) {
+                for (TermsEnum terms : snapshot.getShard(shard).getTermsEnums()) {
+                    expansion.collect(terms);
+                }
+            }
+            clauses.add(expansion.getTerms().stream().map(QueryTerm::term).collect(Collectors.toList()));
+        }
+        return clauses;
     }
 
-    private Map<String, Double> calculateTFIDF(String word) {
-        Map<String, Double> result = new HashMap<>();
+    /**
+     * Scores every shard of the snapshot and waits for all of them. Returns one collector per shard holding global
+     * doc ids.
+     */
+    private <C extends ScoreCollector> List<C> calculateTFIDF(List<List<QueryTerm>> clauses, Operator operator,
+                                                              ShardedSnapshot snapshot, Supplier<C> collectorFactory) {
+        List<CompletableFuture<C>> shards = scoreShards(clauses, operator, snapshot, collectorFactory);
+        List<C> collectors = new ArrayList<>(shards.size());
+        for (CompletableFuture<C> shard : shards) {
+            collectors.add(shard.join());
+        }
+        return collectors;
+    }
 
-        Map<String, DocumentInfo> documents = wordsDictionary.get(word).getDocuments();
-        int documentsNumberContainingWord = documents.size();
-        double paramIDF = Math.log((double) numberOfProcessedDocument / documentsNumberContainingWord);
+    /**
+     * Term statistics are index wide. The first shard is scored on the calling thread before this returns.
+     */
+    private <C extends ScoreCollector> List<CompletableFuture<C>> scoreShards(List<List<QueryTerm>> clauses,
+                                                                              Operator operator,
+                                                                              ShardedSnapshot snapshot,
+                                                                              Supplier<C> collectorFactory) {
+        List<TermStatistics> statistics = new ArrayList<>(clauses.size());
+        List<Integer> clauseOfTerms = new ArrayList<>(clauses.size());
+        int clauseCount = 0;
+
+        for (List<QueryTerm> clause : clauses) {
+            int matchedTerms = 0;
+            for (QueryTerm term : clause) {
+                TermStatistics termStatistics = getTermStatistics(term, snapshot);
+                if (termStatistics.getDocumentFrequency() > 0) {
+                    statistics.add(termStatistics);
+                    clauseOfTerms.add(clauseCount);
+                    matchedTerms++;
+                }
+            }
 
-        for (Map.Entry<String, DocumentInfo> map : documents.entrySet()) {
-            String documentName = map.getKey();
-            double paramTF = map.getValue().getTermFrequency();
-            result.put(documentName, paramTF * paramIDF);
+            if (matchedTerms > 0) {
+                clauseCount++;
+            } else if (operator == Operator.AND) {
+                return Collections.emptyList();
+            }
         }
 
-        return result;
+        if (statistics.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int[] clauseOfTerm = clauseOfTerms.stream().mapToInt(Integer::intValue).toArray();
+        int clausesToMatch = clauseCount;
+
+        int shardCount = snapshot.getShardCount();
+        List<CompletableFuture<C>> shards = new ArrayList<>(shardCount);
+        shards.add(null);
+        for (int shard = 1; shard < shardCount; shard++) {
+            int shardNumber = shard;
+            shards.add(CompletableFuture.supplyAsync(() -> scoreShard(snapshot, shardNumber, statistics,
+                    clauseOfTerm, clausesToMatch, operator, collectorFactory.get()), searchExecutor));
+        }
+        shards.set(0, CompletableFuture.completedFuture(scoreShard(snapshot, 0, statistics, clauseOfTerm,
+                clausesToMatch, operator, collectorFactory.get())));
+        return shards;
+    }
+
+    private <C extends ScoreCollector> C scoreShard(ShardedSnapshot snapshot, int shard, List<TermStatistics> statistics,
+                                                     int[] clauseOfTerm, int clauseCount, Operator operator,
+                                                     C collector) {
+        List<TermScorer> scorers = new ArrayList<>(statistics.size());
+        boolean[] presentClauses = new boolean[clauseCount];
+        int presentClauseCount = 0;
+
+        for (int termIndex = 0; termIndex < statistics.size(); termIndex++) {
+            TermStatistics termStatistics = statistics.get(termIndex);
+            List<Postings> postings = termStatistics.getPostings(shard);
+
+            if (!postings.isEmpty()) {
+                scorers.add(new TermScorer(new PostingsIterator(postings), termStatistics.getDocScorer(), termIndex));
+                if (!presentClauses[clauseOfTerm[termIndex]]) {
+                    presentClauses[clauseOfTerm[termIndex]] = true;
+                    presentClauseCount++;
+                }
+            }
+        }
+
+        if (scorers.isEmpty() || (operator == Operator.AND && presentClauseCount < clauseCount)) {
+            return collector;
+        }
+        if (operator == Operator.OR) {
+            scoreDisjunction(snapshot, shard, scorers, statistics.size(), collector);
+        } else if (clauseCount == statistics.size()) {
+            scoreConjunction(snapshot, shard, scorers, collector);
+        } else {
+            scoreClauses(snapshot, shard, scorers, clauseOfTerm, clauseCount, collector);
+        }
+        return collector;
+    }
+
+    private TermStatistics getTermStatistics(QueryTerm term, ShardedSnapshot snapshot) {
+        String cacheKey = term.toString();
+        long generation = snapshot.getGeneration();
+        TermStatistics termStatistics = termCache.get(cacheKey, generation);
+
+        if (termStatistics == null) {
+            long start = System.nanoTime();
+            List<List<Postings>> shardPostings = new ArrayList<>(snapshot.getShardCount());
+            int documentFrequency = 0;
+            for (int shard = 0; shard < snapshot.getShardCount(); shard++) {
+                IndexSnapshot index = snapshot.getShard(shard);
+                List<Postings> postings = term.getType() == QueryTerm.Type.PHRASE
+                        ? index.getPhrasePostings(term.getPhraseTerms(), term.getSlop())
+                        : index.getPostings(term.getText());
+                documentFrequency += index.getDocumentFrequency(postings);
+                shardPostings.add(postings);
+            }
+            double paramIDF = similarity.idf(documentFrequency, snapshot.getDocumentCount());
+            termStatistics = new TermStatistics(shardPostings, documentFrequency, paramIDF,
+                    similarity.scorer(paramIDF, snapshot::getAverageDocumentLength));
+            termCache.put(cacheKey, generation, termStatistics);
+            metrics.getLookupTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        return termStatistics;
+    }
+
+    /**
+     * Scorers come in query term order and scores are summed in that order, so a document gets the same
+     * score whichever shard it is in. Blocks whose bounds can't beat the collector threshold are skipped.
+     */
+    private void scoreConjunction(ShardedSnapshot snapshot, int shard, List<TermScorer> scorers,
+                                  ScoreCollector collector) {
+        IndexSnapshot index = snapshot.getShard(shard);
+        List<TermScorer> scorersByCost = new ArrayList<>(scorers);
+        scorersByCost.sort(Comparator.comparingInt(scorer -> scorer.iterator().cost()));
+        PostingsIterator lead = scorersByCost.get(0).iterator();
+        double maxScore = 0;
+        for (TermScorer scorer : scorers) {
+            maxScore += scorer.maxScore();
+        }
+
+        int docId = lead.nextDoc();
+        while (docId != PostingsIterator.NO_MORE_DOCS && maxScore > collector.minCompetitiveScore()) {
+            int upTo = nonCompetitiveUpTo(scorers, docId, collector.minCompetitiveScore());
+            if (upTo == PostingsIterator.NO_MORE_DOCS) {
+                return;
+            }
+            if (upTo >= 0) {
+                docId = lead.advance(upTo + 1);
+                continue;
+            }
+
+            int candidate = docId;
+            for (int i = 1; i < scorersByCost.size() && candidate == docId; i++) {
+                candidate = scorersByCost.get(i).iterator().advance(docId);
+            }
+
+            if (candidate == docId) {
+                if (index.isLive(docId)) {
+                    int documentLength = index.getDocumentLength(docId);
+                    double score = 0;
+                    for (TermScorer scorer : scorers) {
+                        score += scorer.score(documentLength);
+                    }
+                    collector.collect(snapshot.toGlobalDocId(shard, docId), score);
+                }
+                docId = lead.nextDoc();
+            } else {
+                docId = lead.advance(candidate);
+            }
+        }
+    }
+
+    /**
+     * MaxScore with block skipping. Scores are summed in query term order, so shards agree on equal documents.
+     */
+    private void scoreDisjunction(ShardedSnapshot snapshot, int shard, List<TermScorer> scorers, int termCount,
+                                  ScoreCollector collector) {
+        IndexSnapshot index = snapshot.getShard(shard);
+        scorers.sort(Comparator.comparingDouble(TermScorer::maxScore));
+        double[] maxScoreUpTo = new double[scorers.size()];
+        double maxScoreSum = 0;
+        for (int i = 0; i < scorers.size(); i++) {
+            maxScoreSum += scorers.get(i).maxScore();
+            maxScoreUpTo[i] = maxScoreSum;
+        }
+
+        PriorityQueue<TermScorer> essentialScorers = new PriorityQueue<>(scorers.size(),
+                Comparator.comparingInt(scorer -> scorer.iterator().docId()));
+        for (TermScorer scorer : scorers) {
+            scorer.iterator().nextDoc();
+            essentialScorers.add(scorer);
+        }
+        int firstEssential = 0;
+        double[] termScores = new double[termCount];
+
+        while (!essentialScorers.isEmpty()) {
+            int docId = essentialScorers.peek().iterator().docId();
+            if (docId == PostingsIterator.NO_MORE_DOCS) {
+                return;
+            }
+            int upTo = nonCompetitiveUpTo(scorers, docId, collector.minCompetitiveScore());
+            if (upTo == PostingsIterator.NO_MORE_DOCS) {
+                return;
+            }
+            if (upTo >= 0) {
+                while (essentialScorers.peek().iterator().docId() <= upTo) {
+                    TermScorer scorer = essentialScorers.poll();
+                    scorer.iterator().advance(upTo + 1);
+                    essentialScorers.add(scorer);
+                }
+                continue;
+            }
+            int documentLength = index.getDocumentLength(docId);
+            double score = 0;
+
+            while (essentialScorers.peek().iterator().docId() == docId) {
+                TermScorer scorer = essentialScorers.poll();
+                termScores[scorer.termIndex()] = scorer.score(documentLength);
+                score += termScores[scorer.termIndex()];
+                scorer.iterator().nextDoc();
+                essentialScorers.add(scorer);
+            }
+            if (!index.isLive(docId)) {
+                Arrays.fill(termScores, 0);
+                continue;
+            }
+
+            for (int i = firstEssential - 1; i >= 0 && score + maxScoreUpTo[i] > collector.minCompetitiveScore(); i--) {
+                TermScorer scorer = scorers.get(i);
+                if (scorer.iterator().advance(docId) == docId) {
+                    termScores[scorer.termIndex()] = scorer.score(documentLength);
+                    score += termScores[scorer.termIndex()];
+                }
+            }
+            collector.collect(snapshot.toGlobalDocId(shard, docId), sumAndClear(termScores));
+
+            while (firstEssential < scorers.size() - 1
+                    && maxScoreUpTo[firstEssential] <= collector.minCompetitiveScore()) {
+                essentialScorers.remove(scorers.get(firstEssential++));
+            }
+            if (firstEssential == scorers.size() - 1 && maxScoreUpTo[firstEssential] <= collector.minCompetitiveScore()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Last doc id of the run from {@code docId} on that stays within one block of every scorer when the block
+     * bounds together can't beat the threshold, -1 when a doc of the run may still be competitive.
+     */
+    private static int nonCompetitiveUpTo(List<TermScorer> scorers, int docId, double minCompetitiveScore) {
+        if (minCompetitiveScore == Double.NEGATIVE_INFINITY) {
+            return -1;
+        }
+
+        int upTo = PostingsIterator.NO_MORE_DOCS;
+        double blockMaxScore = 0;
+        for (TermScorer scorer : scorers) {
+            upTo = Math.min(upTo, scorer.advanceShallow(docId));
+            blockMaxScore += scorer.blockMaxScore();
+        }
+        return blockMaxScore <= minCompetitiveScore ? upTo : -1;
+    }
+
+    /**
+     * Conjunction of clauses where some clause holds several terms: every term is scored, a document is collected
+     * once it matches at least one term of each clause.
+     */
+    private void scoreClauses(ShardedSnapshot snapshot, int shard, List<TermScorer> scorers, int[] clauseOfTerm,
+                              int clauseCount, ScoreCollector collector) {
+        IndexSnapshot index = snapshot.getShard(shard);
+        PriorityQueue<TermScorer> queue = new PriorityQueue<>(scorers.size(),
+                Comparator.comparingInt(scorer -> scorer.iterator().docId()));
+        for (TermScorer scorer : scorers) {
+            scorer.iterator().nextDoc();
+            queue.add(scorer);
+        }
+        double[] termScores = new double[clauseOfTerm.length];
+        boolean[] matchedClauses = new boolean[clauseCount];
+
+        while (queue.peek().iterator().docId() != PostingsIterator.NO_MORE_DOCS) {
+            int docId = queue.peek().iterator().docId();
+            int documentLength = index.getDocumentLength(docId);
+            int matchedClauseCount = 0;
+
+            while (queue.peek().iterator().docId() == docId) {
+                TermScorer scorer = queue.poll();
+                termScores[scorer.termIndex()] = scorer.score(documentLength);
+                if (!matchedClauses[clauseOfTerm[scorer.termIndex()]]) {
+                    matchedClauses[clauseOfTerm[scorer.termIndex()]] = true;
+                    matchedClauseCount++;
+                }
+                scorer.iterator().nextDoc();
+                queue.add(scorer);
+            }
+
+            if (matchedClauseCount == clauseCount && index.isLive(docId)) {
+                collector.collect(snapshot.toGlobalDocId(shard, docId), sumAndClear(termScores));
+            } else {
+                Arrays.fill(termScores, 0);
+            }
+            Arrays.fill(matchedClauses, false);
+        }
+    }
+
+    private static double sumAndClear(double[] termScores) {
+        double sum = 0;
+        for (int i = 0; i < termScores.length; i++) {
+            sum += termScores[i];
+            termScores[i] = 0;
+        }
+        return sum;
     }
 }
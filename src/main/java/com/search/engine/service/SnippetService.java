@@ -0,0 +1,243 @@
+package com.search.engine.service;
+
+import com.search.engine.analysis.Analyzer;
+import com.search.engine.config.SearchProperties;
+import com.search.engine.index.ShardedIndex;
+import com.search.engine.metrics.EngineMetrics;
+import com.search.engine.search.GenerationalCache;
+import com.search.engine.search.ScoredDocument;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Highlighted snippet read from the byte range the indexed term offsets point at, HTML escaped apart from the
+ * {@code <em>} tags.
+ */
+@Service
+public class SnippetService {
+
+    static final String HIGHLIGHT_START = "<em>";
+    static final String HIGHLIGHT_END = "</em>";
+    private static final String TERM_SEPARATOR = " ";
+    private static final int CONTEXT_DIVISOR = 4;
+
+    /**
+     * A doc id always names the same content, so snippets never go stale.
+     */
+    private static final long SNIPPET_GENERATION = 0;
+
+    private final StorageService storageService;
+    private final SearchEngineService searchEngineService;
+    private final ShardedIndex shardedIndex;
+    private final Analyzer analyzer;
+    private final EngineMetrics metrics;
+    private final int snippetBytes;
+    private final GenerationalCache<String, String> snippetCache;
+
+    public SnippetService(StorageService storageService, SearchEngineService searchEngineService,
+                          ShardedIndex shardedIndex, Analyzer analyzer, SearchProperties searchProperties,
+                          EngineMetrics metrics) {
+        this.storageService = storageService;
+        this.searchEngineService = searchEngineService;
+        this.shardedIndex = shardedIndex;
+        this.analyzer = analyzer;
+        this.metrics = metrics;
+        this.snippetBytes = searchProperties.getSnippetBytes();
+        this.snippetCache = new GenerationalCache<>("snippets", searchProperties.getSnippetCacheSize());
+        metrics.bindCache(snippetCache);
+    }
+
+    /**
+     * One snippet per document, {@code null} for a document without stored offsets or file.
+     */
+    public List<String> getSnippets(String keyword, List<ScoredDocument> documents) {
+        List<String> terms = new ArrayList<>(searchEngineService.getHighlightTerms(keyword));
+        String termsKey = String.join(TERM_SEPARATOR, terms);
+        List<String> snippets = new ArrayList<>(documents.size());
+
+        for (ScoredDocument document : documents) {
+            String cacheKey = document.getDocId() + ":" + termsKey;
+            String snippet = snippetCache.get(cacheKey, SNIPPET_GENERATION);
+            if (snippet == null) {
+                long start = System.nanoTime();
+                snippet = createSnippet(document.getDocId(), terms);
+                metrics.getSnippetTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                if (snippet != null) {
+                    snippetCache.put(cacheKey, SNIPPET_GENERATION, snippet);
+                }
+            }
+            snippets.add(snippet);
+        }
+        return snippets;
+    }
+
+    public GenerationalCache<String, String> getCache() {
+        return snippetCache;
+    }
+
+    private String createSnippet(int docId, List<String> terms) {
+        long windowStart = findWindowStart(docId, terms);
+        if (windowStart < 0) {
+            return null;
+        }
+
+        try (FileChannel channel = storageService.openChannel(shardedIndex.getDocumentName(docId))) {
+            long start = Math.max(0, windowStart - snippetBytes / CONTEXT_DIVISOR);
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(snippetBytes, Math.max(0, channel.size() - start)));
+            int read = 0;
+            while (buffer.hasRemaining() && read >= 0) {
+                read = channel.read(buffer, start + buffer.position());
+            }
+            boolean cutAtStart = start > 0;
+            boolean cutAtEnd = start + buffer.position() < channel.size();
+            return highlight(decode(buffer.array(), buffer.position()), new HashSet<>(terms), cutAtStart, cutAtEnd);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Start offset of the window holding the most distinct query terms, then the most occurrences. Returns -1
+     * when no term has a known offset.
+     */
+    private long findWindowStart(int docId, List<String> terms) {
+        long[] occurrences = new long[0];
+        int count = 0;
+        for (int term = 0; term < terms.size(); term++) {
+            int[] offsets = shardedIndex.getOffsets(docId, terms.get(term));
+            if (offsets == null) {
+                continue;
+            }
+            occurrences = Arrays.copyOf(occurrences, count + offsets.length);
+            for (int offset : offsets) {
+                if (offset >= 0) {
+                    occurrences[count++] = (long) offset << Integer.SIZE | term;
+                }
+            }
+        }
+        if (count == 0) {
+            return -1;
+        }
+        Arrays.sort(occurrences, 0, count);
+
+        int[] termCounts = new int[terms.size()];
+        int distinctTerms = 0;
+        int bestDistinctTerms = 0;
+        int bestOccurrences = 0;
+        long bestStart = -1;
+        int windowBytes = snippetBytes - snippetBytes / CONTEXT_DIVISOR;
+
+        for (int first = 0, last = 0; first < count; first++) {
+            while (last < count && offset(occurrences[last]) - offset(occurrences[first]) < windowBytes) {
+                if (termCounts[term(occurrences[last++])]++ == 0) {
+                    distinctTerms++;
+                }
+            }
+            if (distinctTerms > bestDistinctTerms || (distinctTerms == bestDistinctTerms && last - first > bestOccurrences)) {
+                bestDistinctTerms = distinctTerms;
+                bestOccurrences = last - first;
+                bestStart = offset(occurrences[first]);
+            }
+            if (--termCounts[term(occurrences[first])] == 0) {
+                distinctTerms--;
+            }
+        }
+        return bestStart;
+    }
+
+    private static long offset(long occurrence) {
+        return occurrence >>> Integer.SIZE;
+    }
+
+    private static int term(long occurrence) {
+        return (int) occurrence;
+    }
+
+    /**
+     * Drops the bytes of characters cut by the window at both ends.
+     */
+    private static String decode(byte[] bytes, int length) {
+        int start = 0;
+        while (start < length && isContinuation(bytes[start])) {
+            start++;
+        }
+        int end = length;
+        int lead = end - 1;
+        while (lead > start && isContinuation(bytes[lead])) {
+            lead--;
+        }
+        if (lead >= start && lead + sequenceLength(bytes[lead]) > length) {
+            end = lead;
+        }
+        return new String(bytes, start, Math.max(0, end - start), UTF_8);
+    }
+
+    private static boolean isContinuation(byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    private static int sequenceLength(byte lead) {
+        if ((lead & 0x80) == 0) {
+            return 1;
+        }
+        if ((lead & 0xE0) == 0xC0) {
+            return 2;
+        }
+        return (lead & 0xF0) == 0xE0 ? 3 : 4;
+    }
+
+    /**
+     * Wraps the words whose analyzed form is a query term and collapses separators into single spaces. A word cut
+     * by either end of the window is dropped.
+     */
+    private String highlight(String text, Set<String> terms, boolean cutAtStart, boolean cutAtEnd) {
+        int start = 0;
+        int end = text.length();
+        if (cutAtStart) {
+            while (start < end && !analyzer.isSeparator(text.charAt(start))) {
+                start++;
+            }
+        }
+        if (cutAtEnd) {
+            while (end > start && !analyzer.isSeparator(text.charAt(end - 1))) {
+                end--;
+            }
+        }
+
+        StringBuilder snippet = new StringBuilder(end - start + 16);
+        StringBuilder term = new StringBuilder();
+        int wordStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i < end && !analyzer.isSeparator(text.charAt(i))) {
+                char c = text.charAt(i);
+                if (!analyzer.isIgnored(c)) {
+                    term.append(analyzer.normalize(c));
+                }
+                continue;
+            }
+            if (i > wordStart) {
+                String word = HtmlUtils.htmlEscape(text.substring(wordStart, i));
+                boolean highlighted = terms.contains(term.toString());
+                snippet.append(highlighted ? HIGHLIGHT_START : "").append(word).append(highlighted ? HIGHLIGHT_END : "");
+            }
+            if (i < end && snippet.length() > 0 && snippet.charAt(snippet.length() - 1) != ' ') {
+                snippet.append(' ');
+            }
+            term.setLength(0);
+            wordStart = i + 1;
+        }
+        return snippet.toString().trim();
+    }
+}
@@ -0,0 +1,48 @@
+package com.search.engine.service;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Upload copied to the staging directory of the storage while it is read. It only becomes visible under a name
+ * through {@link StorageService#replace(String, StagedFile)}, once the stream has been closed.
+ */
+public class StagedFile {
+
+    private final Path path;
+    private InputStream inputStream;
+    private String hash;
+    private boolean complete;
+
+    StagedFile(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Every byte read is also written to the staged file, closing the stream copies whatever was not read yet.
+     */
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    String getHash() {
+        return hash;
+    }
+
+    boolean isComplete() {
+        return complete;
+    }
+
+    void open(InputStream inputStream) {
+        this.inputStream = inputStream;
+    }
+
+    void complete(String hash) {
+        this.hash = hash;
+        this.complete = true;
+    }
+}
@@ -2,79 +2,421 @@ package com.search.engine.service;
 
 import com.search.engine.config.StorageProperties;
 import com.search.engine.exception.BadFileException;
+import com.search.engine.exception.DocumentNotFoundException;
+import com.search.engine.metrics.EngineMetrics;
 import org.springframework.stereotype.Service;
 import org.springframework.util.FileSystemUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.Arrays;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static com.search.engine.exception.BadFileException.*;
+import static com.search.engine.exception.DocumentNotFoundException.DOCUMENT_NOT_FOUND_ERROR;
 import static java.util.Objects.requireNonNull;
 
 @Service
 public class StorageService {
 
     public static final String DUPLICATE_FILENAME_ERROR = "There is a file with this name in storage: ";
+    public static final String DUPLICATE_CONTENT_ERROR = "There is a file with the same content in storage: ";
+    public static final String STAGING_DIRECTORY = ".staging";
+    private static final String CONTENT_HASH_ALGORITHM = "SHA-256";
+    private static final int DIGEST_BUFFER_SIZE = 64 * 1024;
     private final Path ROOT;
+    private final Path staging;
+    private final boolean deleteOnShutdown;
+    private final boolean deduplicateContent;
+    private final FileRegistry registry;
+    private final EngineMetrics metrics;
 
-    public StorageService(StorageProperties storageProperties) {
+    public StorageService(StorageProperties storageProperties, EngineMetrics metrics) {
         this.ROOT = Paths.get(storageProperties.getLocation());
+        this.staging = ROOT.resolve(STAGING_DIRECTORY);
+        this.deleteOnShutdown = storageProperties.isDeleteOnShutdown();
+        this.deduplicateContent = storageProperties.isDeduplicateContent();
+        this.registry = new FileRegistry(ROOT);
+        this.metrics = metrics;
     }
 
     @PostConstruct
-    public void createUploadDirectory() throws IOException {
+    public void open() throws IOException {
         Files.createDirectories(ROOT);
+        FileSystemUtils.deleteRecursively(staging);
+        Files.createDirectories(staging);
+        registry.open();
     }
 
     @PreDestroy
-    public void deleteUploadDirectory() {
-        FileSystemUtils.deleteRecursively(ROOT.toFile());
+    public void close() throws IOException {
+        registry.close();
+        if (deleteOnShutdown) {
+            FileSystemUtils.deleteRecursively(ROOT.toFile());
+        }
     }
 
-    public void store(MultipartFile file) {
+    /**
+     * Every byte read is also written to storage, the file is registered when the stream is closed.
+     */
+    public InputStream storeWhileReading(MultipartFile file) {
         requireNonNull(file, FILE_NULL_ERROR);
 
-        valid(file);
-        saveFile(file);
+        return storeWhileReading(file, requireNonNull(file.getOriginalFilename()));
+    }
+
+    /**
+     * Same as {@link #storeWhileReading(MultipartFile)}, the upload is stored under the given name.
+     */
+    public InputStream storeWhileReading(MultipartFile file, String filename) {
+        requireNonNull(file, FILE_NULL_ERROR);
+
+        valid(file, filename);
+        if (!registry.reserve(filename)) {
+            throw new BadFileException(DUPLICATE_FILENAME_ERROR + filename);
+        }
+
+        try {
+            InputStream inputStream = file.getInputStream();
+            try {
+                OutputStream storage = Files.newOutputStream(ROOT.resolve(filename), StandardOpenOption.CREATE_NEW);
+                return new StoringInputStream(inputStream, storage, newContentDigest(), hash -> register(filename, hash));
+            } catch (IOException e) {
+                inputStream.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            release(filename);
+            throw new BadFileException(SAVE_FILE_ERROR);
+        }
+    }
+
+    /**
+     * Like {@link #storeWhileReading(MultipartFile)}, but into a staging file that leaves stored files untouched.
+     */
+    public StagedFile stageWhileReading(MultipartFile file) {
+        requireNonNull(file, FILE_NULL_ERROR);
+
+        if (file.isEmpty()) {
+            throw new BadFileException(EMPTY_FILE_ERROR);
+        }
+        StagedFile staged = new StagedFile(staging.resolve(UUID.randomUUID().toString()));
+        try {
+            InputStream inputStream = file.getInputStream();
+            try {
+                OutputStream storage = Files.newOutputStream(staged.getPath(), StandardOpenOption.CREATE_NEW);
+                staged.open(new StoringInputStream(inputStream, storage, newContentDigest(), staged::complete));
+            } catch (IOException e) {
+                inputStream.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            discard(staged);
+            throw new BadFileException(SAVE_FILE_ERROR);
+        }
+        return staged;
+    }
+
+    /**
+     * Atomic rename over the stored file. A duplicate of another file's content is discarded instead.
+     */
+    public void replace(String filename, StagedFile staged) {
+        requireNonNull(filename, FILE_NULL_ERROR);
+        requireNonNull(staged, FILE_NULL_ERROR);
+
+        if (!staged.isComplete()) {
+            discard(staged);
+            throw new BadFileException(SAVE_FILE_ERROR);
+        }
+        try {
+            String existing = registry.register(filename, staged.getHash());
+            if (existing != null) {
+                discard(staged);
+                throw new BadFileException(DUPLICATE_CONTENT_ERROR + existing);
+            }
+            Files.move(staged.getPath(), ROOT.resolve(filename), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+            discard(staged);
+            throw new BadFileException(SAVE_FILE_ERROR);
+        }
     }
 
-    private void saveFile(MultipartFile file) {
-        try (InputStream inputStream = file.getInputStream()) {
-            Files.copy(inputStream, ROOT.resolve(requireNonNull(file.getOriginalFilename())),
-                    StandardCopyOption.REPLACE_EXISTING);
+    public void discard(StagedFile staged) {
+        try {
+            Files.deleteIfExists(staged.getPath());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Lets the container move its spooled upload into place, the content is only read to hash it.
+     */
+    public void store(MultipartFile file) {
+        requireNonNull(file, FILE_NULL_ERROR);
 
+        String filename = requireNonNull(file.getOriginalFilename());
+        valid(file, filename);
+        if (!registry.reserve(filename)) {
+            throw new BadFileException(DUPLICATE_FILENAME_ERROR + filename);
+        }
+
+        Path target = ROOT.resolve(filename).toAbsolutePath();
+        String hash;
+        try {
+            long start = System.nanoTime();
+            file.transferTo(target.toFile());
+            metrics.getStoreTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            hash = hash(target);
         } catch (IOException e) {
             e.printStackTrace();
+            delete(filename);
             throw new BadFileException(SAVE_FILE_ERROR);
         }
+        register(filename, hash);
+    }
+
+    public InputStream load(String filename) throws IOException {
+        return Files.newInputStream(ROOT.resolve(filename));
+    }
+
+    /**
+     * Opens the stored file for positional reads.
+     */
+    public FileChannel openChannel(String filename) throws IOException {
+        return FileChannel.open(ROOT.resolve(filename), StandardOpenOption.READ);
+    }
+
+    /**
+     * Only registered files, never uploads in progress or the registry files.
+     */
+    public StoredFile getStoredFile(String filename) {
+        requireNonNull(filename, FILE_NULL_ERROR);
+
+        if (filename.contains("..") || registry.isRegistryFile(filename) || !registry.isRegistered(filename)) {
+            throw new DocumentNotFoundException(DOCUMENT_NOT_FOUND_ERROR + filename);
+        }
+        Path path = ROOT.resolve(filename);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            String eTag = "\"" + Long.toHexString(attributes.size()) + "-" + Long.toHexString(lastModified) + "\"";
+            return new StoredFile(filename, path, attributes.size(), lastModified, eTag);
+        } catch (NoSuchFileException e) {
+            throw new DocumentNotFoundException(DOCUMENT_NOT_FOUND_ERROR + filename);
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new BadFileException(READ_FILE_ERROR);
+        }
     }
 
-    private void valid(MultipartFile inputFile) {
+    /**
+     * Copies in the kernel only for a file or socket channel target, other channels go through a buffer.
+     */
+    public void transferTo(String filename, long position, long count, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = openChannel(filename)) {
+            long end = position + count;
+            while (position < end) {
+                long transferred = channel.transferTo(position, end - position, target);
+                if (transferred <= 0) {
+                    throw new EOFException(READ_FILE_ERROR + ": " + filename);
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    public boolean exists(String filename) {
+        return registry.contains(filename);
+    }
+
+    /**
+     * Names of the completely stored files.
+     */
+    public Set<String> getStoredFilenames() {
+        return registry.getRegisteredNames();
+    }
+
+    public void delete(String filename) {
+        try {
+            Files.deleteIfExists(ROOT.resolve(filename));
+            registry.remove(filename);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void release(String filename) {
+        try {
+            registry.remove(filename);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void valid(MultipartFile inputFile, String filename) {
         if (inputFile.isEmpty()) {
             throw new BadFileException(EMPTY_FILE_ERROR);
         }
 
-        if (inputFile.getOriginalFilename().contains("..")) {
-            throw new BadFileException(FILENAME_ERROR + inputFile.getOriginalFilename());
+        if (filename.contains("..")) {
+            throw new BadFileException(FILENAME_ERROR + filename);
+        }
+
+        if (registry.isRegistryFile(filename) || filename.equals(STAGING_DIRECTORY)) {
+            throw new BadFileException(FILENAME_ERROR + filename);
+        }
+    }
+
+    private String hash(Path file) throws IOException {
+        MessageDigest digest = newContentDigest();
+        if (digest == null) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(DIGEST_BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    /**
+     * A duplicate of another file's content is removed again.
+     */
+    private void register(String filename, String hash) {
+        String existing;
+        try {
+            existing = registry.register(filename, hash);
+        } catch (IOException e) {
+            e.printStackTrace();
+            delete(filename);
+            throw new BadFileException(SAVE_FILE_ERROR);
+        }
+        if (existing != null) {
+            delete(filename);
+            throw new BadFileException(DUPLICATE_CONTENT_ERROR + existing);
+        }
+    }
+
+    private MessageDigest newContentDigest() {
+        if (!deduplicateContent) {
+            return null;
         }
+        try {
+            return MessageDigest.getInstance(CONTENT_HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-        File[] files = ROOT.toFile().listFiles();
-        if (files != null) {
-            boolean isExistFileWithTheSameName = Arrays.stream(files)
-                    .anyMatch(existingFile -> inputFile.getOriginalFilename().equals(existingFile.getName()));
+    /**
+     * Calls {@code onStored} with the content hash, {@code null} without deduplication, once fully copied. Store
+     * time counts only the writes.
+     */
+    private final class StoringInputStream extends FilterInputStream {
 
-            if (isExistFileWithTheSameName) {
-                throw new BadFileException(DUPLICATE_FILENAME_ERROR + inputFile.getOriginalFilename());
+        private static final int DRAIN_BUFFER_SIZE = 8192;
+
+        private final OutputStream storage;
+        private final MessageDigest digest;
+        private final Consumer<String> onStored;
+        private long storeNanos;
+
+        private StoringInputStream(InputStream upload, OutputStream storage, MessageDigest digest,
+                                   Consumer<String> onStored) {
+            super(upload);
+            this.storage = storage;
+            this.digest = digest;
+            this.onStored = onStored;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value != -1) {
+                long start = System.nanoTime();
+                storage.write(value);
+                storeNanos += System.nanoTime() - start;
+                if (digest != null) {
+                    digest.update((byte) value);
+                }
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                long start = System.nanoTime();
+                storage.write(buffer, offset, read);
+                storeNanos += System.nanoTime() - start;
+                if (digest != null) {
+                    digest.update(buffer, offset, read);
+                }
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long bytes) throws IOException {
+            byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+            long skipped = 0;
+            int read;
+            while (skipped < bytes && (read = read(buffer, 0, (int) Math.min(buffer.length, bytes - skipped))) > 0) {
+                skipped += read;
             }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+                while (read(buffer, 0, buffer.length) != -1) {
+                    // copies the rest of the upload to storage
+                }
+            } finally {
+                try {
+                    storage.close();
+                } finally {
+                    in.close();
+                }
+            }
+            metrics.getStoreTimer().record(storeNanos, TimeUnit.NANOSECONDS);
+
+            onStored.accept(digest == null ? null : Base64.getEncoder().encodeToString(digest.digest()));
         }
     }
 }
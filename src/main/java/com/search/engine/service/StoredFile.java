@@ -0,0 +1,25 @@
+package com.search.engine.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.file.Path;
+
+/**
+ * A file in storage as seen when it was looked up. The entity tag changes whenever the size or the modification
+ * time does.
+ */
+@Getter
+@AllArgsConstructor
+public class StoredFile {
+
+    private final String name;
+
+    private final Path path;
+
+    private final long size;
+
+    private final long lastModified;
+
+    private final String eTag;
+}
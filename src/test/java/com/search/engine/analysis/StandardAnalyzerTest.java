@@ -0,0 +1,87 @@
+package com.search.engine.analysis;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StandardAnalyzerTest {
+
+    private Analyzer analyzer;
+
+    @BeforeEach
+    void setUp() {
+        analyzer = new StandardAnalyzer();
+    }
+
+    @Test
+    void shouldLowercaseAndRemoveSpecialChars() {
+
+        // given
+        String text = "Hello, World! e-mail: A.B?";
+
+        // when
+        List<String> actualTerms = analyzer.analyze(text);
+
+        // then
+        assertEquals(Arrays.asList("hello", "world", "email", "ab"), actualTerms);
+    }
+
+    @Test
+    void shouldNotEmitEmptyTermsForRepeatedWhitespace() {
+
+        // given
+        String text = "  first\t\tsecond \n\r\nthird  , ";
+
+        // when
+        List<String> actualTerms = analyzer.analyze(text);
+
+        // then
+        assertEquals(Arrays.asList("first", "second", "third"), actualTerms);
+    }
+
+    @Test
+    void shouldEmitTermSplitBetweenChunksOnce() {
+
+        // given
+        List<String> actualTerms = new ArrayList<>();
+        Tokenizer tokenizer = analyzer.tokenizer(actualTerms::add);
+
+        // when
+        tokenizer.process("connec");
+        tokenizer.process("tion po");
+        tokenizer.process("ol");
+        tokenizer.end();
+
+        // then
+        assertEquals(Arrays.asList("connection", "pool"), actualTerms);
+        assertEquals(2, tokenizer.getTermCount());
+    }
+
+    @Test
+    void shouldReportUtf8ByteOffsetOfEveryTerm() {
+
+        // given
+        List<Integer> actualOffsets = new ArrayList<>();
+        TermConsumer consumer = new TermConsumer() {
+            @Override
+            public void accept(String term) {
+            }
+
+            @Override
+            public void accept(String term, int startOffset) {
+                actualOffsets.add(startOffset);
+            }
+        };
+
+        // when
+        analyzer.analyze("zażółć -gęślą \uD83D\uDE00 jaźń", consumer);
+
+        // then
+        assertEquals(Arrays.asList(0, 12, 21, 26), actualOffsets);
+    }
+}
@@ -0,0 +1,35 @@
+package com.search.engine.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TermFrequenciesTest {
+
+    @Test
+    void shouldCountEveryDistinctTermOnce() {
+
+        // given
+        TermFrequencies termFrequencies = new TermFrequencies();
+        Map<String, Integer> expectedCounts = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            String term = "term" + (i % 300);
+            termFrequencies.accept(term);
+            expectedCounts.merge(term, 1, Integer::sum);
+        }
+
+        // when
+        Map<String, Integer> actualCounts = new HashMap<>();
+        termFrequencies.forEach(actualCounts::put);
+
+        // then
+        assertEquals(expectedCounts, actualCounts);
+        assertEquals(300, termFrequencies.size());
+        assertEquals(1000, termFrequencies.getTotalTerms());
+        assertEquals(4, termFrequencies.get("term7"));
+        assertEquals(0, termFrequencies.get("missing"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.search.engine.index;
+
+import com.search.engine.analysis.TermFrequencies;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockPostingsTest {
+
+    @TempDir
+    Path indexDirectory;
+
+    @Test
+    void shouldDecodeBlocksExceptionsAndTailLikeTheBuffer() {
+
+        // given
+        MemorySegment buffer = new MemorySegment(1000);
+        Random random = new Random(7);
+        for (int document = 0; document < 1000; document++) {
+            TermFrequencies termFrequencies = new TermFrequencies();
+            termFrequencies.add("filler", 1);
+            if (document % 100 == 0) {
+                termFrequencies.add("rare", 1);
+            }
+            if (random.nextInt(4) > 0) {
+                termFrequencies.add("common", random.nextInt(50) == 0 ? 100_000 + random.nextInt(1000) : 1 + random.nextInt(3));
+            }
+            buffer.addDocument("Document" + document, termFrequencies);
+        }
+        Path file = indexDirectory.resolve("0000001000" + InvertedIndex.SEGMENT_SUFFIX);
+        SegmentWriter.write(buffer, new LiveDocs(), file);
+
+        // when
+        MappedSegment segment = MappedSegment.open(file);
+
+        // then
+        for (String term : new String[]{"filler", "rare", "common"}) {
+            Postings expected = buffer.getPostings(term);
+            Postings shared = segment.getPostings(term);
+            Postings reader = shared.reader();
+            assertEquals(expected.size(), reader.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.docId(i), reader.docId(i));
+                assertEquals(expected.frequency(i), reader.frequency(i));
+            }
+            assertEquals(expected.docId(expected.size() - 1), shared.docId(expected.size() - 1));
+        }
+        assertEquals(buffer.getPostingsCount(), segment.getPostingsCount());
+        assertTrue(segment.getPostingsBytes() < 2 * Integer.BYTES * segment.getPostingsCount() / 4);
+    }
+
+    @Test
+    void shouldAdvanceWithSkipTableAndKeepBlockUpperBounds() {
+
+        // given
+        MemorySegment buffer = new MemorySegment(0);
+        for (int document = 0; document < 300; document++) {
+            TermFrequencies termFrequencies = new TermFrequencies();
+            if (document % 2 == 0) {
+                termFrequencies.add("even", 1 + document / 100);
+            }
+            termFrequencies.add("padding", 4);
+            buffer.addDocument("Document" + document, termFrequencies);
+        }
+        Path file = indexDirectory.resolve("0000000000" + InvertedIndex.SEGMENT_SUFFIX);
+        SegmentWriter.write(buffer, new LiveDocs(), file);
+        BlockPostings postings = (BlockPostings) MappedSegment.open(file).getPostings("even");
+        Postings reader = postings.reader();
+
+        // when, then
+        assertEquals(150, reader.size());
+        assertEquals(0, reader.advance(0, 0));
+        assertEquals(64, reader.advance(1, 127));
+        assertEquals(128, reader.advance(64, 256));
+        assertEquals(149, reader.advance(128, 298));
+        assertEquals(150, reader.advance(149, 299));
+        assertEquals(298, reader.docId(149));
+        assertEquals(2, reader.frequency(50));
+        assertEquals(2, postings.blockCount());
+        assertEquals(254, postings.blockLastDocId(0));
+        assertEquals(298, postings.blockLastDocId(1));
+        assertEquals(3.0 / 7, postings.blockMaxTermFrequency(0), 1e-6);
+        assertEquals(postings.maxTermFrequency(), postings.blockMaxTermFrequency(1));
+    }
+}
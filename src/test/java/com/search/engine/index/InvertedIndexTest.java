@@ -0,0 +1,287 @@
+package com.search.engine.index;
+
+import com.search.engine.analysis.StandardAnalyzer;
+import com.search.engine.analysis.TermFrequencies;
+import com.search.engine.config.StorageProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvertedIndexTest {
+
+    @TempDir
+    Path indexDirectory;
+
+    @Test
+    void shouldFlushBufferIntoMappedSegmentWhenThresholdReached() throws Exception {
+
+        // given
+        InvertedIndex invertedIndex = openIndex();
+
+        // when
+        addDocument(invertedIndex, "Document0", "apple banana apple");
+        addDocument(invertedIndex, "Document1", "banana cherry");
+        addDocument(invertedIndex, "Document2", "apple");
+
+        // then
+        assertEquals(1, countSegmentFiles());
+        assertTrue(invertedIndex.getSegments().get(0) instanceof MappedSegment);
+        List<Postings> postings = invertedIndex.getPostings("apple");
+        assertEquals(2, postings.size());
+        assertEquals(0, postings.get(0).docId(0));
+        assertEquals(2, postings.get(0).frequency(0));
+        assertEquals(2, postings.get(1).docId(0));
+        assertEquals("Document1", invertedIndex.getDocumentName(1));
+        assertEquals(2, invertedIndex.getDocumentLength(1));
+    }
+
+    @Test
+    void shouldServeFlushedDocumentsAfterReopen() throws Exception {
+
+        // given
+        InvertedIndex invertedIndex = openIndex();
+        addDocument(invertedIndex, "Document0", "apple banana apple");
+        addDocument(invertedIndex, "Document1", "banana cherry");
+        addDocument(invertedIndex, "Document2", "zażółć gęślą jaźń");
+        invertedIndex.close();
+
+        // when
+        InvertedIndex reopenedIndex = openIndex();
+        int newDocId = addDocument(reopenedIndex, "Document3", "cherry");
+
+        // then
+        assertEquals(3, newDocId);
+        assertEquals(4, reopenedIndex.getDocumentCount());
+        assertEquals("Document2", reopenedIndex.getDocumentName(2));
+        assertEquals(1, reopenedIndex.getPostings("gęślą").get(0).size());
+        assertTrue(reopenedIndex.getPostings("durian").isEmpty());
+        List<Postings> cherryPostings = reopenedIndex.getPostings("cherry");
+        assertEquals(2, cherryPostings.size());
+        assertEquals(1, cherryPostings.get(0).docId(0));
+        assertEquals(3, cherryPostings.get(1).docId(0));
+    }
+
+    @Test
+    void shouldReplayWriteAheadLogAfterCrash() throws Exception {
+
+        // given
+        InvertedIndex crashedIndex = openIndex();
+        addDocument(crashedIndex, "Document0", "apple banana");
+        addDocument(crashedIndex, "Document1", "banana cherry");
+        addDocument(crashedIndex, "Document2", "cherry durian");
+        Path logFile = indexDirectory.resolve("0000000002" + WriteAheadLog.LOG_SUFFIX);
+        Files.write(logFile, new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        // when
+        InvertedIndex reopenedIndex = openIndex();
+
+        // then
+        assertEquals(3, reopenedIndex.getDocumentCount());
+        assertEquals("Document2", reopenedIndex.getDocumentName(2));
+        assertEquals(2, reopenedIndex.getPostings("cherry").stream().mapToInt(Postings::size).sum());
+        assertEquals(2, countSegmentFiles());
+        assertFalse(Files.exists(logFile));
+    }
+
+    @Test
+    void shouldKeepDeletesAfterReopenAndReclaimSpaceOnCompaction() throws Exception {
+
+        // given
+        InvertedIndex invertedIndex = openIndex();
+        addDocument(invertedIndex, "Document0", "apple banana apple");
+        addDocument(invertedIndex, "Document1", "banana cherry");
+        addDocument(invertedIndex, "Document2", "apple cherry");
+        long segmentSize = Files.size(indexDirectory.resolve("0000000000" + InvertedIndex.SEGMENT_SUFFIX));
+
+        // when
+        boolean deleted = invertedIndex.deleteDocument("Document0");
+        invertedIndex.deleteDocument("Document2");
+        invertedIndex.close();
+        InvertedIndex reopenedIndex = openIndex();
+        long reclaimed = reopenedIndex.compact();
+
+        // then
+        assertTrue(deleted);
+        assertFalse(reopenedIndex.deleteDocument("Document0"));
+        assertFalse(reopenedIndex.isLive(0));
+        assertTrue(reopenedIndex.isLive(1));
+        assertEquals(1, reopenedIndex.getDocumentCount());
+        assertEquals(segmentSize - Files.size(indexDirectory.resolve("0000000000_1" + InvertedIndex.SEGMENT_SUFFIX)), reclaimed);
+        assertTrue(reclaimed > 0);
+        assertTrue(reopenedIndex.getPostings("apple").isEmpty());
+        assertEquals("Document1", reopenedIndex.getDocumentName(1));
+        assertEquals(0, reopenedIndex.compact());
+    }
+
+    @Test
+    void shouldDeleteCompactedAwaySegmentOnlyOnceNoSnapshotReadsIt() throws Exception {
+
+        // given
+        InvertedIndex invertedIndex = openIndex();
+        addDocument(invertedIndex, "Document0", "apple banana");
+        addDocument(invertedIndex, "Document1", "banana cherry");
+        invertedIndex.deleteDocument("Document0");
+        invertedIndex.refresh();
+        IndexSnapshot snapshot = invertedIndex.getSnapshot();
+        Path segmentFile = indexDirectory.resolve("0000000000" + InvertedIndex.SEGMENT_SUFFIX);
+
+        // when
+        invertedIndex.compact();
+        invertedIndex.refresh();
+        boolean keptWhileRead = !snapshot.getPostings("banana").isEmpty() && Files.exists(segmentFile)
+                && invertedIndex.deleteRetiredSegments() == 1;
+        snapshot = null;
+        for (int attempt = 0; attempt < 100 && invertedIndex.deleteRetiredSegments() > 0; attempt++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        // then
+        assertTrue(keptWhileRead);
+        assertFalse(Files.exists(segmentFile));
+        assertEquals(1, countSegmentFiles());
+        assertEquals(1, invertedIndex.getPostings("banana").stream().mapToInt(Postings::size).sum());
+    }
+
+    @Test
+    void shouldReplayDeleteAndReplaceAfterCrash() throws Exception {
+
+        // given
+        InvertedIndex crashedIndex = openIndex();
+        addDocument(crashedIndex, "Document0", "apple banana");
+        addDocument(crashedIndex, "Document1", "banana cherry");
+        crashedIndex.deleteDocument("Document1");
+        TermFrequencies termFrequencies = new TermFrequencies();
+        new StandardAnalyzer().analyze("elderberry", termFrequencies);
+        int replacedDocId = crashedIndex.replaceDocument("Document0", termFrequencies);
+
+        // when
+        InvertedIndex reopenedIndex = openIndex();
+
+        // then
+        assertEquals(2, replacedDocId);
+        assertEquals(1, reopenedIndex.getDocumentCount());
+        assertFalse(reopenedIndex.isLive(0));
+        assertFalse(reopenedIndex.isLive(1));
+        assertEquals("Document0", reopenedIndex.getDocumentName(2));
+        assertEquals(2, reopenedIndex.getPostings("elderberry").get(0).docId(0));
+        assertTrue(reopenedIndex.deleteDocument("Document0"));
+        assertFalse(reopenedIndex.isLive(2));
+    }
+
+    @Test
+    void shouldKeepPositionsThroughReplayFlushAndCompaction() throws Exception {
+
+        // given
+        InvertedIndex crashedIndex = openIndex(true);
+        addDocument(crashedIndex, "Document0", "apple banana apple");
+        addDocument(crashedIndex, "Document1", "banana cherry");
+        addDocument(crashedIndex, "Document2", "cherry apple banana");
+        crashedIndex.deleteDocument("Document1");
+
+        // when
+        InvertedIndex reopenedIndex = openIndex(true);
+        reopenedIndex.compact();
+        List<Postings> phrasePostings = reopenedIndex.getPhrasePostings(Arrays.asList("apple", "banana"), 0);
+        List<Postings> reversedPhrasePostings = reopenedIndex.getPhrasePostings(Arrays.asList("banana", "apple"), 0);
+        List<Postings> proximityPostings = reopenedIndex.getPhrasePostings(Arrays.asList("banana", "apple"), 1);
+
+        // then
+        assertTrue(reopenedIndex.getSegments().get(0) instanceof MappedSegment);
+        assertArrayEquals(new int[]{0, 2}, reopenedIndex.getPostings("apple").get(0).positions(0));
+        assertArrayEquals(new int[]{0, 13}, reopenedIndex.getPostings("apple").get(0).offsets(0));
+        assertArrayEquals(new int[]{7}, reopenedIndex.getOffsets(2, "apple"));
+        assertArrayEquals(new int[]{1}, reopenedIndex.getPostings("banana").get(0).positions(0));
+        assertArrayEquals(new int[]{2}, reopenedIndex.getPostings("banana").get(1).positions(0));
+        assertEquals(2, phrasePostings.get(0).size());
+        assertEquals(0, phrasePostings.get(0).docId(0));
+        assertEquals(2, phrasePostings.get(0).docId(1));
+        assertEquals(1, reversedPhrasePostings.get(0).size());
+        assertEquals(0, reversedPhrasePostings.get(0).docId(0));
+        assertEquals(2, proximityPostings.get(0).size());
+        assertEquals(2, proximityPostings.get(0).frequency(0));
+    }
+
+    @Test
+    void shouldRejectPhraseQueryWithoutPositions() throws Exception {
+
+        // given
+        InvertedIndex invertedIndex = openIndex();
+        addDocument(invertedIndex, "Document0", "apple banana apple");
+
+        // when, then
+        assertNull(invertedIndex.getPostings("apple").get(0).positions(0));
+        assertThrows(IllegalArgumentException.class,
+                () -> invertedIndex.getPhrasePostings(Arrays.asList("apple", "banana"), 0));
+    }
+
+    @Test
+    void shouldKeepSnapshotUnchangedUntilRefresh() throws Exception {
+
+        // given
+        InvertedIndex invertedIndex = openIndex();
+        addDocument(invertedIndex, "Document0", "cherry apple banana");
+        invertedIndex.refresh();
+        IndexSnapshot snapshot = invertedIndex.getSnapshot();
+
+        // when
+        addDocument(invertedIndex, "Document1", "apple durian");
+        invertedIndex.deleteDocument("Document0");
+        boolean refreshed = invertedIndex.refresh();
+        boolean refreshedAgain = invertedIndex.refresh();
+        IndexSnapshot refreshedSnapshot = invertedIndex.getSnapshot();
+
+        // then
+        assertEquals(1, snapshot.getDocumentCount());
+        assertTrue(snapshot.isLive(0));
+        assertEquals(1, snapshot.getPostings("apple").size());
+        assertTrue(snapshot.getPostings("durian").isEmpty());
+        TermsEnum terms = snapshot.getTermsEnums().get(0);
+        assertTrue(terms.seekCeil("b"));
+        assertEquals("banana", terms.term());
+        assertTrue(terms.next());
+        assertEquals("cherry", terms.term());
+        assertFalse(terms.next());
+
+        assertTrue(refreshed);
+        assertFalse(refreshedAgain);
+        assertEquals(1, refreshedSnapshot.getDocumentCount());
+        assertFalse(refreshedSnapshot.isLive(0));
+        assertEquals(1, refreshedSnapshot.getDocumentFrequency(refreshedSnapshot.getPostings("apple")));
+        assertEquals("Document1", refreshedSnapshot.getDocumentName(1));
+    }
+
+    private InvertedIndex openIndex() throws Exception {
+        return openIndex(false);
+    }
+
+    private InvertedIndex openIndex(boolean indexPositions) throws Exception {
+        StorageProperties storageProperties = new StorageProperties();
+        storageProperties.setIndexLocation(indexDirectory.toString());
+        storageProperties.setFlushThreshold(2);
+        storageProperties.setIndexPositions(indexPositions);
+        InvertedIndex invertedIndex = new InvertedIndex(storageProperties);
+        invertedIndex.open();
+        return invertedIndex;
+    }
+
+    private int addDocument(InvertedIndex invertedIndex, String documentName, String text) {
+        TermFrequencies termFrequencies = invertedIndex.isIndexPositions() ? TermFrequencies.withPositions() : new TermFrequencies();
+        new StandardAnalyzer().analyze(text, termFrequencies);
+        return invertedIndex.addDocument(documentName, termFrequencies);
+    }
+
+    private long countSegmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(indexDirectory)) {
+            return files.filter(file -> file.toString().endsWith(InvertedIndex.SEGMENT_SUFFIX)).count();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.search.engine.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PostingListTest {
+
+    @Test
+    void shouldKeepDocIdsSortedAndPublishedViewsUnchanged() {
+
+        // given
+        PostingList postingList = new PostingList();
+        postingList.add(1, 10, 100);
+        postingList.add(5, 50, 100);
+        Postings publishedView = postingList.getPostings();
+
+        // when
+        postingList.add(3, 30, 100);
+        postingList.add(7, 70, 100);
+
+        // then
+        Postings actualView = postingList.getPostings();
+        assertEquals(4, actualView.size());
+        int[] expectedDocIds = {1, 3, 5, 7};
+        for (int i = 0; i < expectedDocIds.length; i++) {
+            assertEquals(expectedDocIds[i], actualView.docId(i));
+            assertEquals(expectedDocIds[i] * 10, actualView.frequency(i));
+        }
+        assertEquals(2, publishedView.size());
+        assertEquals(5, publishedView.docId(1));
+        assertEquals(50, publishedView.frequency(1));
+        assertEquals(0.7, actualView.maxTermFrequency(), 1e-9);
+        assertEquals(0.5, publishedView.maxTermFrequency(), 1e-9);
+    }
+
+    @Test
+    void shouldCatchIllegalStateExceptionWhenDocumentAddedTwice() {
+
+        // given
+        PostingList postingList = new PostingList();
+        postingList.add(2, 1, 100);
+        postingList.add(4, 1, 100);
+
+        // when, then
+        assertThrows(IllegalStateException.class, () -> postingList.add(2, 1, 100));
+    }
+}
@@ -0,0 +1,75 @@
+package com.search.engine.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static com.search.engine.index.PostingsIterator.NO_MORE_DOCS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PostingsIteratorTest {
+
+    @Test
+    void shouldIterateOverAllSegmentsInDocIdOrder() {
+
+        // given
+        PostingsIterator iterator = new PostingsIterator(Arrays.asList(postings(1, 3), postings(), postings(10, 12)));
+
+        // when, then
+        assertEquals(4, iterator.cost());
+        assertEquals(1, iterator.nextDoc());
+        assertEquals(3, iterator.nextDoc());
+        assertEquals(10, iterator.nextDoc());
+        assertEquals(12, iterator.nextDoc());
+        assertEquals(NO_MORE_DOCS, iterator.nextDoc());
+    }
+
+    @Test
+    void shouldAdvanceToFirstDocNotLessThanTarget() {
+
+        // given
+        int[] docIds = new int[100];
+        for (int i = 0; i < docIds.length; i++) {
+            docIds[i] = i * 3;
+        }
+        PostingsIterator iterator = new PostingsIterator(Arrays.asList(postings(docIds), postings(400, 500)));
+
+        // when, then
+        assertEquals(0, iterator.advance(0));
+        assertEquals(0, iterator.advance(0));
+        assertEquals(3, iterator.advance(1));
+        assertEquals(150, iterator.advance(150));
+        assertEquals(153, iterator.advance(151));
+        assertEquals(156, iterator.nextDoc());
+        assertEquals(297, iterator.advance(297));
+        assertEquals(400, iterator.advance(298));
+        assertEquals(500, iterator.advance(401));
+        assertEquals(NO_MORE_DOCS, iterator.advance(501));
+    }
+
+    @Test
+    void shouldMoveBlockBoundsWithoutLeavingCurrentDoc() {
+
+        // given
+        Postings low = new ArrayPostings(new int[]{1, 3}, new int[]{1, 1}, 2, 0.25);
+        Postings high = new ArrayPostings(new int[]{10, 12}, new int[]{4, 4}, 2, 0.75);
+        PostingsIterator iterator = new PostingsIterator(Arrays.asList(low, postings(), high));
+
+        // when, then
+        assertEquals(3, iterator.advanceShallow(0));
+        assertEquals(0.25, iterator.blockMaxTermFrequency());
+        assertEquals(-1, iterator.docId());
+        assertEquals(12, iterator.advanceShallow(4));
+        assertEquals(0.75, iterator.blockMaxTermFrequency());
+        assertEquals(1, iterator.nextDoc());
+        assertEquals(12, iterator.advance(11));
+        assertEquals(NO_MORE_DOCS, iterator.advanceShallow(13));
+        assertEquals(0, iterator.blockMaxTermFrequency());
+    }
+
+    private static Postings postings(int... docIds) {
+        int[] frequencies = new int[docIds.length];
+        Arrays.fill(frequencies, 1);
+        return new ArrayPostings(docIds, frequencies, docIds.length, 1);
+    }
+}
@@ -0,0 +1,48 @@
+package com.search.engine.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BM25SimilarityTest {
+
+    @Test
+    void shouldQuantizeLengthsToOrderedByteNorms() {
+
+        // given
+        int previousNorm = 0;
+
+        for (int length = 1; length < 1_000_000; length += 1 + length / 50) {
+            // when
+            int norm = BM25Similarity.encodeLength(length);
+            int decoded = BM25Similarity.decodeLength(norm);
+
+            // then
+            assertTrue(norm >= previousNorm && norm <= 255);
+            assertTrue(decoded <= length && decoded > length * 8.0 / 9);
+            assertEquals(norm, BM25Similarity.encodeLength(decoded));
+            previousNorm = norm;
+        }
+        assertEquals(23, BM25Similarity.decodeLength(BM25Similarity.encodeLength(23)));
+        assertEquals(255, BM25Similarity.encodeLength(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void shouldNeverScoreAboveUpperBound() {
+
+        // given
+        BM25Similarity similarity = new BM25Similarity(1.2, 0.75);
+        Similarity.DocScorer scorer = similarity.scorer(similarity.idf(3, 100), () -> 40);
+
+        for (int length = 1; length < 5000; length += 7) {
+            for (int frequency = 1; frequency <= length; frequency += 1 + frequency / 3) {
+                // when
+                double score = scorer.score(frequency, length);
+
+                // then
+                assertTrue(score > 0);
+                assertTrue(score <= scorer.maxScore((double) frequency / length));
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.search.engine.search;
+
+import com.search.engine.analysis.StandardAnalyzer;
+import com.search.engine.analysis.TermFrequencies;
+import com.search.engine.config.StorageProperties;
+import com.search.engine.index.InvertedIndex;
+import com.search.engine.index.TermsEnum;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TermExpansionTest {
+
+    @TempDir
+    Path indexDirectory;
+
+    private InvertedIndex invertedIndex;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        StorageProperties storageProperties = new StorageProperties();
+        storageProperties.setIndexLocation(indexDirectory.toString());
+        storageProperties.setFlushThreshold(100);
+        invertedIndex = new InvertedIndex(storageProperties);
+        invertedIndex.open();
+
+        StringBuilder vocabulary = new StringBuilder();
+        for (char c = 'a'; c <= 'z'; c++) {
+            vocabulary.append("filler").append(c).append(' ');
+        }
+        addDocument("Document0", vocabulary + "optimize optimise optimal option");
+        addDocument("Document1", "optimization zażółć");
+        invertedIndex.flush();
+        addDocument("Document2", "optimum optimistic zażółcić");
+    }
+
+    @Test
+    void shouldParseQueryTermTypes() {
+
+        // when
+        List<QueryTerm> queryTerms = QueryTerm.parse("Optim* opt?m*ze optimise~1 optimise~ Apple, apple", new StandardAnalyzer());
+
+        // then
+        assertEquals(5, queryTerms.size());
+        assertEquals(QueryTerm.Type.PREFIX, queryTerms.get(0).getType());
+        assertEquals("optim", queryTerms.get(0).getText());
+        assertEquals(QueryTerm.Type.WILDCARD, queryTerms.get(1).getType());
+        assertEquals(QueryTerm.Type.FUZZY, queryTerms.get(2).getType());
+        assertEquals(1, queryTerms.get(2).getMaxEdits());
+        assertEquals(QueryTerm.MAX_EDITS, queryTerms.get(3).getMaxEdits());
+        assertEquals(QueryTerm.Type.TERM, queryTerms.get(4).getType());
+        assertEquals("apple", queryTerms.get(4).getText());
+    }
+
+    @Test
+    void shouldExpandPrefixOverBufferAndMappedSegments() {
+
+        // when
+        List<String> terms = expand("optim*", 64);
+        List<String> cappedTerms = expand("optim*", 3);
+
+        // then
+        assertEquals(Arrays.asList("optimal", "optimise", "optimistic", "optimization", "optimize", "optimum"), terms);
+        assertEquals(Arrays.asList("optimal", "optimise", "optimistic"), cappedTerms);
+    }
+
+    @Test
+    void shouldExpandWildcardPattern() {
+
+        // when
+        List<String> terms = expand("opti?i*e", 64);
+        List<String> polishTerms = expand("zaż*ć", 64);
+
+        // then
+        assertEquals(Arrays.asList("optimise", "optimize"), terms);
+        assertEquals(Arrays.asList("zażółcić", "zażółć"), polishTerms);
+    }
+
+    @Test
+    void shouldExpandFuzzyTermClosestFirst() {
+
+        // when
+        List<String> terms = expand("optimse~", 64);
+        List<String> oneEditTerms = expand("optimse~1", 64);
+        List<String> polishTerms = expand("zazolc~2", 64);
+
+        // then
+        assertEquals(Arrays.asList("optimise", "optimal", "optimize", "optimum"), terms);
+        assertEquals(Arrays.asList("optimise"), oneEditTerms);
+        assertTrue(polishTerms.isEmpty());
+        assertEquals(Arrays.asList("zażółć"), expand("zażółc~1", 64));
+    }
+
+    @Test
+    void shouldSeekFrontCodedTermsOfMappedSegment() {
+
+        // given
+        TermsEnum terms = invertedIndex.getSegments().get(0).terms();
+
+        // when
+        boolean found = terms.seekCeil("fillerq");
+        String term = terms.term();
+        terms.next();
+        String nextTerm = terms.term();
+        boolean foundAfterLast = terms.seekCeil("zz");
+
+        // then
+        assertTrue(found);
+        assertEquals("fillerq", term);
+        assertEquals("fillerr", nextTerm);
+        assertFalse(foundAfterLast);
+        assertEquals(1, invertedIndex.getSegments().get(0).getPostings("fillerz").size());
+        assertNull(invertedIndex.getSegments().get(0).getPostings("fillerzz"));
+        assertTrue(invertedIndex.getSegments().get(0).getTermDictionaryBytes() > 0);
+    }
+
+    private List<String> expand(String query, int maxExpansions) {
+        TermExpansion expansion = new TermExpansion(QueryTerm.parse(query, new StandardAnalyzer()).get(0), maxExpansions);
+        for (TermsEnum terms : invertedIndex.getTermsEnums()) {
+            expansion.collect(terms);
+        }
+        return expansion.getTerms();
+    }
+
+    private void addDocument(String documentName, String text) {
+        TermFrequencies termFrequencies = new TermFrequencies();
+        new StandardAnalyzer().analyze(text, termFrequencies);
+        invertedIndex.addDocument(documentName, termFrequencies);
+    }
+}
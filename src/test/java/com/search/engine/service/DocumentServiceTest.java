@@ -1,18 +1,35 @@
 package com.search.engine.service;
 
+import com.search.engine.analysis.TermFrequencies;
+import com.search.engine.config.IngestProperties;
+import com.search.engine.dto.DocumentResponse;
+import com.search.engine.exception.BadFileException;
+import com.search.engine.exception.DocumentNotFoundException;
+import com.search.engine.search.Operator;
+import com.search.engine.search.ScoredDocument;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import static com.search.engine.exception.BadFileException.FILENAME_ERROR;
 import static com.search.engine.exception.BadFileException.FILE_NULL_ERROR;
+import static com.search.engine.exception.DocumentNotFoundException.DOCUMENT_NOT_FOUND_ERROR;
 import static com.search.engine.service.DocumentService.EMPTY_KEYWORD_ERROR;
 import static com.search.engine.service.DocumentService.KEYWORD_NULL_ERROR;
+import static com.search.engine.service.DocumentService.LIMIT_ERROR;
+import static com.search.engine.service.DocumentService.MAX_LIMIT;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -22,12 +39,22 @@ class DocumentServiceTest {
     private DocumentService documentService;
     private SearchEngineService searchEngineService;
     private StorageService storageService;
+    private ExecutorService tokenizerExecutor;
 
     @BeforeEach
     void setUp() {
         searchEngineService = mock(SearchEngineService.class);
         storageService = mock(StorageService.class);
-        documentService = new DocumentService(storageService, searchEngineService);
+        tokenizerExecutor = Executors.newFixedThreadPool(4);
+        IngestProperties ingestProperties = new IngestProperties();
+        ingestProperties.setQueueCapacity(2);
+        ingestProperties.setMergeBatchSize(2);
+        documentService = new DocumentService(storageService, searchEngineService, tokenizerExecutor, ingestProperties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tokenizerExecutor.shutdownNow();
     }
 
     @Test
@@ -35,12 +62,12 @@ class DocumentServiceTest {
 
         // given
         String goodKeyword = "keyword";
-        List<String> expectedResult = new ArrayList<>();
-        expectedResult.add("Document1");
-        when(searchEngineService.getDocumentsContaining(any())).thenReturn(expectedResult);
+        List<ScoredDocument> expectedResult = new ArrayList<>();
+        expectedResult.add(new ScoredDocument(0, 1.0));
+        when(searchEngineService.getDocumentsContaining(any(), any(), anyInt(), anyInt())).thenReturn(expectedResult);
 
         // when
-        List<String> actualResult = documentService.findDocumentsContaining(goodKeyword);
+        List<ScoredDocument> actualResult = documentService.findDocumentsContaining(goodKeyword, Operator.AND, 0, 10);
 
         // then
         assertEquals(actualResult, expectedResult);
@@ -53,12 +80,25 @@ class DocumentServiceTest {
         String emptyKeyword = "";
 
         // when
-        IllegalArgumentException actualException = assertThrows(IllegalArgumentException.class, () -> documentService.findDocumentsContaining(emptyKeyword));
+        IllegalArgumentException actualException = assertThrows(IllegalArgumentException.class, () -> documentService.findDocumentsContaining(emptyKeyword, Operator.AND, 0, 10));
 
         // then
         assertEquals(actualException.getMessage(), EMPTY_KEYWORD_ERROR);
     }
 
+    @Test
+    void shouldCatchIllegalArgumentExceptionWhenLimitTooBig() {
+
+        // given
+        String goodKeyword = "keyword";
+
+        // when
+        IllegalArgumentException actualException = assertThrows(IllegalArgumentException.class, () -> documentService.findDocumentsContaining(goodKeyword, Operator.AND, 0, MAX_LIMIT + 1));
+
+        // then
+        assertEquals(actualException.getMessage(), LIMIT_ERROR + MAX_LIMIT);
+    }
+
     @Test
     public void shouldCatchNullPointerExceptionWhenFileNull() {
 
@@ -79,14 +119,90 @@ class DocumentServiceTest {
 
             // given
             MultipartFile file = new MockMultipartFile("name", new byte[20]);
-            doNothing().when(storageService).store(any());
-            doNothing().when(searchEngineService).createInvertedIndexStructure(anyString(), anyString());
+            when(storageService.storeWhileReading(any())).thenReturn(new ByteArrayInputStream(new byte[20]));
+            when(searchEngineService.analyze(any())).thenReturn(new TermFrequencies());
+            doNothing().when(searchEngineService).createInvertedIndexStructure(any(TermFrequencies.class), any());
 
             // when
             documentService.processFile(file);
         });
     }
 
+    @Test
+    void shouldReturnResponsesInUploadOrderAndMergeInBatches() throws Exception {
+
+        // given
+        MultipartFile[] files = {
+                new MockMultipartFile("files", "a.txt", null, new byte[1]),
+                new MockMultipartFile("files", "b.txt", null, new byte[2]),
+                new MockMultipartFile("files", "bad.txt", null, new byte[3]),
+                new MockMultipartFile("files", "c.txt", null, new byte[4])
+        };
+        when(storageService.storeWhileReading(any())).thenAnswer(invocation -> {
+            MultipartFile file = invocation.getArgument(0);
+            if (file.getOriginalFilename().equals("bad.txt")) {
+                throw new BadFileException(FILENAME_ERROR);
+            }
+            return new ByteArrayInputStream(file.getBytes());
+        });
+        when(searchEngineService.analyze(any())).thenReturn(new TermFrequencies());
+
+        // when
+        List<DocumentResponse> responses = documentService.processFiles(files);
+
+        // then
+        assertEquals(4, responses.size());
+        assertEquals("a.txt", responses.get(0).getName());
+        assertEquals("b.txt", responses.get(1).getName());
+        assertEquals("bad.txt", responses.get(2).getName());
+        assertEquals(FILENAME_ERROR, responses.get(2).getError());
+        assertEquals("c.txt", responses.get(3).getName());
+        assertEquals(4, responses.get(3).getSize());
+        assertNull(responses.get(3).getError());
+        verify(searchEngineService).createInvertedIndexStructure(anyList(), eq(Arrays.asList("a.txt", "b.txt")));
+        verify(searchEngineService).createInvertedIndexStructure(anyList(), eq(Collections.singletonList("c.txt")));
+    }
+
+    @Test
+    void shouldRemoveStoredFilesOfBatchThatCantBeMerged() throws Exception {
+
+        // given
+        MultipartFile[] files = {
+                new MockMultipartFile("files", "a.txt", null, new byte[1]),
+                new MockMultipartFile("files", "b.txt", null, new byte[2])
+        };
+        when(storageService.storeWhileReading(any())).thenAnswer(invocation ->
+                new ByteArrayInputStream(((MultipartFile) invocation.getArgument(0)).getBytes()));
+        when(searchEngineService.analyze(any())).thenReturn(new TermFrequencies());
+        doThrow(new IllegalStateException("merge failed"))
+                .when(searchEngineService).createInvertedIndexStructure(anyList(), anyList());
+
+        // when
+        List<DocumentResponse> responses = documentService.processFiles(files);
+
+        // then
+        assertEquals("merge failed", responses.get(0).getError());
+        assertEquals("merge failed", responses.get(1).getError());
+        verify(storageService).delete("a.txt");
+        verify(storageService).delete("b.txt");
+    }
+
+    @Test
+    void shouldRemoveStoredFileWhenAnalysisFails() throws Exception {
+
+        // given
+        MultipartFile file = new MockMultipartFile("file", "a.txt", null, new byte[1]);
+        when(storageService.storeWhileReading(file)).thenReturn(new ByteArrayInputStream(new byte[1]));
+        when(searchEngineService.analyze(any())).thenThrow(new IllegalStateException("analysis failed"));
+
+        // when
+        assertThrows(IllegalStateException.class, () -> documentService.processFile(file));
+
+        // then
+        verify(storageService).delete("a.txt");
+        verify(searchEngineService, never()).createInvertedIndexStructure(any(TermFrequencies.class), any());
+    }
+
     @Test
     void shouldCatchNullPointerExceptionWhenKeywordIsNull() {
 
@@ -94,7 +210,7 @@ class DocumentServiceTest {
         String nullKeyword = null;
 
         //when
-        NullPointerException actualException = assertThrows(NullPointerException.class, () -> documentService.getTFIDF(nullKeyword));
+        NullPointerException actualException = assertThrows(NullPointerException.class, () -> documentService.getTFIDF(nullKeyword, Operator.AND));
 
         //then
         assertEquals(actualException.getMessage(), KEYWORD_NULL_ERROR);
@@ -107,24 +223,111 @@ class DocumentServiceTest {
         String emptyKeyword = "";
 
         // when
-        IllegalArgumentException actualException = assertThrows(IllegalArgumentException.class, () -> documentService.getTFIDF(emptyKeyword));
+        IllegalArgumentException actualException = assertThrows(IllegalArgumentException.class, () -> documentService.getTFIDF(emptyKeyword, Operator.AND));
 
         // then
         assertEquals(actualException.getMessage(), EMPTY_KEYWORD_ERROR);
     }
 
     @Test
-    void shouldReturnMapWhenGetTFIDF() {
+    void shouldReturnListWhenGetTFIDF() {
 
         // given
         String goodKeyword = "keyword";
-        Map<String, Double> expectedMap = Collections.emptyMap();
-        when(searchEngineService.calculateTFIDFValuesFor(anyString())).thenReturn(Collections.emptyMap());
+        List<ScoredDocument> expectedList = Collections.emptyList();
+        when(searchEngineService.calculateTFIDFValuesFor(anyString(), any())).thenReturn(Collections.emptyList());
+
+        // when
+        List<ScoredDocument> actualList = documentService.getTFIDF(goodKeyword, Operator.AND);
+
+        // then
+        assertEquals(actualList, expectedList);
+    }
+
+    @Test
+    public void shouldThrowDocumentNotFoundExceptionWhenDeletingUnknownFile() {
+
+        // given
+        String filename = "missing.txt";
+        when(storageService.exists(filename)).thenReturn(false);
+        when(searchEngineService.deleteDocument(filename)).thenReturn(false);
+
+        // when
+        DocumentNotFoundException actualException = assertThrows(DocumentNotFoundException.class, () -> documentService.deleteFile(filename));
+
+        // then
+        assertEquals(actualException.getMessage(), DOCUMENT_NOT_FOUND_ERROR + filename);
+        verify(storageService, never()).delete(any());
+    }
+
+    @Test
+    public void shouldStoreNewContentAndReplaceIndexedDocument() {
+
+        // given
+        String filename = "document.txt";
+        MultipartFile file = new MockMultipartFile("file", "other.txt", "text/plain", "new content".getBytes());
+        StagedFile staged = new StagedFile(Paths.get("staged"));
+        staged.open(new ByteArrayInputStream("new content".getBytes()));
+        when(storageService.exists(filename)).thenReturn(true);
+        when(storageService.stageWhileReading(file)).thenReturn(staged);
+
+        // when
+        documentService.replaceFile(filename, file);
+
+        // then
+        verify(storageService).replace(filename, staged);
+        verify(storageService, never()).delete(any());
+        verify(searchEngineService).replaceDocument(any(), eq(filename));
+        verify(searchEngineService, never()).deleteDocument(any());
+    }
+
+    @Test
+    public void shouldKeepOldVersionWhenNewContentCantBeAnalyzed() throws Exception {
+
+        // given
+        String filename = "document.txt";
+        MultipartFile file = new MockMultipartFile("file", "other.txt", "text/plain", "new content".getBytes());
+        StagedFile staged = new StagedFile(Paths.get("staged"));
+        staged.open(new ByteArrayInputStream("new content".getBytes()));
+        when(storageService.exists(filename)).thenReturn(true);
+        when(storageService.stageWhileReading(file)).thenReturn(staged);
+        when(searchEngineService.analyze(any())).thenThrow(new IllegalStateException("analysis failed"));
+
+        // when
+        assertThrows(IllegalStateException.class, () -> documentService.replaceFile(filename, file));
+
+        // then
+        verify(storageService).discard(staged);
+        verify(storageService, never()).replace(any(), any());
+        verify(storageService, never()).delete(any());
+        verify(searchEngineService, never()).replaceDocument(any(), any());
+        verify(searchEngineService, never()).deleteDocument(any());
+    }
+
+    @Test
+    public void shouldIndexStoredVersionAgainWhenStoringNewContentFails() throws Exception {
+
+        // given
+        String filename = "document.txt";
+        MultipartFile file = new MockMultipartFile("file", "other.txt", "text/plain", "new content".getBytes());
+        StagedFile staged = new StagedFile(Paths.get("staged"));
+        staged.open(new ByteArrayInputStream("new content".getBytes()));
+        TermFrequencies newContent = new TermFrequencies();
+        TermFrequencies oldContent = new TermFrequencies();
+        when(storageService.exists(filename)).thenReturn(true);
+        when(storageService.stageWhileReading(file)).thenReturn(staged);
+        when(storageService.load(filename)).thenReturn(new ByteArrayInputStream("old content".getBytes()));
+        when(searchEngineService.analyze(any())).thenReturn(newContent, oldContent);
+        doThrow(new BadFileException("duplicate")).when(storageService).replace(filename, staged);
 
         // when
-        Map<String, Double> actualMap = documentService.getTFIDF(goodKeyword);
+        assertThrows(BadFileException.class, () -> documentService.replaceFile(filename, file));
 
         // then
-        assertEquals(actualMap, expectedMap);
+        InOrder inOrder = inOrder(searchEngineService, storageService);
+        inOrder.verify(searchEngineService).replaceDocument(newContent, filename);
+        inOrder.verify(storageService).replace(filename, staged);
+        inOrder.verify(searchEngineService).replaceDocument(oldContent, filename);
+        verify(storageService, never()).delete(any());
     }
-}
\ No newline at end of file
+}
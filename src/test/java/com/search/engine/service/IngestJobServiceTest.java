@@ -0,0 +1,140 @@
+package com.search.engine.service;
+
+import com.search.engine.config.IngestProperties;
+import com.search.engine.exception.BadFileException;
+import com.search.engine.exception.IngestRejectedException;
+import com.search.engine.ingest.IngestJob;
+import com.search.engine.ingest.IngestStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.search.engine.exception.BadFileException.EMPTY_FILE_ERROR;
+import static com.search.engine.exception.IngestRejectedException.INGEST_QUEUE_FULL_ERROR;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class IngestJobServiceTest {
+
+    private IngestJobService ingestJobService;
+    private StorageService storageService;
+    private DocumentService documentService;
+    private ThreadPoolExecutor ingestExecutor;
+
+    @BeforeEach
+    void setUp() {
+        storageService = mock(StorageService.class);
+        documentService = mock(DocumentService.class);
+        ingestExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+        ingestJobService = new IngestJobService(storageService, documentService, ingestExecutor, new IngestProperties());
+    }
+
+    @AfterEach
+    void tearDown() {
+        ingestExecutor.shutdownNow();
+    }
+
+    @Test
+    void shouldIndexStoredFilesInBackgroundAndReportEachFile() throws Exception {
+
+        // given
+        MultipartFile[] files = {
+                new MockMultipartFile("files", "a.txt", null, new byte[1]),
+                new MockMultipartFile("files", "empty.txt", null, new byte[0])
+        };
+        doThrow(new BadFileException(EMPTY_FILE_ERROR)).when(storageService)
+                .store(argThat(file -> file.getOriginalFilename().equals("empty.txt")));
+
+        // when
+        IngestJob job = ingestJobService.submit(files);
+        ingestExecutor.shutdown();
+        ingestExecutor.awaitTermination(5, TimeUnit.SECONDS);
+
+        // then
+        assertSame(job, ingestJobService.getJob(job.getId()).orElse(null));
+        assertEquals(IngestStatus.DONE, job.getStatus());
+        assertEquals(IngestStatus.DONE, job.getFiles().get(0).getStatus());
+        assertEquals(IngestStatus.FAILED, job.getFiles().get(1).getStatus());
+        assertEquals(EMPTY_FILE_ERROR, job.getFiles().get(1).getError());
+        verify(documentService).processStoredFile("a.txt");
+        verify(documentService, never()).processStoredFile("empty.txt");
+    }
+
+    @Test
+    void shouldDeleteStoredFileWhenIndexingItFails() throws Exception {
+
+        // given
+        MultipartFile[] files = {
+                new MockMultipartFile("files", "a.txt", null, new byte[1]),
+                new MockMultipartFile("files", "b.txt", null, new byte[1])
+        };
+        doThrow(new IllegalStateException("Index is closed")).when(documentService).processStoredFile("b.txt");
+
+        // when
+        IngestJob job = ingestJobService.submit(files);
+        ingestExecutor.shutdown();
+        ingestExecutor.awaitTermination(5, TimeUnit.SECONDS);
+
+        // then
+        assertEquals(IngestStatus.DONE, job.getFiles().get(0).getStatus());
+        assertEquals(IngestStatus.FAILED, job.getFiles().get(1).getStatus());
+        assertEquals("Index is closed", job.getFiles().get(1).getError());
+        verify(storageService).delete("b.txt");
+        verify(storageService, never()).delete("a.txt");
+    }
+
+    @Test
+    void shouldRejectJobWhenIngestQueueIsFull() throws Exception {
+
+        // given
+        CountDownLatch release = new CountDownLatch(1);
+        ingestExecutor.execute(() -> awaitQuietly(release));
+        ingestExecutor.execute(() -> awaitQuietly(release));
+        MultipartFile[] files = {new MockMultipartFile("files", "a.txt", null, new byte[1])};
+
+        // when
+        IngestRejectedException actualException = assertThrows(IngestRejectedException.class, () -> ingestJobService.submit(files));
+        release.countDown();
+
+        // then
+        assertEquals(INGEST_QUEUE_FULL_ERROR, actualException.getMessage());
+        verify(storageService, never()).store(any());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void shouldQueueStoredFilesMissingFromIndexOnStartup() throws Exception {
+
+        // given
+        when(storageService.getStoredFilenames()).thenReturn(new HashSet<>(Arrays.asList("a.txt", "b.txt")));
+        when(storageService.getStoredFile("b.txt")).thenReturn(new StoredFile("b.txt", Paths.get("b.txt"), 1, 0, "\"1-0\""));
+        when(documentService.isIndexed("a.txt")).thenReturn(true);
+
+        // when
+        ingestJobService.resumeUnindexedFiles();
+        ingestExecutor.shutdown();
+        ingestExecutor.awaitTermination(5, TimeUnit.SECONDS);
+
+        // then
+        verify(documentService).processStoredFile("b.txt");
+        verify(documentService, never()).processStoredFile("a.txt");
+    }
+}
@@ -1,10 +1,35 @@
 package com.search.engine.service;
 
+import com.search.engine.analysis.StandardAnalyzer;
+import com.search.engine.config.SearchProperties;
+import com.search.engine.config.StorageProperties;
+import com.search.engine.search.GenerationalCache;
+import com.search.engine.index.ShardedIndex;
+import com.search.engine.metrics.EngineMetrics;
+import com.search.engine.search.Operator;
+import com.search.engine.search.AllDocsCollector;
+import com.search.engine.search.ScoreCollector;
+import com.search.engine.search.ScoredDocument;
+import com.search.engine.search.SearchCursor;
+import com.search.engine.search.SearchPage;
+import com.search.engine.search.Similarity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static com.search.engine.service.DocumentService.KEYWORD_NULL_ERROR;
 import static com.search.engine.service.SearchEngineService.FILENAME_NULL_MESSAGE;
@@ -13,11 +38,41 @@ import static org.junit.jupiter.api.Assertions.*;
 
 class SearchEngineServiceTest {
 
+    @TempDir
+    Path indexDirectory;
+
     private SearchEngineService searchEngineService;
+    private ShardedIndex index;
+    private ExecutorService searchExecutor;
+    private SimpleMeterRegistry meterRegistry;
 
     @BeforeEach
-    void setUp() {
-        searchEngineService = new SearchEngineService();
+    void setUp() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        searchExecutor = Executors.newFixedThreadPool(2);
+        index = openIndex(indexDirectory.resolve("single"), 1);
+        searchEngineService = new SearchEngineService(new StandardAnalyzer(), index, new SearchProperties(), searchExecutor, new EngineMetrics(meterRegistry));
+    }
+
+    @AfterEach
+    void tearDown() {
+        searchExecutor.shutdown();
+    }
+
+    private static ShardedIndex openIndex(Path directory, int shards) throws Exception {
+        return openIndex(directory, shards, false);
+    }
+
+    private static ShardedIndex openIndex(Path directory, int shards, boolean indexPositions) throws Exception {
+        StorageProperties storageProperties = new StorageProperties();
+        storageProperties.setIndexLocation(directory.toString());
+        storageProperties.setFlushThreshold(100);
+        storageProperties.setShards(shards);
+        storageProperties.setIndexPositions(indexPositions);
+        storageProperties.setRefreshIntervalMs(0);
+        ShardedIndex openedIndex = new ShardedIndex(storageProperties);
+        openedIndex.open();
+        return openedIndex;
     }
 
     @Test
@@ -68,7 +123,7 @@ class SearchEngineServiceTest {
         String keywordNull = null;
 
         // when
-        NullPointerException actualException = assertThrows(NullPointerException.class, () -> searchEngineService.getDocumentsContaining(keywordNull));
+        NullPointerException actualException = assertThrows(NullPointerException.class, () -> searchEngineService.getDocumentsContaining(keywordNull, Operator.AND, 0, 10));
 
         // then
         assertEquals(actualException.getMessage(), KEYWORD_NULL_ERROR);
@@ -79,10 +134,10 @@ class SearchEngineServiceTest {
 
         // given
         String keyword = "word";
-        List<String> expectedList = Collections.emptyList();
+        List<ScoredDocument> expectedList = Collections.emptyList();
 
         // when
-        List<String> actualList = searchEngineService.getDocumentsContaining(keyword);
+        List<ScoredDocument> actualList = searchEngineService.getDocumentsContaining(keyword, Operator.AND, 0, 10);
 
         // then
         assertEquals(actualList, expectedList);
@@ -95,9 +150,510 @@ class SearchEngineServiceTest {
         String keywordNull = null;
 
         // when
-        NullPointerException actualException = assertThrows(NullPointerException.class, () -> searchEngineService.calculateTFIDFValuesFor(keywordNull));
+        NullPointerException actualException = assertThrows(NullPointerException.class, () -> searchEngineService.calculateTFIDFValuesFor(keywordNull, Operator.AND));
 
         // then
         assertEquals(actualException.getMessage(), KEYWORD_NULL_ERROR);
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldNotLosePostingsWhenDocumentsAreIndexedConcurrently() throws Exception {
+
+        // given
+        int threads = 8;
+        int documentsPerThread = 250;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            int threadNumber = thread;
+            tasks.add(() -> {
+                for (int document = 0; document < documentsPerThread; document++) {
+                    String documentName = "Document" + threadNumber + "_" + document;
+                    searchEngineService.createInvertedIndexStructure("common word unique" + documentName + " word", documentName);
+                }
+                return null;
+            });
+        }
+
+        // when
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // then
+        int totalDocuments = threads * documentsPerThread;
+        assertEquals(totalDocuments, searchEngineService.calculateTFIDFValuesFor("common", Operator.AND).size());
+        assertEquals(totalDocuments, searchEngineService.calculateTFIDFValuesFor("word", Operator.AND).size());
+        List<ScoredDocument> uniqueWordValues = searchEngineService.calculateTFIDFValuesFor("uniquedocument3_42", Operator.AND);
+        assertEquals(1, uniqueWordValues.size());
+        assertEquals("Document3_42", index.getDocumentName(uniqueWordValues.get(0).getDocId()));
+        assertEquals(0.25 * Math.log(totalDocuments), uniqueWordValues.get(0).getScore(), 1e-9);
+    }
+
+    @Test
+    void shouldReturnOnlyDocumentsContainingAllTermsForAndQuery() {
+
+        // given
+        searchEngineService.createInvertedIndexStructure("connection pool timeout", "Document1");
+        searchEngineService.createInvertedIndexStructure("connection refused", "Document2");
+        searchEngineService.createInvertedIndexStructure("pool timeout connection reset", "Document3");
+        searchEngineService.createInvertedIndexStructure("timeout", "Document4");
+
+        // when
+        List<ScoredDocument> actualList = searchEngineService.getDocumentsContaining("Connection TIMEOUT pool", Operator.AND, 0, 10);
+
+        // then
+        assertEquals(2, actualList.size());
+        assertEquals("Document1", index.getDocumentName(actualList.get(0).getDocId()));
+        assertEquals("Document3", index.getDocumentName(actualList.get(1).getDocId()));
+        double expectedScore = 1.0 / 3 * Math.log(4.0 / 3) + 1.0 / 3 * Math.log(4.0 / 2) + 1.0 / 3 * Math.log(4.0 / 3);
+        assertEquals(expectedScore, actualList.get(0).getScore(), 1e-9);
+    }
+
+    @Test
+    void shouldSumScoresOfMatchingTermsForOrQuery() {
+
+        // given
+        searchEngineService.createInvertedIndexStructure("apple banana", "Document1");
+        searchEngineService.createInvertedIndexStructure("banana", "Document2");
+        searchEngineService.createInvertedIndexStructure("cherry", "Document3");
+
+        // when
+        List<ScoredDocument> actualList = searchEngineService.calculateTFIDFValuesFor("apple banana durian", Operator.OR);
+
+        // then
+        assertEquals(2, actualList.size());
+        assertEquals(0, actualList.get(0).getDocId());
+        assertEquals(0.5 * Math.log(3) + 0.5 * Math.log(1.5), actualList.get(0).getScore(), 1e-9);
+        assertEquals(1, actualList.get(1).getDocId());
+        assertEquals(Math.log(1.5), actualList.get(1).getScore(), 1e-9);
+        assertTrue(searchEngineService.calculateTFIDFValuesFor("apple durian", Operator.AND).isEmpty());
+    }
+
+    @Test
+    void shouldReturnRequestedPageOfBestDocumentsForOrQuery() {
+
+        // given
+        for (int document = 0; document < 200; document++) {
+            String text = document % 10 == 0 ? "rare common" : "common filler" + (document % 7);
+            searchEngineService.createInvertedIndexStructure(text + " padding".concat(document % 3 == 0 ? " more" : ""), "Document" + document);
+        }
+        List<ScoredDocument> allDocuments = searchEngineService.calculateTFIDFValuesFor("rare common filler3", Operator.OR);
+        allDocuments.sort(Comparator.comparingDouble(ScoredDocument::getScore).reversed());
+
+        // when
+        List<ScoredDocument> firstPage = searchEngineService.getDocumentsContaining("rare common filler3", Operator.OR, 0, 5);
+        List<ScoredDocument> secondPage = searchEngineService.getDocumentsContaining("rare common filler3", Operator.OR, 5, 5);
+
+        // then
+        assertEquals(5, firstPage.size());
+        assertEquals(5, secondPage.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(allDocuments.get(i).getDocId(), firstPage.get(i).getDocId());
+            assertEquals(allDocuments.get(i).getScore(), firstPage.get(i).getScore(), 1e-9);
+            assertEquals(allDocuments.get(i + 5).getDocId(), secondPage.get(i).getDocId());
+        }
+    }
+
+    @Test
+    void shouldServeRepeatedQueryFromCacheUntilNextUpload() {
+
+        // given
+        searchEngineService.createInvertedIndexStructure("apple banana", "Document1");
+        searchEngineService.createInvertedIndexStructure("banana", "Document2");
+        GenerationalCache<?, ?> resultCache = searchEngineService.getCaches().get(0);
+
+        // when
+        List<ScoredDocument> firstResult = searchEngineService.getDocumentsContaining("Banana", Operator.AND, 0, 10);
+        List<ScoredDocument> cachedResult = searchEngineService.getDocumentsContaining("banana,", Operator.AND, 0, 10);
+        searchEngineService.createInvertedIndexStructure("cherry", "Document3");
+        List<ScoredDocument> resultAfterUpload = searchEngineService.getDocumentsContaining("banana", Operator.AND, 0, 10);
+
+        // then
+        assertSame(firstResult, cachedResult);
+        assertNotSame(firstResult, resultAfterUpload);
+        assertEquals(Math.log(1.5), resultAfterUpload.get(0).getScore(), 1e-9);
+        assertEquals(1, resultCache.getHits());
+        assertEquals(2, resultCache.getMisses());
+    }
+
+    @Test
+    void shouldRecordMergeLookupAndRankingTimes() {
+
+        // given
+        searchEngineService.createInvertedIndexStructure("apple banana", "Document1");
+        searchEngineService.createInvertedIndexStructure("banana", "Document2");
+
+        // when
+        searchEngineService.getDocumentsContaining("apple banana", Operator.OR, 0, 10);
+        searchEngineService.getDocumentsContaining("apple banana", Operator.OR, 0, 10);
+
+        // then
+        assertEquals(2, meterRegistry.get("engine.index.merge").timer().count());
+        assertEquals(2, meterRegistry.get("engine.query.lookup").timer().count());
+        assertEquals(1, meterRegistry.get("engine.query.ranking").tag("operator", "OR").timer().count());
+        assertEquals(0, meterRegistry.get("engine.query.ranking").tag("operator", "AND").timer().count());
+    }
+
+    @Test
+    void shouldSkipDeletedAndReplacedDocumentsAndScoreWithLiveCount() throws Exception {
+
+        // given
+        searchEngineService.createInvertedIndexStructure("apple banana", "Document1");
+        searchEngineService.createInvertedIndexStructure("apple cherry", "Document2");
+        searchEngineService.createInvertedIndexStructure("cherry", "Document3");
+        List<ScoredDocument> resultBeforeDelete = searchEngineService.getDocumentsContaining("apple cherry", Operator.OR, 0, 10);
+
+        // when
+        boolean deleted = searchEngineService.deleteDocument("Document2");
+        List<ScoredDocument> resultAfterDelete = searchEngineService.getDocumentsContaining("apple cherry", Operator.OR, 0, 10);
+        searchEngineService.replaceDocument(searchEngineService.analyze(new StringReader("durian")), "Document1");
+        List<ScoredDocument> resultAfterReplace = searchEngineService.calculateTFIDFValuesFor("apple durian", Operator.OR);
+
+        // then
+        assertTrue(deleted);
+        assertFalse(searchEngineService.deleteDocument("Document2"));
+        assertEquals(3, resultBeforeDelete.size());
+        assertEquals(2, resultAfterDelete.size());
+        assertEquals(Math.log(2), resultAfterDelete.get(0).getScore(), 1e-9);
+        assertEquals(0.5 * Math.log(2), resultAfterDelete.get(1).getScore(), 1e-9);
+        assertEquals(1, resultAfterReplace.size());
+        assertEquals("Document1", index.getDocumentName(resultAfterReplace.get(0).getDocId()));
+        assertEquals(Math.log(2), resultAfterReplace.get(0).getScore(), 1e-9);
+    }
+
+    @Test
+    void shouldMatchEveryClauseOfExpandedQueryWithAnd() {
+
+        // given
+        searchEngineService.createInvertedIndexStructure("apple banana", "Document1");
+        searchEngineService.createInvertedIndexStructure("apricot cherry", "Document2");
+        searchEngineService.createInvertedIndexStructure("banana cherry", "Document3");
+
+        // when
+        List<ScoredDocument> andResult = searchEngineService.getDocumentsContaining("ap* cherry", Operator.AND, 0, 10);
+        List<ScoredDocument> orResult = searchEngineService.getDocumentsContaining("ap* cherry", Operator.OR, 0, 10);
+        List<ScoredDocument> fuzzyResult = searchEngineService.calculateTFIDFValuesFor("banan~ chery~1", Operator.AND);
+
+        // then
+        assertEquals(1, andResult.size());
+        assertEquals("Document2", index.getDocumentName(andResult.get(0).getDocId()));
+        assertEquals(Math.log(3) / 2 + Math.log(1.5) / 2, andResult.get(0).getScore(), 1e-9);
+        assertEquals(3, orResult.size());
+        assertEquals(1, fuzzyResult.size());
+        assertEquals("Document3", index.getDocumentName(fuzzyResult.get(0).getDocId()));
+    }
+
+    @Test
+    void shouldMatchPhraseAndProximityQueriesByPositions() throws Exception {
+
+        // given
+        ShardedIndex positionalIndex = openIndex(indexDirectory.resolve("positions"), 2, true);
+        SearchEngineService positionalService = new SearchEngineService(new StandardAnalyzer(), positionalIndex,
+                new SearchProperties(), searchExecutor, new EngineMetrics(meterRegistry));
+        positionalService.createInvertedIndexStructure("connection pool timeout", "Document1");
+        positionalService.createInvertedIndexStructure("timeout of the connection pool", "Document2");
+        positionalService.createInvertedIndexStructure("pool connection", "Document3");
+        positionalService.createInvertedIndexStructure("apple", "Document4");
+
+        // when
+        List<ScoredDocument> phraseResult = positionalService.calculateTFIDFValuesFor("\"Connection pool\"", Operator.OR);
+        List<ScoredDocument> proximityResult = positionalService.calculateTFIDFValuesFor("\"connection timeout\"~1", Operator.OR);
+        List<ScoredDocument> mixedResult = positionalService.calculateTFIDFValuesFor("\"connection pool\" timeout", Operator.AND);
+
+        // then
+        assertEquals(2, phraseResult.size());
+        for (ScoredDocument document : phraseResult) {
+            boolean shortDocument = "Document1".equals(positionalIndex.getDocumentName(document.getDocId()));
+            assertEquals(Math.log(2) / (shortDocument ? 3 : 5), document.getScore(), 1e-9);
+        }
+        assertEquals(1, proximityResult.size());
+        assertEquals("Document1", positionalIndex.getDocumentName(proximityResult.get(0).getDocId()));
+        assertEquals(2, mixedResult.size());
+        assertThrows(IllegalArgumentException.class,
+                () -> searchEngineService.calculateTFIDFValuesFor("\"connection pool\"", Operator.OR));
+    }
+
+    @Test
+    void shouldScoreShardedIndexExactlyLikeSingleIndex() throws Exception {
+
+        // given
+        ShardedIndex shardedIndex = openIndex(indexDirectory.resolve("sharded"), 3);
+        SearchEngineService shardedService = new SearchEngineService(new StandardAnalyzer(), shardedIndex, new SearchProperties(), searchExecutor, new EngineMetrics(meterRegistry));
+        for (int document = 0; document < 300; document++) {
+            String text = (document % 10 == 0 ? "rare " : "") + "common filler" + (document % 7) + " padding" + " common".concat(document % 3 == 0 ? " more" : "");
+            searchEngineService.createInvertedIndexStructure(text, "Document" + document);
+            shardedService.createInvertedIndexStructure(text, "Document" + document);
+        }
+
+        for (Operator operator : Operator.values()) {
+            // when
+            List<ScoredDocument> expected = searchEngineService.getDocumentsContaining("rare common filler3 more", operator, 3, 20);
+            List<ScoredDocument> actual = shardedService.getDocumentsContaining("rare common filler3 more", operator, 3, 20);
+            List<ScoredDocument> expectedAll = searchEngineService.calculateTFIDFValuesFor("common filler3", operator);
+            List<ScoredDocument> actualAll = shardedService.calculateTFIDFValuesFor("common filler3", operator);
+
+            // then
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getScore(), actual.get(i).getScore());
+            }
+            assertEquals(expectedAll.size(), actualAll.size());
+            assertEquals(sortedScores(expectedAll), sortedScores(actualAll));
+        }
+        shardedIndex.close();
+    }
+
+    @Test
+    void shouldQueryPublishedSnapshotUntilRefresh() throws Exception {
+
+        // given
+        StorageProperties storageProperties = new StorageProperties();
+        storageProperties.setIndexLocation(indexDirectory.resolve("refreshed").toString());
+        storageProperties.setShards(2);
+        storageProperties.setRefreshIntervalMs(3_600_000);
+        ShardedIndex refreshedIndex = new ShardedIndex(storageProperties);
+        refreshedIndex.open();
+        SearchEngineService refreshedService = new SearchEngineService(new StandardAnalyzer(), refreshedIndex,
+                new SearchProperties(), searchExecutor, new EngineMetrics(meterRegistry));
+        refreshedService.createInvertedIndexStructure("apple banana", "Document1");
+
+        // when
+        List<ScoredDocument> beforeRefresh = refreshedService.getDocumentsContaining("apple", Operator.OR, 0, 10);
+        refreshedIndex.refresh();
+        List<ScoredDocument> afterRefresh = refreshedService.getDocumentsContaining("apple", Operator.OR, 0, 10);
+        refreshedService.deleteDocument("Document1");
+        List<ScoredDocument> afterDelete = refreshedService.getDocumentsContaining("apple", Operator.OR, 0, 10);
+
+        // then
+        assertTrue(beforeRefresh.isEmpty());
+        assertEquals(1, afterRefresh.size());
+        assertEquals("Document1", refreshedIndex.getSnapshot().getDocumentName(afterRefresh.get(0).getDocId()));
+        assertSame(afterRefresh, afterDelete);
+        assertEquals("Document1", afterDelete.get(0).getName());
+        assertEquals(2, refreshedIndex.getRefreshCount());
+        refreshedIndex.close();
+    }
+
+    @Test
+    void shouldPublishEveryWriteWhileQueriesRunWithoutRefreshInterval() throws Exception {
+
+        // given
+        ShardedIndex concurrentIndex = openIndex(indexDirectory.resolve("concurrent"), 2);
+        SearchEngineService concurrentService = new SearchEngineService(new StandardAnalyzer(), concurrentIndex,
+                new SearchProperties(), searchExecutor, new EngineMetrics(meterRegistry));
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        int batches = 50;
+
+        // when
+        Future<List<Integer>> written = writer.submit(() -> {
+            List<Integer> visibleAfterWrite = new ArrayList<>();
+            for (int batch = 0; batch < batches; batch++) {
+                concurrentService.createInvertedIndexStructure(
+                        Collections.nCopies(2, concurrentService.analyze(new StringReader("apple"))),
+                        Arrays.asList("Document" + batch + "a", "Document" + batch + "b"));
+                visibleAfterWrite.add(concurrentIndex.getSnapshot().getDocumentCount());
+            }
+            return visibleAfterWrite;
+        });
+        List<Integer> matches = new ArrayList<>();
+        while (!written.isDone()) {
+            matches.add(concurrentService.getDocumentsContaining("apple", Operator.OR, 0, 2 * batches).size());
+        }
+        List<Integer> visibleAfterWrite = written.get();
+        writer.shutdown();
+
+        // then
+        for (int batch = 0; batch < batches; batch++) {
+            assertTrue(visibleAfterWrite.get(batch) >= 2 * (batch + 1));
+        }
+        for (int i = 1; i < matches.size(); i++) {
+            assertTrue(matches.get(i) >= matches.get(i - 1));
+        }
+        assertEquals(2 * batches, concurrentService.getDocumentsContaining("apple", Operator.OR, 0, 2 * batches).size());
+        assertTrue(concurrentIndex.getRefreshCount() <= batches + 1);
+        concurrentIndex.close();
+    }
+
+    @Test
+    void shouldRankWithBm25AndKeepPrunedPagesExact() throws Exception {
+
+        // given
+        SearchProperties searchProperties = new SearchProperties();
+        searchProperties.setSimilarity(Similarity.Model.BM25);
+        ShardedIndex bm25Index = openIndex(indexDirectory.resolve("bm25"), 2);
+        SearchEngineService bm25Service = new SearchEngineService(new StandardAnalyzer(), bm25Index,
+                searchProperties, searchExecutor, new EngineMetrics(meterRegistry));
+        bm25Service.createInvertedIndexStructure("apple banana", "Document1");
+        bm25Service.createInvertedIndexStructure("apple apple cherry cherry", "Document2");
+        bm25Service.createInvertedIndexStructure("cherry", "Document3");
+        double idf = Math.log(1 + 1.5 / 2.5);
+        double averageLength = 7.0 / 3;
+
+        // when
+        List<ScoredDocument> result = bm25Service.getDocumentsContaining("apple", Operator.OR, 0, 10);
+        for (int document = 0; document < 200; document++) {
+            String text = (document % 9 == 0 ? "rare " : "") + "common padding".concat(document % 4 == 0 ? " common" : "")
+                    + String.join("", Collections.nCopies(document % 40, " filler"));
+            bm25Service.createInvertedIndexStructure(text, "Long" + document);
+        }
+        List<ScoredDocument> page = bm25Service.getDocumentsContaining("rare common", Operator.OR, 0, 5);
+        List<Double> allScores = sortedScores(bm25Service.calculateTFIDFValuesFor("rare common", Operator.OR));
+
+        // then
+        assertEquals(2, result.size());
+        assertEquals("Document2", bm25Index.getDocumentName(result.get(0).getDocId()));
+        assertEquals(idf * 2.2 * 2 / (2 + 1.2 * (0.25 + 0.75 * 4 / averageLength)), result.get(0).getScore(), 1e-9);
+        assertEquals(idf * 2.2 / (1 + 1.2 * (0.25 + 0.75 * 2 / averageLength)), result.get(1).getScore(), 1e-9);
+        assertEquals(5, page.size());
+        for (int i = 0; i < page.size(); i++) {
+            assertEquals(allScores.get(allScores.size() - 1 - i), page.get(i).getScore(), 1e-12);
+        }
+        bm25Index.close();
+    }
+
+    @Test
+    void shouldSkipNonCompetitiveBlocksAndKeepPagesExact() throws Exception {
+
+        // given
+        StorageProperties storageProperties = new StorageProperties();
+        storageProperties.setIndexLocation(indexDirectory.resolve("blocks").toString());
+        storageProperties.setFlushThreshold(1000);
+        storageProperties.setShards(1);
+        storageProperties.setRefreshIntervalMs(0);
+        ShardedIndex blockIndex = new ShardedIndex(storageProperties);
+        blockIndex.open();
+        SearchProperties searchProperties = new SearchProperties();
+        searchProperties.setSimilarity(Similarity.Model.BM25);
+        SearchEngineService blockService = new SearchEngineService(new StandardAnalyzer(), blockIndex,
+                searchProperties, searchExecutor, new EngineMetrics(meterRegistry));
+        for (int document = 0; document < 600; document++) {
+            String text = document < 10 ? "common common common common common"
+                    : (document % 2 == 0 ? "common" : "") + String.join("", Collections.nCopies(20 + document % 7, " padding"));
+            blockService.createInvertedIndexStructure(text + (document % 3 == 0 ? " other" : ""), "Document" + document);
+        }
+        blockIndex.flush();
+
+        // when
+        List<ScoredDocument> disjunction = blockService.getDocumentsContaining("common other", Operator.OR, 0, 3);
+        List<Double> disjunctionScores = sortedScores(blockService.calculateTFIDFValuesFor("common other", Operator.OR));
+        List<ScoredDocument> conjunction = blockService.getDocumentsContaining("common other", Operator.AND, 0, 3);
+        List<Double> conjunctionScores = sortedScores(blockService.calculateTFIDFValuesFor("common other", Operator.AND));
+
+        // then
+        assertEquals(3, disjunction.size());
+        assertEquals(3, conjunction.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(disjunctionScores.get(disjunctionScores.size() - 1 - i), disjunction.get(i).getScore(), 1e-12);
+            assertEquals(conjunctionScores.get(conjunctionScores.size() - 1 - i), conjunction.get(i).getScore(), 1e-12);
+        }
+        blockIndex.close();
+    }
+
+    @Test
+    void shouldPageWithCursorOverSnapshotOfFirstPage() throws Exception {
+
+        // given
+        ShardedIndex pagedIndex = openIndex(indexDirectory.resolve("paged"), 2);
+        SearchProperties searchProperties = new SearchProperties();
+        searchProperties.setCursorSnapshots(1);
+        SearchEngineService pagedService = new SearchEngineService(new StandardAnalyzer(), pagedIndex,
+                searchProperties, searchExecutor, new EngineMetrics(meterRegistry));
+        for (int document = 0; document < 40; document++) {
+            pagedService.createInvertedIndexStructure((document % 4 == 3 ? "other" : "common")
+                    + String.join("", Collections.nCopies(document % 5, " filler")), "Document" + document);
+        }
+        List<ScoredDocument> expected = pagedService.getDocumentsContaining("common", Operator.OR, 0, 40);
+
+        // when
+        List<ScoredDocument> pages = new ArrayList<>();
+        SearchPage page = pagedService.getDocumentsAfter("common", Operator.OR, null, 7);
+        pagedService.createInvertedIndexStructure("common", "Added");
+        while (page.getNextCursor() != null) {
+            pages.addAll(page.getDocuments());
+            page = pagedService.getDocumentsAfter("common", Operator.OR, page.getNextCursor(), 7);
+        }
+        pages.addAll(page.getDocuments());
+        SearchCursor staleCursor = pagedService.getDocumentsAfter("common", Operator.OR, null, 7).getNextCursor();
+        pagedService.createInvertedIndexStructure("common", "Added again");
+        SearchPage newestPage = pagedService.getDocumentsAfter("common", Operator.OR, null, 7);
+
+        // then
+        assertEquals(expected.size(), pages.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getDocId(), pages.get(i).getDocId());
+            assertEquals(expected.get(i).getScore(), pages.get(i).getScore());
+        }
+        assertNotEquals(staleCursor.getGeneration(), newestPage.getNextCursor().getGeneration());
+        assertThrows(IllegalArgumentException.class,
+                () -> pagedService.getDocumentsAfter("common", Operator.OR, SearchCursor.decode(staleCursor.encode()), 7));
+        pagedIndex.close();
+    }
+
+    @Test
+    void shouldStreamEveryMatchingDocumentToCollector() {
+
+        // given
+        for (int document = 0; document < 30; document++) {
+            searchEngineService.createInvertedIndexStructure((document % 3 == 0 ? "apple " : "") + "banana", "Document" + document);
+        }
+        AllDocsCollector collector = new AllDocsCollector();
+
+        // when
+        searchEngineService.calculateTFIDFValuesFor("apple banana", Operator.OR, collector);
+
+        // then
+        List<ScoredDocument> expected = searchEngineService.calculateTFIDFValuesFor("apple banana", Operator.OR);
+        assertEquals(sortedScores(expected), sortedScores(collector.getDocuments()));
+    }
+
+    @Test
+    void shouldForwardOtherShardsThroughBoundedQueueToCallingThread() throws Exception {
+
+        // given
+        SearchProperties searchProperties = new SearchProperties();
+        searchProperties.setStreamQueueCapacity(1);
+        ShardedIndex streamedIndex = openIndex(indexDirectory.resolve("streamed"), 3);
+        SearchEngineService streamedService = new SearchEngineService(new StandardAnalyzer(), streamedIndex,
+                searchProperties, searchExecutor, new EngineMetrics(meterRegistry));
+        for (int document = 0; document < 300; document++) {
+            streamedService.createInvertedIndexStructure("banana", "Document" + document);
+        }
+        List<Thread> collectingThreads = new ArrayList<>();
+        AllDocsCollector documents = new AllDocsCollector();
+
+        // when
+        streamedService.calculateTFIDFValuesFor("banana", Operator.OR, new ScoreCollector() {
+
+            @Override
+            public void collect(int docId, double score) {
+                collectingThreads.add(Thread.currentThread());
+                documents.collect(docId, score);
+            }
+
+            @Override
+            public double minCompetitiveScore() {
+                return Double.NEGATIVE_INFINITY;
+            }
+        });
+
+        // then
+        assertEquals(300, documents.getDocuments().size());
+        assertEquals(300, documents.getDocuments().stream().mapToInt(ScoredDocument::getDocId).distinct().count());
+        assertTrue(collectingThreads.stream().allMatch(thread -> thread == Thread.currentThread()));
+        streamedIndex.close();
+    }
+
+    private static List<Double> sortedScores(List<ScoredDocument> documents) {
+        List<Double> scores = new ArrayList<>();
+        for (ScoredDocument document : documents) {
+            scores.add(document.getScore());
+        }
+        Collections.sort(scores);
+        return scores;
+    }
+}
@@ -0,0 +1,111 @@
+package com.search.engine.service;
+
+import com.search.engine.analysis.StandardAnalyzer;
+import com.search.engine.config.SearchProperties;
+import com.search.engine.config.StorageProperties;
+import com.search.engine.index.ShardedIndex;
+import com.search.engine.metrics.EngineMetrics;
+import com.search.engine.search.Operator;
+import com.search.engine.search.ScoredDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnippetServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private StorageService storageService;
+    private SearchEngineService searchEngineService;
+    private SnippetService snippetService;
+    private ExecutorService searchExecutor;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        StorageProperties storageProperties = new StorageProperties();
+        storageProperties.setLocation(directory.resolve("upload").toString());
+        storageProperties.setIndexLocation(directory.resolve("index").toString());
+        storageProperties.setShards(2);
+        storageProperties.setIndexPositions(true);
+        storageProperties.setRefreshIntervalMs(0);
+        storageService = new StorageService(storageProperties, EngineMetrics.detached());
+        storageService.open();
+        ShardedIndex index = new ShardedIndex(storageProperties);
+        index.open();
+
+        SearchProperties searchProperties = new SearchProperties();
+        searchProperties.setSnippetBytes(80);
+        searchExecutor = Executors.newSingleThreadExecutor();
+        searchEngineService = new SearchEngineService(new StandardAnalyzer(), index, searchProperties, searchExecutor,
+                EngineMetrics.detached());
+        snippetService = new SnippetService(storageService, searchEngineService, index, new StandardAnalyzer(),
+                searchProperties, EngineMetrics.detached());
+    }
+
+    @AfterEach
+    void tearDown() {
+        searchExecutor.shutdown();
+    }
+
+    @Test
+    void shouldCutHighlightedSnippetAroundBestWindow() throws Exception {
+
+        // given
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("zażółć gęślą jaźń connection ");
+        }
+        text.append("the <b> Connection pool, timeout happened ");
+        for (int i = 0; i < 200; i++) {
+            text.append("pool filler ");
+        }
+        store("Document1", text.toString());
+        store("Document2", "no matching words");
+
+        // when
+        List<ScoredDocument> documents = searchEngineService.getDocumentsContaining("connection pool", Operator.AND, 0, 10);
+        List<String> snippets = snippetService.getSnippets("connection pool", documents);
+        List<String> cachedSnippets = snippetService.getSnippets("connection pool", documents);
+
+        // then
+        assertEquals(1, snippets.size());
+        String snippet = snippets.get(0);
+        assertTrue(snippet.contains("&lt;b&gt; <em>Connection</em> <em>pool,</em> timeout"), snippet);
+        assertTrue(snippet.replaceAll("</?em>", "").length() <= 90, snippet);
+        assertFalse(snippet.startsWith(" "));
+        assertEquals(snippets, cachedSnippets);
+        assertEquals(1, snippetService.getCache().getHits());
+    }
+
+    @Test
+    void shouldReturnNoSnippetForStoredFileWithoutIndexedOffsets() throws Exception {
+
+        // given
+        store("Document1", "connection pool");
+
+        // when
+        List<String> snippets = snippetService.getSnippets("timeout",
+                searchEngineService.getDocumentsContaining("connection", Operator.OR, 0, 10));
+
+        // then
+        assertEquals(1, snippets.size());
+        assertNull(snippets.get(0));
+    }
+
+    private void store(String name, String text) throws Exception {
+        storageService.store(new MockMultipartFile("file", name, "text/plain", text.getBytes(UTF_8)));
+        searchEngineService.createInvertedIndexStructure(searchEngineService.analyze(new StringReader(text)), name);
+    }
+}
@@ -0,0 +1,203 @@
+package com.search.engine.service;
+
+import com.search.engine.config.StorageProperties;
+import com.search.engine.exception.BadFileException;
+import com.search.engine.exception.DocumentNotFoundException;
+import com.search.engine.metrics.EngineMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static com.search.engine.service.StorageService.DUPLICATE_CONTENT_ERROR;
+import static com.search.engine.service.StorageService.DUPLICATE_FILENAME_ERROR;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StorageServiceTest {
+
+    @TempDir
+    Path uploadDirectory;
+
+    private StorageService storageService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        storageService = openStorage(false);
+    }
+
+    private StorageService openStorage(boolean deduplicateContent) throws Exception {
+        StorageProperties storageProperties = new StorageProperties();
+        storageProperties.setLocation(uploadDirectory.toString());
+        storageProperties.setDeduplicateContent(deduplicateContent);
+        StorageService storage = new StorageService(storageProperties, EngineMetrics.detached());
+        storage.open();
+        return storage;
+    }
+
+    @Test
+    void shouldStoreWholeFileWhenOnlyPartOfItWasRead() throws Exception {
+
+        // given
+        byte[] content = new byte[100_000];
+        new Random(7).nextBytes(content);
+        MockMultipartFile file = new MockMultipartFile("file", "document.txt", "text/plain", content);
+
+        // when
+        try (InputStream inputStream = storageService.storeWhileReading(file)) {
+            byte[] buffer = new byte[1000];
+            assertEquals(1000, inputStream.read(buffer));
+        }
+
+        // then
+        assertArrayEquals(content, Files.readAllBytes(uploadDirectory.resolve("document.txt")));
+    }
+
+    @Test
+    void shouldCatchBadFileExceptionWhenFileWithTheSameNameStored() throws Exception {
+
+        // given
+        MockMultipartFile file = new MockMultipartFile("file", "document.txt", "text/plain", "text".getBytes());
+        storageService.storeWhileReading(file).close();
+
+        // when
+        BadFileException actualException = assertThrows(BadFileException.class, () -> storageService.storeWhileReading(file));
+
+        // then
+        assertEquals(actualException.getMessage(), DUPLICATE_FILENAME_ERROR + "document.txt");
+    }
+
+    @Test
+    void shouldRememberStoredFilenamesAfterRestart() throws Exception {
+
+        // given
+        storageService.store(new MockMultipartFile("file", "document.txt", "text/plain", "text".getBytes()));
+        storageService.close();
+        StorageService reopenedStorage = openStorage(false);
+
+        // when
+        BadFileException actualException = assertThrows(BadFileException.class,
+                () -> reopenedStorage.store(new MockMultipartFile("file", "document.txt", "text/plain", "other".getBytes())));
+
+        // then
+        assertEquals(actualException.getMessage(), DUPLICATE_FILENAME_ERROR + "document.txt");
+        assertArrayEquals("text".getBytes(), Files.readAllBytes(uploadDirectory.resolve("document.txt")));
+    }
+
+    @Test
+    void shouldRejectFileWithSameContentWhenDeduplicating() throws Exception {
+
+        // given
+        storageService.close();
+        StorageService deduplicatingStorage = openStorage(true);
+        deduplicatingStorage.store(new MockMultipartFile("file", "first.txt", "text/plain", "text".getBytes()));
+        deduplicatingStorage.close();
+        StorageService reopenedStorage = openStorage(true);
+
+        // when
+        BadFileException actualException = assertThrows(BadFileException.class,
+                () -> reopenedStorage.store(new MockMultipartFile("file", "second.txt", "text/plain", "text".getBytes())));
+
+        // then
+        assertEquals(actualException.getMessage(), DUPLICATE_CONTENT_ERROR + "first.txt");
+        assertFalse(Files.exists(uploadDirectory.resolve("second.txt")));
+        assertDoesNotThrow(() -> reopenedStorage.store(new MockMultipartFile("file", "second.txt", "text/plain", "new text".getBytes())));
+    }
+
+    @Test
+    void shouldTransferRequestedRangeOfStoredFile() throws Exception {
+
+        // given
+        byte[] content = new byte[200_000];
+        new Random(11).nextBytes(content);
+        storageService.store(new MockMultipartFile("file", "document.bin", "application/octet-stream", content));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // when
+        StoredFile storedFile = storageService.getStoredFile("document.bin");
+        storageService.transferTo("document.bin", 1000, 150_000, Channels.newChannel(output));
+
+        // then
+        assertEquals(content.length, storedFile.getSize());
+        assertArrayEquals(Arrays.copyOfRange(content, 1000, 151_000), output.toByteArray());
+        assertEquals(storedFile.getETag(), storageService.getStoredFile("document.bin").getETag());
+    }
+
+    @Test
+    void shouldNotServeRegistryOrUnknownFiles() throws Exception {
+
+        // given
+        storageService.store(new MockMultipartFile("file", "document.txt", "text/plain", "text".getBytes()));
+
+        // when, then
+        assertThrows(DocumentNotFoundException.class, () -> storageService.getStoredFile(".registry"));
+        assertThrows(DocumentNotFoundException.class, () -> storageService.getStoredFile("missing.txt"));
+        assertThrows(DocumentNotFoundException.class, () -> storageService.getStoredFile("../document.txt"));
+        assertEquals(4, storageService.getStoredFile("document.txt").getSize());
+    }
+
+    @Test
+    void shouldServeOnlyCompletelyStoredFiles() throws Exception {
+
+        // given
+        MockMultipartFile file = new MockMultipartFile("file", "document.txt", "text/plain", new byte[10_000]);
+        InputStream upload = storageService.storeWhileReading(file);
+        upload.read(new byte[100]);
+        Files.write(uploadDirectory.resolve("leftover.txt"), "part".getBytes());
+
+        // when
+        boolean servedWhileUploading = isServed("document.txt");
+        upload.close();
+        StorageService restartedStorage = openStorage(false);
+
+        // then
+        assertFalse(servedWhileUploading);
+        assertTrue(isServed("document.txt"));
+        assertEquals(10_000, restartedStorage.getStoredFile("document.txt").getSize());
+        assertThrows(DocumentNotFoundException.class, () -> restartedStorage.getStoredFile("leftover.txt"));
+        assertFalse(restartedStorage.exists("leftover.txt"));
+        assertFalse(Files.exists(uploadDirectory.resolve("leftover.txt")));
+    }
+
+    @Test
+    void shouldReplaceStoredFileOnlyWithFullyStagedContent() throws Exception {
+
+        // given
+        storageService.store(new MockMultipartFile("file", "document.txt", "text/plain", "old".getBytes()));
+        StagedFile discarded = storageService.stageWhileReading(new MockMultipartFile("file", "document.txt", "text/plain", "lost".getBytes()));
+        discarded.getInputStream().close();
+        storageService.discard(discarded);
+        StagedFile staged = storageService.stageWhileReading(new MockMultipartFile("file", "document.txt", "text/plain", "new".getBytes()));
+
+        // when
+        byte[] buffer = new byte[1];
+        assertEquals(1, staged.getInputStream().read(buffer));
+        assertArrayEquals("old".getBytes(), Files.readAllBytes(uploadDirectory.resolve("document.txt")));
+        staged.getInputStream().close();
+        storageService.replace("document.txt", staged);
+
+        // then
+        assertArrayEquals("new".getBytes(), Files.readAllBytes(uploadDirectory.resolve("document.txt")));
+        assertTrue(storageService.exists("document.txt"));
+        try (Stream<Path> stagedFiles = Files.list(uploadDirectory.resolve(StorageService.STAGING_DIRECTORY))) {
+            assertEquals(0, stagedFiles.count());
+        }
+    }
+
+    private boolean isServed(String filename) {
+        try {
+            storageService.getStoredFile(filename);
+            return true;
+        } catch (DocumentNotFoundException e) {
+            return false;
+        }
+    }
+}